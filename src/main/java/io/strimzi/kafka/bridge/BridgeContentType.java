@@ -14,7 +14,17 @@ public class BridgeContentType {
     public static final String KAFKA_JSON_JSON = "application/vnd.kafka.json.v2+json";
     // JSON encoding with BINARY embedded format
     public static final String KAFKA_JSON_BINARY = "application/vnd.kafka.binary.v2+json";
+    // JSON encoding with AVRO embedded format
+    public static final String KAFKA_JSON_AVRO = "application/vnd.kafka.avro.v2+json";
+    // CBOR encoding with keys and values as byte strings (CBOR embedded format)
+    public static final String KAFKA_CBOR_BINARY = "application/vnd.kafka.binary.v2+cbor";
     // JSON encoding
     public static final String KAFKA_JSON = "application/vnd.kafka.v2+json";
     public static final String JSON = "application/json";
+    // newline delimited JSON, used for streaming records
+    public static final String NDJSON = "application/x-ndjson";
+    // Server-Sent Events, used for pushing records to the consumers
+    public static final String EVENT_STREAM = "text/event-stream";
+    // raw bytes, used as the value of a single record
+    public static final String OCTET_STREAM = "application/octet-stream";
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.kafka.client.producer.KafkaHeader;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-topic dead letter topics, where the records failing conversion or delivery are written instead of
+ * failing the whole produce request, so that a single bad record doesn't force the client to send
+ * the whole batch again.
+ *
+ * The dead letter records carry the original key and value (or the raw record, when it couldn't be converted)
+ * with headers describing the failure: the stage it happened in, the error message and the original topic
+ * and partition.
+ */
+public class DeadLetterTopics {
+
+    /** Header with the stage the record failed in, "conversion" or "delivery" */
+    public static final String STAGE_HEADER = "bridge.error.stage";
+    /** Header with the error message */
+    public static final String ERROR_HEADER = "bridge.error.message";
+    /** Header with the topic the record was sent to */
+    public static final String TOPIC_HEADER = "bridge.original.topic";
+    /** Header with the partition the record was sent to, if any */
+    public static final String PARTITION_HEADER = "bridge.original.partition";
+
+    public static final String CONVERSION = "conversion";
+    public static final String DELIVERY = "delivery";
+
+    // topic name matching all the topics without a specific dead letter topic
+    private static final String ANY_TOPIC = "*";
+
+    private final Map<String, String> topics;
+
+    /**
+     * Constructor
+     *
+     * @param topics comma separated list of [topic]:[dead letter topic] mappings, with * as topic
+     *               for all the other topics (null or empty for disabling the dead letter topics)
+     * @throws IllegalArgumentException if a mapping isn't in the [topic]:[dead letter topic] form
+     */
+    public DeadLetterTopics(String topics) {
+        this.topics = parse(topics);
+    }
+
+    private static Map<String, String> parse(String topics) {
+        if (topics == null || topics.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> parsed = new HashMap<>();
+        for (String mapping : topics.split(",")) {
+            String[] names = mapping.trim().split(":");
+            if (names.length != 2 || names[0].trim().isEmpty() || names[1].trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid dead letter topic mapping " + mapping.trim());
+            }
+            parsed.put(names[0].trim(), names[1].trim());
+        }
+        return parsed;
+    }
+
+    /**
+     * @return if there is any dead letter topic
+     */
+    public boolean isEnabled() {
+        return !this.topics.isEmpty();
+    }
+
+    /**
+     * @param topic the topic a record is sent to
+     * @return the dead letter topic for the records failed on the topic, null if there isn't one
+     */
+    public String deadLetterTopic(String topic) {
+        String deadLetterTopic = this.topics.getOrDefault(topic, this.topics.get(ANY_TOPIC));
+        // the records failed on a dead letter topic are not dead lettered again
+        return topic.equals(deadLetterTopic) ? null : deadLetterTopic;
+    }
+
+    /**
+     * Build the dead letter record for a record failed to be delivered
+     *
+     * @param record the failed record
+     * @param deadLetterTopic the dead letter topic
+     * @param error the delivery error
+     * @param <K> type of the record key
+     * @param <V> type of the record value
+     * @return the dead letter record, with the original key, value and headers
+     */
+    public static <K, V> KafkaProducerRecord<K, V> deliveryFailure(KafkaProducerRecord<K, V> record, String deadLetterTopic, Throwable error) {
+        KafkaProducerRecord<K, V> deadLetter = KafkaProducerRecord.create(deadLetterTopic, record.key(), record.value())
+                .addHeaders(record.headers());
+        return withFailure(deadLetter, DELIVERY, error.getMessage(), record.topic(), record.partition());
+    }
+
+    /**
+     * Build the dead letter record for a record failed to be converted
+     *
+     * @param raw the record as it was provided by the client
+     * @param deadLetterTopic the dead letter topic
+     * @param error the conversion error
+     * @param topic the topic the record was sent to
+     * @param partition the partition the record was sent to, if any
+     * @return the dead letter record, with the raw record as value
+     */
+    public static KafkaProducerRecord<byte[], byte[]> conversionFailure(byte[] raw, String deadLetterTopic, String error,
+                                                                       String topic, Integer partition) {
+        KafkaProducerRecord<byte[], byte[]> deadLetter = KafkaProducerRecord.create(deadLetterTopic, null, raw);
+        return withFailure(deadLetter, CONVERSION, error, topic, partition);
+    }
+
+    private static <K, V> KafkaProducerRecord<K, V> withFailure(KafkaProducerRecord<K, V> deadLetter, String stage, String error,
+                                                               String topic, Integer partition) {
+        deadLetter.addHeader(STAGE_HEADER, stage)
+                .addHeader(ERROR_HEADER, String.valueOf(error))
+                .addHeader(TOPIC_HEADER, topic);
+        if (partition != null) {
+            deadLetter.addHeader(PARTITION_HEADER, String.valueOf(partition));
+        }
+        return deadLetter;
+    }
+
+    /**
+     * @param record a record built by a message converter
+     * @return the conversion error if it's the dead letter record for a record failed to be converted, null otherwise
+     */
+    public static String conversionError(KafkaProducerRecord<?, ?> record) {
+        if (record.headers().isEmpty() || !CONVERSION.equals(header(record, STAGE_HEADER))) {
+            return null;
+        }
+        return header(record, ERROR_HEADER);
+    }
+
+    /**
+     * @param record the record
+     * @param key the header key
+     * @return the value of the last header with the key, as a string, null if there isn't one
+     */
+    public static String header(KafkaProducerRecord<?, ?> record, String key) {
+        String value = null;
+        for (KafkaHeader header : record.headers()) {
+            if (key.equals(header.key())) {
+                value = header.value().toString(StandardCharsets.UTF_8);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+/**
+ * Failure of a record routed to a dead letter topic, because it couldn't be converted
+ * (without cause) or delivered (with the delivery error as cause)
+ */
+public class DeadLetteredException extends RuntimeException {
+
+    private static final long serialVersionUID = -6215483093468307212L;
+
+    private final String deadLetterTopic;
+
+    public DeadLetteredException(String message, String deadLetterTopic, Throwable cause) {
+        super(message, cause);
+        this.deadLetterTopic = deadLetterTopic;
+    }
+
+    /**
+     * @return the dead letter topic the record was routed to
+     */
+    public String getDeadLetterTopic() {
+        return this.deadLetterTopic;
+    }
+}
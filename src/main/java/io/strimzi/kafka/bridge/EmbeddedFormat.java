@@ -7,7 +7,9 @@ package io.strimzi.kafka.bridge;
 
 public enum EmbeddedFormat {
     BINARY,
-    JSON;
+    JSON,
+    AVRO,
+    CBOR;
 
     public static EmbeddedFormat from(String value) {
         switch (value) {
@@ -15,6 +17,10 @@ public enum EmbeddedFormat {
                 return JSON;
             case "binary":
                 return BINARY;
+            case "avro":
+                return AVRO;
+            case "cbor":
+                return CBOR;
         }
         throw new IllegalEmbeddedFormatException("Invalid format type.");
     }
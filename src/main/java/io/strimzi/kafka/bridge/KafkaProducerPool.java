@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.core.Vertx;
+import io.vertx.kafka.client.producer.KafkaProducer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Pool of Kafka producers shared by the source bridge endpoints.
+ *
+ * A producer is created on the first lease for a given configuration and key/value serializers
+ * and it's then handed to all the endpoints asking for the same ones.
+ * Releasing a lease doesn't close the producer: it stays open, ready for the next endpoint,
+ * until the pool itself is closed.
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+public class KafkaProducerPool<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaProducerPool.class);
+
+    private final Vertx vertx;
+
+    private final Map<ProducerKey, PooledProducer<K, V>> producers = new HashMap<>();
+    private final Map<KafkaProducer<K, V>, PooledProducer<K, V>> leased = new IdentityHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     */
+    public KafkaProducerPool(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Lease a producer for the provided configuration, creating it if it doesn't exist yet.
+     * Serializers are matched by class, so the provided instances are used only when a new producer is created.
+     *
+     * @param props Kafka producer configuration
+     * @param keySerializer Kafka serializer for the message key
+     * @param valueSerializer Kafka serializer for the message value
+     * @return the shared Kafka producer
+     */
+    public synchronized KafkaProducer<K, V> acquire(Properties props, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        ProducerKey key = new ProducerKey(props, keySerializer, valueSerializer);
+        PooledProducer<K, V> pooled = this.producers.get(key);
+        if (pooled == null) {
+            KafkaProducer<K, V> producer = KafkaProducer.create(this.vertx, props, keySerializer, valueSerializer);
+            pooled = new PooledProducer<>(producer);
+            this.producers.put(key, pooled);
+            this.leased.put(producer, pooled);
+            log.info("Created shared Kafka producer, {} in the pool", this.producers.size());
+        }
+        pooled.leases++;
+        log.debug("Leased shared Kafka producer, {} leases", pooled.leases);
+        return pooled.producer;
+    }
+
+    /**
+     * Release a lease on a producer previously got through {@link #acquire(Properties, Serializer, Serializer)}
+     *
+     * @param producer the Kafka producer to release
+     */
+    public synchronized void release(KafkaProducer<K, V> producer) {
+        PooledProducer<K, V> pooled = this.leased.get(producer);
+        if (pooled != null && pooled.leases > 0) {
+            pooled.leases--;
+            log.debug("Released shared Kafka producer, {} leases", pooled.leases);
+        }
+    }
+
+    /**
+     * @return the number of producers in the pool
+     */
+    public synchronized int size() {
+        return this.producers.size();
+    }
+
+    /**
+     * @param producer the Kafka producer
+     * @return the number of active leases on the provided producer
+     */
+    public synchronized int leases(KafkaProducer<K, V> producer) {
+        PooledProducer<K, V> pooled = this.leased.get(producer);
+        return pooled != null ? pooled.leases : 0;
+    }
+
+    /**
+     * Close all the producers in the pool, regardless of active leases
+     */
+    public synchronized void close() {
+        for (PooledProducer<K, V> pooled : this.producers.values()) {
+            if (pooled.leases > 0) {
+                log.warn("Closing shared Kafka producer with {} active leases", pooled.leases);
+            }
+            pooled.producer.close();
+        }
+        this.producers.clear();
+        this.leased.clear();
+    }
+
+    private static class PooledProducer<K, V> {
+
+        private final KafkaProducer<K, V> producer;
+        private int leases;
+
+        PooledProducer(KafkaProducer<K, V> producer) {
+            this.producer = producer;
+        }
+    }
+
+    private static class ProducerKey {
+
+        private final Map<Object, Object> config;
+        private final Class<?> keySerializer;
+        private final Class<?> valueSerializer;
+
+        ProducerKey(Properties props, Serializer<?> keySerializer, Serializer<?> valueSerializer) {
+            this.config = new HashMap<>(props);
+            this.keySerializer = keySerializer.getClass();
+            this.valueSerializer = valueSerializer.getClass();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ProducerKey)) {
+                return false;
+            }
+            ProducerKey other = (ProducerKey) obj;
+            return this.config.equals(other.config) &&
+                    this.keySerializer.equals(other.keySerializer) &&
+                    this.valueSerializer.equals(other.valueSerializer);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.config, this.keySerializer, this.valueSerializer);
+        }
+    }
+}
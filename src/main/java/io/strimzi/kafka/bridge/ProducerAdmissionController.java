@@ -0,0 +1,275 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admission control for the records sent by the source bridge endpoints.
+ *
+ * It tracks the bytes and the records in flight, so handed to the producer but not acknowledged by Kafka yet,
+ * for the whole bridge and for each topic. New records are admitted only if they don't take
+ * the in flight bytes or records over the configured limits (a limit lower than 0 means no limit);
+ * records are always admitted when nothing is in flight, even if they exceed the limits on their own.
+ * When records are not admitted, a retry delay is estimated from the rate at which in flight records
+ * are currently acknowledged.
+ * It also provides a pause state for applying backpressure on the producing clients: the state is entered
+ * when the bytes in flight for the bridge reach a high watermark and left when acknowledgements take them
+ * back under the low watermark (half of the high one), calling the handlers waiting for it.
+ */
+public class ProducerAdmissionController {
+
+    // minimum and maximum retry delay suggested when records are not admitted
+    static final long MIN_RETRY_AFTER_MS = 1000L;
+    static final long MAX_RETRY_AFTER_MS = 60000L;
+
+    // period for measuring the acknowledgement rate and weight of the last measured one
+    private static final long RATE_PERIOD_MS = 1000L;
+    private static final double RATE_WEIGHT = 0.5;
+
+    private final long maxBytes;
+    private final long maxRecords;
+    private final long maxTopicBytes;
+    private final long maxTopicRecords;
+    private final long pauseBytes;
+
+    private final InFlight inFlight = new InFlight();
+    private final Map<String, InFlight> topicsInFlight = new HashMap<>();
+
+    private boolean paused;
+    private final List<Runnable> resumeHandlers = new ArrayList<>();
+
+    // acknowledgement rates, in bytes and records per second
+    private double bytesRate;
+    private double recordsRate;
+    private long ratePeriodStart = System.currentTimeMillis();
+    private long ratePeriodBytes;
+    private long ratePeriodRecords;
+
+    /**
+     * Constructor
+     *
+     * @param maxBytes maximum bytes in flight for the bridge
+     * @param maxRecords maximum records in flight for the bridge
+     * @param maxTopicBytes maximum bytes in flight for each topic
+     * @param maxTopicRecords maximum records in flight for each topic
+     * @param pauseBytes bytes in flight for the bridge at which the pause state is entered (high watermark)
+     */
+    public ProducerAdmissionController(long maxBytes, long maxRecords, long maxTopicBytes, long maxTopicRecords, long pauseBytes) {
+        this.maxBytes = maxBytes;
+        this.maxRecords = maxRecords;
+        this.maxTopicBytes = maxTopicBytes;
+        this.maxTopicRecords = maxTopicRecords;
+        this.pauseBytes = pauseBytes;
+    }
+
+    /**
+     * Check if the provided records can be sent to a topic, without exceeding the in flight limits
+     *
+     * @param topic the topic the records are sent to
+     * @param bytes size of the records
+     * @param records number of the records
+     * @return 0 if the records are admitted, otherwise the suggested delay (in milliseconds) before retrying
+     */
+    public synchronized long admit(String topic, long bytes, long records) {
+        InFlight topicInFlight = this.topicsInFlight.getOrDefault(topic, InFlight.NONE);
+
+        long excessBytes = Math.max(this.inFlight.excess(this.inFlight.bytes + bytes, this.maxBytes),
+                topicInFlight.excess(topicInFlight.bytes + bytes, this.maxTopicBytes));
+        long excessRecords = Math.max(this.inFlight.excess(this.inFlight.records + records, this.maxRecords),
+                topicInFlight.excess(topicInFlight.records + records, this.maxTopicRecords));
+        return this.retryAfter(excessBytes, excessRecords);
+    }
+
+    /**
+     * Check if the provided records can be sent without exceeding the in flight limits: all of them
+     * against the limits for the bridge and the ones for each topic against the limits for the topic
+     *
+     * @param records the records
+     * @return 0 if the records are admitted, otherwise the suggested delay (in milliseconds) before retrying
+     */
+    public synchronized long admit(List<? extends KafkaProducerRecord<?, ?>> records) {
+        Map<String, long[]> topics = new HashMap<>();
+        long bytes = 0;
+        for (KafkaProducerRecord<?, ?> record : records) {
+            // bytes and records for each topic
+            long[] sizes = topics.computeIfAbsent(record.topic(), t -> new long[2]);
+            long size = sizeOf(record);
+            sizes[0] += size;
+            sizes[1]++;
+            bytes += size;
+        }
+
+        long excessBytes = this.inFlight.excess(this.inFlight.bytes + bytes, this.maxBytes);
+        long excessRecords = this.inFlight.excess(this.inFlight.records + records.size(), this.maxRecords);
+        for (Map.Entry<String, long[]> topic : topics.entrySet()) {
+            InFlight topicInFlight = this.topicsInFlight.getOrDefault(topic.getKey(), InFlight.NONE);
+            excessBytes = Math.max(excessBytes,
+                    topicInFlight.excess(topicInFlight.bytes + topic.getValue()[0], this.maxTopicBytes));
+            excessRecords = Math.max(excessRecords,
+                    topicInFlight.excess(topicInFlight.records + topic.getValue()[1], this.maxTopicRecords));
+        }
+        return this.retryAfter(excessBytes, excessRecords);
+    }
+
+    private long retryAfter(long excessBytes, long excessRecords) {
+        if (excessBytes == 0 && excessRecords == 0) {
+            return 0;
+        }
+
+        long retryAfterMs = Math.max(drainTime(excessBytes, this.bytesRate), drainTime(excessRecords, this.recordsRate));
+        return Math.min(Math.max(retryAfterMs, MIN_RETRY_AFTER_MS), MAX_RETRY_AFTER_MS);
+    }
+
+    /**
+     * Track a record as in flight
+     *
+     * @param topic the topic the record is sent to
+     * @param bytes size of the record
+     */
+    public synchronized void acquire(String topic, long bytes) {
+        this.inFlight.add(bytes, 1);
+        this.topicsInFlight.computeIfAbsent(topic, t -> new InFlight()).add(bytes, 1);
+        if (this.pauseBytes >= 0 && this.inFlight.bytes >= this.pauseBytes) {
+            this.paused = true;
+        }
+    }
+
+    /**
+     * Track a record as not in flight anymore, because acknowledged or failed
+     *
+     * @param topic the topic the record was sent to
+     * @param bytes size of the record
+     */
+    public void release(String topic, long bytes) {
+        List<Runnable> handlers = null;
+        synchronized (this) {
+            this.inFlight.add(-bytes, -1);
+            InFlight topicInFlight = this.topicsInFlight.get(topic);
+            if (topicInFlight != null) {
+                topicInFlight.add(-bytes, -1);
+                if (topicInFlight.records <= 0) {
+                    this.topicsInFlight.remove(topic);
+                }
+            }
+            this.updateRates(bytes);
+
+            if (this.paused && this.inFlight.bytes <= this.pauseBytes / 2) {
+                this.paused = false;
+                handlers = new ArrayList<>(this.resumeHandlers);
+                this.resumeHandlers.clear();
+            }
+        }
+        // handlers are called outside of the lock, they could send records again
+        if (handlers != null) {
+            handlers.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * @return if the bytes in flight reached the high watermark and didn't go back under the low one yet
+     */
+    public synchronized boolean isPaused() {
+        return this.paused;
+    }
+
+    /**
+     * Call the provided handler when the pause state is left, or right away if not paused
+     *
+     * @param handler the handler to call
+     */
+    public void whenResumed(Runnable handler) {
+        synchronized (this) {
+            if (this.paused) {
+                this.resumeHandlers.add(handler);
+                return;
+            }
+        }
+        handler.run();
+    }
+
+    /**
+     * @return bytes in flight for the bridge
+     */
+    public synchronized long inFlightBytes() {
+        return this.inFlight.bytes;
+    }
+
+    /**
+     * @return records in flight for the bridge
+     */
+    public synchronized long inFlightRecords() {
+        return this.inFlight.records;
+    }
+
+    /**
+     * @param topic the topic
+     * @return bytes in flight for the topic
+     */
+    public synchronized long inFlightBytes(String topic) {
+        return this.topicsInFlight.getOrDefault(topic, InFlight.NONE).bytes;
+    }
+
+    /**
+     * Get the size of a record, as the sum of key and value raw bytes
+     *
+     * @param record the Kafka record
+     * @return the size of the record
+     */
+    public static long sizeOf(KafkaProducerRecord<?, ?> record) {
+        return sizeOf(record.key()) + sizeOf(record.value());
+    }
+
+    private static long sizeOf(Object data) {
+        return data instanceof byte[] ? ((byte[]) data).length : 0;
+    }
+
+    private static long drainTime(long excess, double rate) {
+        // without any acknowledgement yet, there is no rate for estimating the time, so the minimum delay applies
+        return excess > 0 && rate > 0 ? (long) Math.ceil(excess * 1000.0 / rate) : 0;
+    }
+
+    private void updateRates(long bytes) {
+        this.ratePeriodBytes += bytes;
+        this.ratePeriodRecords++;
+
+        long now = System.currentTimeMillis();
+        long elapsed = now - this.ratePeriodStart;
+        if (elapsed >= RATE_PERIOD_MS) {
+            this.bytesRate = weighted(this.bytesRate, this.ratePeriodBytes * 1000.0 / elapsed);
+            this.recordsRate = weighted(this.recordsRate, this.ratePeriodRecords * 1000.0 / elapsed);
+            this.ratePeriodStart = now;
+            this.ratePeriodBytes = 0;
+            this.ratePeriodRecords = 0;
+        }
+    }
+
+    private static double weighted(double rate, double measured) {
+        return rate == 0 ? measured : RATE_WEIGHT * measured + (1 - RATE_WEIGHT) * rate;
+    }
+
+    private static class InFlight {
+
+        private static final InFlight NONE = new InFlight();
+
+        private long bytes;
+        private long records;
+
+        void add(long bytes, long records) {
+            this.bytes += bytes;
+            this.records += records;
+        }
+
+        long excess(long value, long max) {
+            return this.records > 0 && max >= 0 && value > max ? value - max : 0;
+        }
+    }
+}
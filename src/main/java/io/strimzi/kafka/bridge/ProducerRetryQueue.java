@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.core.Vertx;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.TimeoutException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bridge-wide retry stage for the records failed with a retriable error (i.e. not leader for partition,
+ * or a timeout during a leader election), sending them again on behalf of the clients.
+ *
+ * A failed record is sent again after an exponential backoff with jitter, so that the retries of many records
+ * failed at the same time are spread over time instead of hitting the brokers all together; it's retried
+ * up to a maximum number of attempts and only while within a deadline from its first attempt.
+ * The memory taken by the records waiting to be retried is bounded: when it's full, the failure is reported
+ * to the client right away.
+ */
+public class ProducerRetryQueue {
+
+    private final Vertx vertx;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final long deadlineMs;
+    private final long maxBytes;
+
+    // records waiting to be retried and their bytes
+    private long queuedRecords;
+    private long queuedBytes;
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param maxRetries maximum number of retries for each record (0 for disabling the retries)
+     * @param backoffMs backoff before the first retry, doubled on each following one, in milliseconds
+     * @param maxBackoffMs maximum backoff between retries, in milliseconds
+     * @param deadlineMs time from the first attempt after which a record isn't retried anymore, in milliseconds
+     * @param maxBytes maximum bytes of the records waiting to be retried (lower than 0 for no limit)
+     */
+    public ProducerRetryQueue(Vertx vertx, int maxRetries, long backoffMs, long maxBackoffMs, long deadlineMs, long maxBytes) {
+        this.vertx = vertx;
+        this.maxRetries = maxRetries;
+        this.backoffMs = Math.max(backoffMs, 1L);
+        this.maxBackoffMs = Math.max(maxBackoffMs, this.backoffMs);
+        this.deadlineMs = deadlineMs;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return if the records failed with a retriable error are retried
+     */
+    public boolean isEnabled() {
+        return this.maxRetries > 0;
+    }
+
+    /**
+     * Schedule the retry of a failed record, if the error is retriable and the record is still within
+     * the maximum number of retries and the deadline
+     *
+     * @param attempts number of attempts already made for sending the record
+     * @param firstAttemptMs time of the first attempt, in milliseconds
+     * @param bytes size of the record
+     * @param error the error the last attempt failed with
+     * @param resend function sending the record again, called once the backoff is elapsed
+     * @return if the retry is scheduled, otherwise the failure has to be reported
+     */
+    public boolean retry(int attempts, long firstAttemptMs, long bytes, Throwable error, Runnable resend) {
+        if (!this.isEnabled() || attempts > this.maxRetries || !isRetriable(error)) {
+            return false;
+        }
+        long delay = this.backoff(attempts);
+        if (System.currentTimeMillis() + delay > firstAttemptMs + this.deadlineMs) {
+            return false;
+        }
+        synchronized (this) {
+            if (this.maxBytes >= 0 && this.queuedBytes + bytes > this.maxBytes) {
+                return false;
+            }
+            this.queuedRecords++;
+            this.queuedBytes += bytes;
+        }
+        this.vertx.setTimer(delay, t -> {
+            synchronized (this) {
+                this.queuedRecords--;
+                this.queuedBytes -= bytes;
+            }
+            resend.run();
+        });
+        return true;
+    }
+
+    /**
+     * Get the backoff before a retry, as a random value between half and the whole exponential backoff
+     *
+     * @param attempts number of attempts already made for sending the record
+     * @return the backoff, in milliseconds
+     */
+    long backoff(int attempts) {
+        long exponential = Math.min(this.maxBackoffMs, this.backoffMs << Math.min(attempts - 1, 30));
+        return Math.max(exponential / 2 + ThreadLocalRandom.current().nextLong(exponential / 2 + 1), 1L);
+    }
+
+    /**
+     * @param error the error a record failed with
+     * @return if the record can be sent again
+     */
+    static boolean isRetriable(Throwable error) {
+        // a topic missing from the metadata isn't going to show up in a while, it's reported as not found right away
+        if (error instanceof TimeoutException && error.getMessage() != null &&
+                error.getMessage().contains("not present in metadata")) {
+            return false;
+        }
+        return error instanceof RetriableException;
+    }
+
+    /**
+     * @return the number of records waiting to be retried
+     */
+    public synchronized long queuedRecords() {
+        return this.queuedRecords;
+    }
+
+    /**
+     * @return the bytes of the records waiting to be retried
+     */
+    public synchronized long queuedBytes() {
+        return this.queuedBytes;
+    }
+}
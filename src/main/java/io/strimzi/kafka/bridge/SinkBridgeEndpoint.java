@@ -426,6 +426,12 @@ public abstract class SinkBridgeEndpoint<K, V> implements BridgeEndpoint {
         log.debug("Processing key {} value {} partition {} offset {}",
                 record.key(), record.value(), record.partition(), record.offset());
 
+        if (this.qos == null) {
+            // without a QoS, committing is left to the consumer auto-commit or to explicit commit requests
+            this.handleReceived(record);
+            return;
+        }
+
         switch (this.qos) {
 
             case AT_MOST_ONCE:
@@ -513,6 +519,16 @@ public abstract class SinkBridgeEndpoint<K, V> implements BridgeEndpoint {
         }
     }
 
+    /**
+     * Start or stop handling the records from the Kafka consumer as they arrive, through the received handler,
+     * instead of polling for them
+     *
+     * @param streaming if the records have to be handled as they arrive
+     */
+    protected void stream(boolean streaming) {
+        this.consumer.handler(streaming ? this::handleKafkaRecord : null);
+    }
+
     /**
      * Pause the underlying Kafka consumer
      */
@@ -684,6 +700,10 @@ public abstract class SinkBridgeEndpoint<K, V> implements BridgeEndpoint {
         this.consumer.poll(this.pollTimeOut, consumeHandler);
     }
 
+    protected void consume(long timeout, Handler<AsyncResult<KafkaConsumerRecords<K, V>>> consumeHandler) {
+        this.consumer.poll(timeout, consumeHandler);
+    }
+
     protected void commit(Map<TopicPartition, io.vertx.kafka.client.consumer.OffsetAndMetadata> offsetsData, 
         Handler<AsyncResult<Map<TopicPartition, io.vertx.kafka.client.consumer.OffsetAndMetadata>>> commitOffsetsHandler) {
         this.consumer.commit(offsetsData, commitOffsetsHandler);
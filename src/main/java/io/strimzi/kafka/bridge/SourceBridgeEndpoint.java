@@ -8,16 +8,28 @@ package io.strimzi.kafka.bridge;
 import io.strimzi.kafka.bridge.config.BridgeConfig;
 import io.strimzi.kafka.bridge.config.KafkaConfig;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.kafka.client.producer.KafkaProducer;
 import io.vertx.kafka.client.producer.KafkaProducerRecord;
 import io.vertx.kafka.client.producer.RecordMetadata;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.errors.UnsupportedVersionException;
 import org.apache.kafka.common.serialization.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -27,6 +39,11 @@ public abstract class SourceBridgeEndpoint<K, V> implements BridgeEndpoint {
 
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
+    // errors leaving a transactional producer unable to run transactions anymore
+    private static final List<Class<? extends Throwable>> FATAL_TRANSACTION_ERRORS = Arrays.asList(
+            ProducerFencedException.class, OutOfOrderSequenceException.class, AuthorizationException.class,
+            UnsupportedVersionException.class, TimeoutException.class);
+
     protected String name;
     protected final EmbeddedFormat format;
     protected final Serializer<K> keySerializer;
@@ -37,6 +54,22 @@ public abstract class SourceBridgeEndpoint<K, V> implements BridgeEndpoint {
 
     private Handler<BridgeEndpoint> closeHandler;
 
+    // when provided, producers are leased from the pool instead of being owned by the endpoint
+    private final KafkaProducerPool<K, V> producerPool;
+
+    // when provided, records in flight are tracked for admitting the new ones
+    private ProducerAdmissionController admissionController;
+
+    // when provided, records failed with a retriable error are sent again
+    private ProducerRetryQueue retryQueue;
+
+    // when provided, records failing conversion or delivery are routed to a dead letter topic
+    private DeadLetterTopics deadLetterTopics;
+
+    // when provided, batches of records can be sent atomically in a transaction
+    private TransactionalProducerPool<K, V> transactionalProducerPool;
+
+    private Properties producerProps;
     private KafkaProducer<K, V> producerUnsettledMode;
     private KafkaProducer<K, V> producerSettledMode;
 
@@ -51,11 +84,28 @@ public abstract class SourceBridgeEndpoint<K, V> implements BridgeEndpoint {
      */
     public SourceBridgeEndpoint(Vertx vertx, BridgeConfig bridgeConfig,
                                 EmbeddedFormat format, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(vertx, bridgeConfig, format, keySerializer, valueSerializer, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param bridgeConfig Bridge configuration
+     * @param format embedded format for the key/value in the Kafka message
+     * @param keySerializer Kafka serializer for the message key
+     * @param valueSerializer Kafka serializer for the message value
+     * @param producerPool pool from which leasing the shared Kafka producers (null for having dedicated ones)
+     */
+    public SourceBridgeEndpoint(Vertx vertx, BridgeConfig bridgeConfig,
+                                EmbeddedFormat format, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                KafkaProducerPool<K, V> producerPool) {
         this.vertx = vertx;
         this.bridgeConfig = bridgeConfig;
         this.format = format;
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
+        this.producerPool = producerPool;
     }
 
     @Override
@@ -69,6 +119,56 @@ public abstract class SourceBridgeEndpoint<K, V> implements BridgeEndpoint {
         return this;
     }
 
+    /**
+     * Set the admission controller tracking the records in flight
+     *
+     * @param admissionController the admission controller
+     */
+    public void setAdmissionController(ProducerAdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    /**
+     * @return the admission controller tracking the records in flight, null if not provided
+     */
+    public ProducerAdmissionController getAdmissionController() {
+        return this.admissionController;
+    }
+
+    /**
+     * Set the retry stage for the records failed with a retriable error
+     *
+     * @param retryQueue the retry queue
+     */
+    public void setRetryQueue(ProducerRetryQueue retryQueue) {
+        this.retryQueue = retryQueue;
+    }
+
+    /**
+     * Set the dead letter topics the records failing conversion or delivery are routed to
+     *
+     * @param deadLetterTopics the dead letter topics
+     */
+    public void setDeadLetterTopics(DeadLetterTopics deadLetterTopics) {
+        this.deadLetterTopics = deadLetterTopics != null && deadLetterTopics.isEnabled() ? deadLetterTopics : null;
+    }
+
+    /**
+     * Set the pool from which leasing the transactional producers
+     *
+     * @param transactionalProducerPool the pool of transactional producers
+     */
+    public void setTransactionalProducerPool(TransactionalProducerPool<K, V> transactionalProducerPool) {
+        this.transactionalProducerPool = transactionalProducerPool;
+    }
+
+    /**
+     * @return if batches of records can be sent atomically in a transaction
+     */
+    public boolean isTransactional() {
+        return this.transactionalProducerPool != null && this.transactionalProducerPool.isEnabled();
+    }
+
     /**
      * Raise close event
      */
@@ -89,36 +189,269 @@ public abstract class SourceBridgeEndpoint<K, V> implements BridgeEndpoint {
 
         log.debug("Sending record {}", krecord);
         if (handler == null) {
+            // the settled producer is used by AMQP only, so it's created on first use
+            if (this.producerSettledMode == null) {
+                // overrides for AMQP - Kafka settled producer mode
+                Properties props = new Properties();
+                props.putAll(this.producerProps);
+                props.put(ProducerConfig.ACKS_CONFIG, "0");
+                this.producerSettledMode = this.createProducer(props);
+            }
             this.producerSettledMode.send(krecord);
+        } else if (this.deadLetterTopics != null) {
+            this.sendTracked(krecord, done -> this.deadLetter(krecord, done, handler));
+        } else {
+            this.sendTracked(krecord, handler);
+        }
+    }
+
+    private void sendTracked(KafkaProducerRecord<K, V> krecord, Handler<AsyncResult<RecordMetadata>> handler) {
+        if (this.admissionController != null) {
+            // records sent with the settled producer are never acknowledged, so they can't be tracked;
+            // a record being retried is still in flight
+            long size = ProducerAdmissionController.sizeOf(krecord);
+            this.admissionController.acquire(krecord.topic(), size);
+            this.sendUnsettled(krecord, size, 1, System.currentTimeMillis(), done -> {
+                this.admissionController.release(krecord.topic(), size);
+                handler.handle(done);
+            });
         } else {
-            this.producerUnsettledMode.send(krecord, handler);
+            this.sendUnsettled(krecord, ProducerAdmissionController.sizeOf(krecord), 1, System.currentTimeMillis(), handler);
         }
     }
 
+    /**
+     * Route a record to the dead letter topic of its topic (if any) when it failed to be delivered, even after
+     * the retries. A record failed to be converted is routed to the dead letter topic by the message converter,
+     * so it's already sent there, but it's reported as failed anyway.
+     *
+     * @param krecord the record sent to Kafka
+     * @param done the delivery result
+     * @param handler handler called with the delivery result, failed with a {@link DeadLetteredException}
+     *                when the record was routed to a dead letter topic
+     */
+    private void deadLetter(KafkaProducerRecord<K, V> krecord, AsyncResult<RecordMetadata> done,
+                            Handler<AsyncResult<RecordMetadata>> handler) {
+        String conversionError = DeadLetterTopics.conversionError(krecord);
+        if (conversionError != null) {
+            handler.handle(Future.failedFuture(deadLettered(conversionError, krecord.topic(), done, null)));
+            return;
+        }
+        String deadLetterTopic = done.failed() ? this.deadLetterTopics.deadLetterTopic(krecord.topic()) : null;
+        if (deadLetterTopic == null) {
+            handler.handle(done);
+            return;
+        }
+        log.warn("Routing record {} to dead letter topic {}: {}", krecord, deadLetterTopic, done.cause().getMessage());
+        this.sendTracked(DeadLetterTopics.deliveryFailure(krecord, deadLetterTopic, done.cause()), dead -> handler.handle(
+                Future.failedFuture(deadLettered(done.cause().getMessage(), deadLetterTopic, dead, done.cause()))));
+    }
+
+    private static DeadLetteredException deadLettered(String error, String deadLetterTopic,
+                                                      AsyncResult<RecordMetadata> dead, Throwable cause) {
+        String message = dead.succeeded() ?
+                error + " (record sent to dead letter topic " + deadLetterTopic + ")" :
+                error + " (failed to send record to dead letter topic " + deadLetterTopic + ": " + dead.cause().getMessage() + ")";
+        return new DeadLetteredException(message, deadLetterTopic, cause);
+    }
+
+    private void sendUnsettled(KafkaProducerRecord<K, V> krecord, long size, int attempt, long firstAttemptMs,
+                               Handler<AsyncResult<RecordMetadata>> handler) {
+        this.producerUnsettledMode.send(krecord, done -> {
+            if (done.failed() && this.retryQueue != null &&
+                    this.retryQueue.retry(attempt, firstAttemptMs, size, done.cause(),
+                        () -> this.resend(krecord, size, attempt + 1, firstAttemptMs, done, handler))) {
+                log.warn("Retrying record {} after attempt {} failed: {}", krecord, attempt, done.cause().getMessage());
+                return;
+            }
+            handler.handle(done);
+        });
+    }
+
+    private void resend(KafkaProducerRecord<K, V> krecord, long size, int attempt, long firstAttemptMs,
+                        AsyncResult<RecordMetadata> lastResult, Handler<AsyncResult<RecordMetadata>> handler) {
+        // the endpoint could have been closed while waiting for the retry
+        if (this.producerUnsettledMode == null) {
+            handler.handle(lastResult);
+        } else {
+            this.sendUnsettled(krecord, size, attempt, firstAttemptMs, handler);
+        }
+    }
+
+    /**
+     * Send records to Kafka in a single transaction, through a producer leased from the transactional pool,
+     * so that they are all committed or all aborted
+     *
+     * @param krecords  Kafka records to send
+     * @param handler   handler called with the metadata of the records, in the same order, when the transaction
+     *                  is committed or with the failure when it's aborted (or its outcome isn't known because of a timeout)
+     */
+    protected void sendTransaction(List<KafkaProducerRecord<K, V>> krecords, Handler<AsyncResult<List<RecordMetadata>>> handler) {
+        this.transactionalProducerPool.acquire(this.producerProps, this.keySerializer, this.valueSerializer, leased -> {
+            if (leased.failed()) {
+                // the transaction didn't even start, so it's aborted for sure; a busy pool is reported as is, for retrying later
+                handler.handle(Future.failedFuture(leased.cause() instanceof TransactionalProducersBusyException ? leased.cause() :
+                        new KafkaException("Failed to get a transactional producer: " + leased.cause().getMessage(), leased.cause())));
+                return;
+            }
+            Producer<K, V> producer = leased.result();
+            this.track(krecords, true);
+            this.vertx.<List<RecordMetadata>>executeBlocking(future -> {
+                try {
+                    future.complete(runTransaction(producer, krecords));
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            }, false, done -> this.transactionDone(producer, krecords, done, handler));
+        });
+    }
+
+    private void transactionDone(Producer<K, V> producer, List<KafkaProducerRecord<K, V>> krecords,
+                                 AsyncResult<List<RecordMetadata>> done, Handler<AsyncResult<List<RecordMetadata>>> handler) {
+        this.track(krecords, false);
+        this.transactionalProducerPool.release(producer, done.failed() && isFatal(done.cause()));
+        handler.handle(done);
+    }
+
+    private List<RecordMetadata> runTransaction(Producer<K, V> producer, List<KafkaProducerRecord<K, V>> krecords) throws Exception {
+        List<java.util.concurrent.Future<org.apache.kafka.clients.producer.RecordMetadata>> sent = new ArrayList<>(krecords.size());
+        producer.beginTransaction();
+        try {
+            for (KafkaProducerRecord<K, V> krecord : krecords) {
+                log.debug("Sending record {} in transaction", krecord);
+                sent.add(producer.send(krecord.record()));
+            }
+            // it fails if any of the records failed to be sent
+            producer.commitTransaction();
+        } catch (KafkaException e) {
+            if (!isFatal(e)) {
+                try {
+                    producer.abortTransaction();
+                } catch (KafkaException ae) {
+                    log.warn("Failed to abort transaction", ae);
+                }
+            }
+            throw e;
+        }
+
+        List<RecordMetadata> metadata = new ArrayList<>(sent.size());
+        for (java.util.concurrent.Future<org.apache.kafka.clients.producer.RecordMetadata> result : sent) {
+            org.apache.kafka.clients.producer.RecordMetadata m = result.get();
+            metadata.add(new RecordMetadata(-1, m.offset(), m.partition(), m.timestamp(), m.topic()));
+        }
+        return metadata;
+    }
+
+    /**
+     * @param t the failure of a transaction
+     * @return if the failure leaves the producer unable to run transactions anymore
+     */
+    private static boolean isFatal(Throwable t) {
+        // after a timeout, the transaction state is not known, it's up to the next producer with the same
+        // transactional id to complete or abort it
+        return FATAL_TRANSACTION_ERRORS.stream().anyMatch(error -> error.isInstance(t));
+    }
+
+    private void track(List<KafkaProducerRecord<K, V>> krecords, boolean inFlight) {
+        if (this.admissionController != null) {
+            for (KafkaProducerRecord<K, V> krecord : krecords) {
+                long size = ProducerAdmissionController.sizeOf(krecord);
+                if (inFlight) {
+                    this.admissionController.acquire(krecord.topic(), size);
+                } else {
+                    this.admissionController.release(krecord.topic(), size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the metadata of the provided topics through the producer, so that it doesn't need to fetch them
+     * when the first records are sent
+     *
+     * @param topics the topics
+     */
+    public void warmUp(Collection<String> topics) {
+        for (String topic : topics) {
+            this.producerUnsettledMode.partitionsFor(topic, done -> {
+                if (done.succeeded()) {
+                    log.info("Producer metadata warmed up for topic {}", topic);
+                } else {
+                    log.warn("Failed to warm up producer metadata for topic {}", topic, done.cause());
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the number of partitions of a topic through the producer metadata
+     *
+     * @param topic the topic
+     * @param handler handler called with the number of partitions, or null if the topic metadata can't be got
+     */
+    public void partitionsFor(String topic, Handler<Integer> handler) {
+        this.producerUnsettledMode.partitionsFor(topic, done -> {
+            if (done.succeeded() && !done.result().isEmpty()) {
+                handler.handle(done.result().size());
+            } else {
+                if (done.failed()) {
+                    log.debug("Failed to get producer metadata for topic {}", topic, done.cause());
+                }
+                handler.handle(null);
+            }
+        });
+    }
+
     @Override
     public void open() {
 
         KafkaConfig kafkaConfig = this.bridgeConfig.getKafkaConfig();
-        Properties props = new Properties();
-        props.putAll(kafkaConfig.getConfig());
-        props.putAll(kafkaConfig.getProducerConfig().getConfig());
+        this.producerProps = new Properties();
+        this.producerProps.putAll(kafkaConfig.getConfig());
+        this.producerProps.putAll(kafkaConfig.getProducerConfig().getConfig());
 
-        this.producerUnsettledMode = KafkaProducer.create(this.vertx, props, this.keySerializer, this.valueSerializer);
-
-        // overrides for AMQP - Kafka settled producer mode
-        props.put(ProducerConfig.ACKS_CONFIG, "0");
-        this.producerSettledMode = KafkaProducer.create(this.vertx, props, this.keySerializer, this.valueSerializer);
+        this.producerUnsettledMode = this.createProducer(this.producerProps);
     }
 
     @Override
     public void close() {
 
-        if (this.producerSettledMode != null)
-            this.producerSettledMode.close();
+        if (this.producerSettledMode != null) {
+            this.closeProducer(this.producerSettledMode);
+            this.producerSettledMode = null;
+        }
 
-        if (this.producerUnsettledMode != null)
-            this.producerUnsettledMode.close();
+        if (this.producerUnsettledMode != null) {
+            this.closeProducer(this.producerUnsettledMode);
+            this.producerUnsettledMode = null;
+        }
 
         this.handleClose();
     }
+
+    /**
+     * Create a Kafka producer or lease a shared one when a pool is provided
+     *
+     * @param props Kafka producer configuration
+     * @return the Kafka producer
+     */
+    private KafkaProducer<K, V> createProducer(Properties props) {
+        if (this.producerPool != null) {
+            return this.producerPool.acquire(props, this.keySerializer, this.valueSerializer);
+        }
+        return KafkaProducer.create(this.vertx, props, this.keySerializer, this.valueSerializer);
+    }
+
+    /**
+     * Close a Kafka producer or just release the lease on a shared one when a pool is provided
+     *
+     * @param producer the Kafka producer
+     */
+    private void closeProducer(KafkaProducer<K, V> producer) {
+        if (this.producerPool != null) {
+            this.producerPool.release(producer);
+        } else {
+            producer.close();
+        }
+    }
 }
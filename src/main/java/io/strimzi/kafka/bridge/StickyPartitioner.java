@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bridge-wide partitioner for the records without key and partition, pinning them to a single partition
+ * of their topic for a whole produce request or for a time window, instead of leaving them to the producer
+ * default partitioner which spreads them round-robin across all the partitions.
+ * Having the records of a request going to the same partition fills fewer and bigger producer batches,
+ * so fewer produce requests to the brokers and better compression ratios.
+ *
+ * The partition is chosen by load, as the one with the fewest bytes in flight among the records pinned
+ * by the bridge; ties are broken rotating across the partitions, so that they are all used over time.
+ */
+public class StickyPartitioner {
+
+    private final long windowMs;
+    private final Map<String, TopicState> topics = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param windowMs time window for which the records of a topic are pinned to the same partition, in milliseconds
+     *                 (0 for choosing a partition for each request, lower than 0 for disabling the partitioner)
+     */
+    public StickyPartitioner(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * @return if the records without key and partition are pinned to a partition by the bridge
+     */
+    public boolean isEnabled() {
+        return this.windowMs >= 0;
+    }
+
+    /**
+     * Get the partition for the records without key and partition of a produce request
+     *
+     * @param topic the topic the records are sent to
+     * @param partitions number of partitions of the topic
+     * @return the partition to send the records to
+     */
+    public synchronized int partition(String topic, int partitions) {
+        TopicState state = this.topics.computeIfAbsent(topic, t -> new TopicState());
+        state.resize(partitions);
+        long now = System.currentTimeMillis();
+        if (state.current < 0 || now >= state.windowEnd) {
+            state.current = state.leastLoaded();
+            state.windowEnd = now + this.windowMs;
+        }
+        return state.current;
+    }
+
+    /**
+     * Track the bytes of a record pinned to a partition and handed to the producer
+     *
+     * @param topic the topic
+     * @param partition the partition
+     * @param bytes size of the record
+     */
+    public synchronized void acquire(String topic, int partition, long bytes) {
+        TopicState state = this.topics.get(topic);
+        if (state != null && partition < state.inFlight.length) {
+            state.inFlight[partition] += bytes;
+        }
+    }
+
+    /**
+     * Release the bytes of a record pinned to a partition, once it's acknowledged or failed
+     *
+     * @param topic the topic
+     * @param partition the partition
+     * @param bytes size of the record
+     */
+    public synchronized void release(String topic, int partition, long bytes) {
+        TopicState state = this.topics.get(topic);
+        if (state != null && partition < state.inFlight.length) {
+            state.inFlight[partition] = Math.max(state.inFlight[partition] - bytes, 0);
+        }
+    }
+
+    /**
+     * @param topic the topic
+     * @param partition the partition
+     * @return the bytes in flight for the records pinned to the partition
+     */
+    public synchronized long inFlightBytes(String topic, int partition) {
+        TopicState state = this.topics.get(topic);
+        return state != null && partition < state.inFlight.length ? state.inFlight[partition] : 0;
+    }
+
+    private static class TopicState {
+
+        // bytes in flight for each partition
+        private long[] inFlight = new long[0];
+        // partition the records are currently pinned to, and when it has to be chosen again
+        private int current = -1;
+        private long windowEnd;
+        // partition the search for the least loaded one starts from
+        private int next;
+
+        void resize(int partitions) {
+            if (this.inFlight.length != partitions) {
+                // the partitions of a topic can only be increased, the in flight bytes of the existing ones are kept
+                this.inFlight = Arrays.copyOf(this.inFlight, partitions);
+                if (this.current >= partitions) {
+                    this.current = -1;
+                }
+                this.next = this.next % partitions;
+            }
+        }
+
+        int leastLoaded() {
+            int partitions = this.inFlight.length;
+            int chosen = this.next;
+            for (int i = 1; i < partitions; i++) {
+                int partition = (this.next + i) % partitions;
+                if (this.inFlight[partition] < this.inFlight[chosen]) {
+                    chosen = partition;
+                }
+            }
+            this.next = (chosen + 1) % partitions;
+            return chosen;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.kafka.admin.KafkaAdminClient;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bridge-wide cache of the topics metadata, so the number of partitions of each topic.
+ *
+ * It allows to reject records sent to not existing topics or partitions right away, instead of waiting
+ * for the producer to give up fetching their metadata. A topic not in the cache yet is described through
+ * an admin client on first use; the ones not existing are remembered as such until the next refresh,
+ * which runs periodically in the background and describes again all the cached topics.
+ * When the topic metadata can't be got (i.e. Kafka not reachable), the topic is reported as not known,
+ * leaving the decision to the producer.
+ */
+public class TopicMetadataCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TopicMetadataCache.class);
+
+    // maximum time for getting a topic metadata, before reporting it as not known
+    private static final String ADMIN_REQUEST_TIMEOUT_MS = "5000";
+
+    private final Vertx vertx;
+    private final Context context;
+    private final long refreshMs;
+
+    private AdminClient adminClient;
+    private KafkaAdminClient kafkaAdminClient;
+    private long refreshTimer = -1;
+
+    // number of partitions of each topic, 0 for the not existing ones
+    private final Map<String, Integer> topics = new HashMap<>();
+    // handlers waiting for a topic being described
+    private final Map<String, List<Handler<Integer>>> pending = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param refreshMs interval for refreshing the cached topics metadata, in milliseconds (lower than 0 for disabling the cache)
+     */
+    public TopicMetadataCache(Vertx vertx, long refreshMs) {
+        if (refreshMs == 0) {
+            throw new IllegalArgumentException("The topics metadata refresh interval has to be greater than 0");
+        }
+        this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
+        this.refreshMs = refreshMs;
+    }
+
+    /**
+     * Start the cache, getting the metadata of the provided topics right away
+     *
+     * @param kafkaConfig Kafka configuration for the admin client
+     * @param topics topics to get the metadata for
+     */
+    public void start(Map<String, Object> kafkaConfig, Collection<String> topics) {
+        if (this.refreshMs < 0) {
+            return;
+        }
+        Map<String, Object> adminConfig = new HashMap<>(kafkaConfig);
+        adminConfig.putIfAbsent(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, ADMIN_REQUEST_TIMEOUT_MS);
+        this.adminClient = AdminClient.create(adminConfig);
+        this.kafkaAdminClient = KafkaAdminClient.create(this.vertx, this.adminClient);
+
+        for (String topic : topics) {
+            this.partitions(topic, partitions -> {
+                if (partitions != null) {
+                    log.info("Topic {} metadata cached, {} partitions", topic, partitions);
+                }
+            });
+        }
+        this.refreshTimer = this.vertx.setPeriodic(this.refreshMs, t -> this.refresh());
+    }
+
+    /**
+     * Get the number of partitions of a topic, from the cache or describing the topic if not cached yet
+     *
+     * @param topic the topic
+     * @param handler handler called with the number of partitions, 0 if the topic doesn't exist
+     *                or null if it's not known (because the cache is disabled or the metadata can't be got)
+     */
+    public void partitions(String topic, Handler<Integer> handler) {
+        Integer partitions = this.topics.get(topic);
+        if (partitions != null || this.kafkaAdminClient == null) {
+            handler.handle(partitions);
+            return;
+        }
+
+        List<Handler<Integer>> handlers = this.pending.get(topic);
+        if (handlers != null) {
+            handlers.add(handler);
+            return;
+        }
+        handlers = new ArrayList<>();
+        handlers.add(handler);
+        this.pending.put(topic, handlers);
+        this.describe(topic);
+    }
+
+    /**
+     * Mark a topic as not existing, until the next refresh
+     *
+     * @param topic the topic
+     */
+    public void unknown(String topic) {
+        if (this.kafkaAdminClient != null) {
+            this.topics.put(topic, 0);
+        }
+    }
+
+    /**
+     * Stop refreshing the cache and close the admin client, off the event loop as closing it blocks
+     */
+    public void close() {
+        if (this.refreshTimer != -1) {
+            this.vertx.cancelTimer(this.refreshTimer);
+            this.refreshTimer = -1;
+        }
+        if (this.adminClient != null) {
+            AdminClient adminClient = this.adminClient;
+            this.adminClient = null;
+            this.kafkaAdminClient = null;
+            this.vertx.executeBlocking(future -> {
+                adminClient.close();
+                future.complete();
+            }, false, null);
+        }
+    }
+
+    private void refresh() {
+        // not existing topics are forgotten, for being described again on next use
+        Iterator<Map.Entry<String, Integer>> it = this.topics.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() == 0) {
+                it.remove();
+            }
+        }
+        for (String topic : new ArrayList<>(this.topics.keySet())) {
+            if (!this.pending.containsKey(topic)) {
+                this.pending.put(topic, new ArrayList<>());
+                this.describe(topic);
+            }
+        }
+    }
+
+    private void describe(String topic) {
+        this.kafkaAdminClient.describeTopics(Collections.singletonList(topic), done ->
+            // the admin client completes on its own thread
+            this.context.runOnContext(v -> {
+                Integer partitions;
+                if (done.succeeded()) {
+                    partitions = done.result().get(topic).getPartitions().size();
+                    this.topics.put(topic, partitions);
+                } else if (isUnknownTopic(done.cause())) {
+                    partitions = 0;
+                    this.topics.put(topic, partitions);
+                } else {
+                    log.warn("Failed to get metadata for topic {}", topic, done.cause());
+                    partitions = null;
+                    this.topics.remove(topic);
+                }
+                List<Handler<Integer>> handlers = this.pending.remove(topic);
+                if (handlers != null) {
+                    handlers.forEach(handler -> handler.handle(partitions));
+                }
+            })
+        );
+    }
+
+    private static boolean isUnknownTopic(Throwable t) {
+        return t instanceof UnknownTopicOrPartitionException || t.getCause() instanceof UnknownTopicOrPartitionException;
+    }
+}
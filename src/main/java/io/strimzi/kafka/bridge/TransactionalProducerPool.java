@@ -0,0 +1,293 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Bounded pool of transactional Kafka producers shared by the source bridge endpoints.
+ *
+ * Each producer has a stable transactional id, made of the configured prefix and its position in the pool,
+ * so that the transactions initialization (which fences any previous producer with the same id) is paid
+ * only once, when the producer is created, instead of for each transaction.
+ * A producer is leased exclusively for running a single transaction; when all of them are leased,
+ * the next leases wait for one to be released, up to a maximum number of waiting leases and for a maximum time,
+ * failing with {@link TransactionalProducersBusyException} otherwise. A producer which failed with a fatal error is closed
+ * on release and replaced by a new one, with the same transactional id, on a following lease.
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+public class TransactionalProducerPool<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionalProducerPool.class);
+
+    private final Vertx vertx;
+    private final String transactionalIdPrefix;
+    private final int size;
+    private final int maxWaiting;
+    private final long waitTimeoutMs;
+
+    // producers not leased and ids of the ones not created yet (or closed because of a fatal error)
+    private final Deque<Producer<K, V>> idle = new ArrayDeque<>();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private final Map<Producer<K, V>, Integer> ids = new IdentityHashMap<>();
+    // leases waiting for a producer to be released
+    private final Deque<Lease<K, V>> waiting = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param transactionalIdPrefix prefix for the transactional id of the producers
+     * @param size maximum number of producers in the pool (0 for disabling transactions)
+     * @param maxWaiting maximum number of leases waiting for a producer to be released
+     * @param waitTimeoutMs maximum time a lease waits for a producer to be released, in milliseconds
+     */
+    public TransactionalProducerPool(Vertx vertx, String transactionalIdPrefix, int size, int maxWaiting, long waitTimeoutMs) {
+        this.vertx = vertx;
+        this.transactionalIdPrefix = transactionalIdPrefix;
+        this.size = Math.max(size, 0);
+        this.maxWaiting = maxWaiting;
+        this.waitTimeoutMs = waitTimeoutMs;
+        for (int i = 0; i < this.size; i++) {
+            this.freeIds.add(i);
+        }
+    }
+
+    /**
+     * @return if the pool has producers for running transactions
+     */
+    public boolean isEnabled() {
+        return this.size > 0;
+    }
+
+    /**
+     * Lease a transactional producer, creating and initializing it if needed, or waiting for one to be released;
+     * the lease fails with {@link TransactionalProducersBusyException} when too many leases are waiting already
+     * or after waiting too long. Configuration and serializers are used only when a new producer is created.
+     *
+     * @param props Kafka producer configuration
+     * @param keySerializer Kafka serializer for the message key
+     * @param valueSerializer Kafka serializer for the message value
+     * @param handler handler called with the leased producer
+     */
+    public void acquire(Properties props, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                        Handler<AsyncResult<Producer<K, V>>> handler) {
+        Lease<K, V> lease = new Lease<>(props, keySerializer, valueSerializer, handler);
+        Producer<K, V> producer;
+        Integer id;
+        boolean busy = false;
+        synchronized (this) {
+            if (this.closed || !this.isEnabled()) {
+                producer = null;
+                id = null;
+            } else {
+                producer = this.idle.poll();
+                id = producer == null ? this.freeIds.poll() : null;
+                if (producer == null && id == null) {
+                    if (this.waiting.size() < this.maxWaiting) {
+                        this.waiting.add(lease);
+                        lease.timer = this.vertx.setTimer(this.waitTimeoutMs, t -> this.expired(lease));
+                        return;
+                    }
+                    busy = true;
+                }
+            }
+        }
+
+        if (busy) {
+            handler.handle(Future.failedFuture(new TransactionalProducersBusyException(
+                    "Too many requests waiting for a transactional producer", this.waitTimeoutMs)));
+        } else if (producer != null) {
+            handler.handle(Future.succeededFuture(producer));
+        } else if (id != null) {
+            this.create(id, lease);
+        } else {
+            handler.handle(Future.failedFuture(new IllegalStateException("Transactional producers are not available")));
+        }
+    }
+
+    /**
+     * Release a lease on a producer previously got through {@link #acquire(Properties, Serializer, Serializer, Handler)}
+     *
+     * @param producer the Kafka producer to release
+     * @param fatal if the producer failed with a fatal error and can't run transactions anymore
+     */
+    public void release(Producer<K, V> producer, boolean fatal) {
+        Lease<K, V> next;
+        Integer id;
+        synchronized (this) {
+            id = this.ids.get(producer);
+            if (id == null) {
+                return;
+            }
+            if (fatal || this.closed) {
+                this.ids.remove(producer);
+                this.closeProducer(producer, id);
+            }
+            next = this.closed ? null : this.nextWaiting();
+            if (next == null) {
+                if (fatal || this.closed) {
+                    this.freeIds.add(id);
+                } else {
+                    this.idle.add(producer);
+                }
+                return;
+            }
+        }
+
+        if (fatal) {
+            // the closed producer is replaced by a new one, with the same transactional id
+            this.create(id, next);
+        } else {
+            next.handler.handle(Future.succeededFuture(producer));
+        }
+    }
+
+    private void expired(Lease<K, V> lease) {
+        synchronized (this) {
+            if (!this.waiting.remove(lease)) {
+                return;
+            }
+        }
+        lease.handler.handle(Future.failedFuture(new TransactionalProducersBusyException(
+                "Timed out waiting for a transactional producer", this.waitTimeoutMs)));
+    }
+
+    /**
+     * @return the next lease waiting for a producer, with its timeout cancelled, null if none
+     */
+    private Lease<K, V> nextWaiting() {
+        Lease<K, V> next = this.waiting.poll();
+        if (next != null) {
+            this.vertx.cancelTimer(next.timer);
+        }
+        return next;
+    }
+
+    private void create(int id, Lease<K, V> lease) {
+        String transactionalId = this.transactionalIdPrefix + "-" + id;
+        this.vertx.<Producer<K, V>>executeBlocking(future -> {
+            Properties props = new Properties();
+            props.putAll(lease.props);
+            props.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+            props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+            Producer<K, V> producer = new KafkaProducer<>(props, lease.keySerializer, lease.valueSerializer);
+            try {
+                // it fences any previous producer with the same transactional id, aborting its pending transaction
+                producer.initTransactions();
+            } catch (Exception e) {
+                // not waiting for the pending initialization, which would block the close forever
+                producer.close(Duration.ZERO);
+                throw e;
+            }
+            future.complete(producer);
+        }, false, done -> this.created(id, transactionalId, lease, done));
+    }
+
+    private void created(int id, String transactionalId, Lease<K, V> lease, AsyncResult<Producer<K, V>> done) {
+        Lease<K, V> next = null;
+        synchronized (this) {
+            if (done.succeeded()) {
+                this.ids.put(done.result(), id);
+            } else {
+                // a lease waiting for a producer gets its own attempt at creating it
+                next = this.closed ? null : this.nextWaiting();
+                if (next == null) {
+                    this.freeIds.add(id);
+                }
+            }
+        }
+        if (done.succeeded()) {
+            log.info("Created transactional Kafka producer {}", transactionalId);
+        } else {
+            log.error("Failed to create transactional Kafka producer {}", transactionalId, done.cause());
+        }
+        lease.handler.handle(done);
+        if (next != null) {
+            this.create(id, next);
+        }
+    }
+
+    private void closeProducer(Producer<K, V> producer, int id) {
+        log.warn("Closing transactional Kafka producer {}-{}", this.transactionalIdPrefix, id);
+        this.vertx.executeBlocking(future -> {
+            // it can't run transactions anymore, so there is nothing worth waiting for
+            producer.close(Duration.ZERO);
+            future.complete();
+        }, false, null);
+    }
+
+    /**
+     * @return the number of producers created and not closed
+     */
+    public synchronized int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * @return the number of producers not leased
+     */
+    public synchronized int idle() {
+        return this.idle.size();
+    }
+
+    /**
+     * Close all the producers not leased, off the event loop as closing them blocks; the leased ones are closed when released
+     */
+    public synchronized void close() {
+        this.closed = true;
+        for (Producer<K, V> producer : this.idle) {
+            this.ids.remove(producer);
+            this.vertx.executeBlocking(future -> {
+                producer.close();
+                future.complete();
+            }, false, null);
+        }
+        this.idle.clear();
+        for (Lease<K, V> lease : this.waiting) {
+            this.vertx.cancelTimer(lease.timer);
+            lease.handler.handle(Future.failedFuture(new IllegalStateException("Transactional producers are closed")));
+        }
+        this.waiting.clear();
+    }
+
+    private static class Lease<K, V> {
+
+        private final Properties props;
+        private final Serializer<K> keySerializer;
+        private final Serializer<V> valueSerializer;
+        private final Handler<AsyncResult<Producer<K, V>>> handler;
+        // timer failing the lease if it waits too long for a producer
+        private long timer = -1;
+
+        Lease(Properties props, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+              Handler<AsyncResult<Producer<K, V>>> handler) {
+            this.props = props;
+            this.keySerializer = keySerializer;
+            this.valueSerializer = valueSerializer;
+            this.handler = handler;
+        }
+    }
+}
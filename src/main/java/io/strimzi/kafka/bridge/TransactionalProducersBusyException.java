@@ -0,0 +1,29 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+/**
+ * Failure of a transactional producer lease, because all the producers are leased and too many leases
+ * are waiting already or the lease waited too long for one to be released
+ */
+public class TransactionalProducersBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMs;
+
+    public TransactionalProducersBusyException(String message, long retryAfterMs) {
+        super(message);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * @return the suggested delay before retrying, in milliseconds
+     */
+    public long getRetryAfterMs() {
+        return this.retryAfterMs;
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.converter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Avro schema, for encoding JSON data in the Avro binary format and decoding it back.
+ *
+ * It supports all the Avro types (primitive, record, enum, array, map, union and fixed) with named types
+ * referenced by their (full) name; logical types are handled as their underlying type.
+ * The JSON data follows the Avro JSON encoding, with bytes and fixed as strings with code points from 0 to 255;
+ * a union value can be provided as the value itself, matched against the union branches in order,
+ * or wrapped in an object with the branch type name as the only field, and it's always decoded as the value itself.
+ * The binary data is just the encoded datum, without any schema id or fingerprint.
+ */
+public class AvroSchema {
+
+    private enum Type {
+        NULL, BOOLEAN, INT, LONG, FLOAT, DOUBLE, BYTES, STRING, RECORD, ENUM, ARRAY, MAP, UNION, FIXED
+    }
+
+    private final Type type;
+    private final String name;
+    // record fields, enum symbols, array items or map values, union branches, fixed size
+    private List<Field> fields;
+    private List<String> symbols;
+    private AvroSchema items;
+    private List<AvroSchema> branches;
+    private int size;
+
+    private AvroSchema(Type type, String name) {
+        this.type = type;
+        this.name = name;
+    }
+
+    /**
+     * Parse an Avro schema from its JSON definition
+     *
+     * @param definition the schema JSON definition
+     * @return the Avro schema
+     */
+    public static AvroSchema parse(String definition) {
+        String trimmed = definition.trim();
+        Object json;
+        if (trimmed.startsWith("{")) {
+            json = new JsonObject(trimmed);
+        } else if (trimmed.startsWith("[")) {
+            json = new JsonArray(trimmed);
+        } else {
+            json = new JsonArray("[" + trimmed + "]").getValue(0);
+        }
+        return parse(json, null, new HashMap<>());
+    }
+
+    private static AvroSchema parse(Object json, String namespace, Map<String, AvroSchema> names) {
+        if (json instanceof String) {
+            return named((String) json, namespace, names);
+        }
+        if (json instanceof JsonArray) {
+            return parseUnion((JsonArray) json, namespace, names);
+        }
+        if (!(json instanceof JsonObject)) {
+            throw new IllegalArgumentException("Invalid Avro schema " + json);
+        }
+
+        JsonObject definition = (JsonObject) json;
+        if (!(definition.getValue("type") instanceof String)) {
+            // i.e. {"type": {"type": "array", ...}}
+            return parse(definition.getValue("type"), namespace, names);
+        }
+        String typeName = definition.getString("type");
+        switch (typeName) {
+            case "record":
+            case "error":
+            case "enum":
+            case "fixed":
+                return parseNamed(definition, typeName, namespace, names);
+            case "array":
+                return parseContainer(Type.ARRAY, definition.getValue("items"), namespace, names);
+            case "map":
+                return parseContainer(Type.MAP, definition.getValue("values"), namespace, names);
+            default:
+                return named(typeName, namespace, names);
+        }
+    }
+
+    private static AvroSchema parseUnion(JsonArray json, String namespace, Map<String, AvroSchema> names) {
+        AvroSchema union = new AvroSchema(Type.UNION, null);
+        union.branches = new ArrayList<>();
+        for (Object branch : json) {
+            union.branches.add(parse(branch, namespace, names));
+        }
+        return union;
+    }
+
+    private static AvroSchema parseContainer(Type type, Object items, String namespace, Map<String, AvroSchema> names) {
+        AvroSchema container = new AvroSchema(type, null);
+        container.items = parse(items, namespace, names);
+        return container;
+    }
+
+    private static AvroSchema parseNamed(JsonObject definition, String typeName, String namespace, Map<String, AvroSchema> names) {
+        String name = definition.getString("name");
+        if (name == null) {
+            throw new IllegalArgumentException("Missing name for Avro " + typeName + " schema");
+        }
+        String fullName = fullName(name, definition.getString("namespace", namespace));
+        String ns = fullName.contains(".") ? fullName.substring(0, fullName.lastIndexOf('.')) : null;
+
+        AvroSchema schema;
+        switch (typeName) {
+            case "enum":
+                schema = new AvroSchema(Type.ENUM, fullName);
+                schema.symbols = new ArrayList<>();
+                for (Object symbol : definition.getJsonArray("symbols", new JsonArray())) {
+                    schema.symbols.add((String) symbol);
+                }
+                names.put(fullName, schema);
+                break;
+            case "fixed":
+                schema = new AvroSchema(Type.FIXED, fullName);
+                schema.size = definition.getInteger("size", 0);
+                names.put(fullName, schema);
+                break;
+            default:
+                schema = new AvroSchema(Type.RECORD, fullName);
+                // registered before the fields are parsed, so that they can reference the record itself
+                names.put(fullName, schema);
+                schema.fields = new ArrayList<>();
+                for (Object field : definition.getJsonArray("fields", new JsonArray())) {
+                    JsonObject fieldDefinition = (JsonObject) field;
+                    schema.fields.add(new Field(fieldDefinition.getString("name"),
+                            parse(fieldDefinition.getValue("type"), ns, names),
+                            fieldDefinition.containsKey("default"), fieldDefinition.getValue("default")));
+                }
+                break;
+        }
+        return schema;
+    }
+
+    private static AvroSchema named(String typeName, String namespace, Map<String, AvroSchema> names) {
+        try {
+            Type type = Type.valueOf(typeName.toUpperCase(Locale.ROOT));
+            if (type.compareTo(Type.STRING) <= 0) {
+                return new AvroSchema(type, typeName);
+            }
+        } catch (IllegalArgumentException e) {
+            // not a primitive type, so a reference to a named one
+        }
+        AvroSchema schema = names.get(fullName(typeName, namespace));
+        if (schema == null) {
+            schema = names.get(typeName);
+        }
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown Avro type " + typeName);
+        }
+        return schema;
+    }
+
+    private static String fullName(String name, String namespace) {
+        return name.contains(".") || namespace == null || namespace.isEmpty() ? name : namespace + "." + name;
+    }
+
+    /**
+     * Encode JSON data in the Avro binary format
+     *
+     * @param datum the JSON data
+     * @return the Avro binary encoded data
+     */
+    public byte[] encode(JsonNode datum) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.write(datum == null ? NullNode.getInstance() : datum, out, "");
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode Avro binary data as JSON
+     *
+     * @param data the Avro binary encoded data
+     * @return the JSON data, as JsonObject, JsonArray, String, Number, Boolean or null
+     */
+    public Object decode(byte[] data) {
+        Reader reader = new Reader(data);
+        Object datum = this.read(reader);
+        if (reader.pos != data.length) {
+            throw new IllegalArgumentException("Unexpected " + (data.length - reader.pos) + " trailing bytes after Avro datum");
+        }
+        return datum;
+    }
+
+    @SuppressWarnings({"checkstyle:CyclomaticComplexity"})
+    private void write(JsonNode datum, ByteArrayOutputStream out, String path) {
+        switch (this.type) {
+            case NULL:
+                check(datum.isNull(), path);
+                break;
+            case BOOLEAN:
+                check(datum.isBoolean(), path);
+                out.write(datum.booleanValue() ? 1 : 0);
+                break;
+            case INT:
+                check(datum.canConvertToInt() && datum.isIntegralNumber(), path);
+                writeLong(datum.intValue(), out);
+                break;
+            case LONG:
+                check(datum.canConvertToLong() && datum.isIntegralNumber(), path);
+                writeLong(datum.longValue(), out);
+                break;
+            case FLOAT:
+                check(datum.isNumber(), path);
+                writeFixedLong(Float.floatToIntBits(datum.floatValue()), 4, out);
+                break;
+            case DOUBLE:
+                check(datum.isNumber(), path);
+                writeFixedLong(Double.doubleToLongBits(datum.doubleValue()), 8, out);
+                break;
+            case BYTES:
+            case STRING:
+                check(datum.isTextual(), path);
+                byte[] bytes = datum.textValue().getBytes(this.type == Type.STRING ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+                writeLong(bytes.length, out);
+                out.write(bytes, 0, bytes.length);
+                break;
+            case FIXED:
+                check(datum.isTextual() && datum.textValue().length() == this.size, path);
+                out.write(datum.textValue().getBytes(StandardCharsets.ISO_8859_1), 0, this.size);
+                break;
+            case ENUM:
+                int index = datum.isTextual() ? this.symbols.indexOf(datum.textValue()) : -1;
+                check(index >= 0, path);
+                writeLong(index, out);
+                break;
+            default:
+                this.writeComplex(datum, out, path);
+                break;
+        }
+    }
+
+    private void writeComplex(JsonNode datum, ByteArrayOutputStream out, String path) {
+        switch (this.type) {
+            case RECORD:
+                check(datum.isObject(), path);
+                for (Field field : this.fields) {
+                    JsonNode value = datum.get(field.name);
+                    if (value == null && field.hasDefault) {
+                        value = field.defaultValue();
+                    }
+                    field.schema.write(value == null ? NullNode.getInstance() : value, out, path + "/" + field.name);
+                }
+                break;
+            case ARRAY:
+                check(datum.isArray(), path);
+                if (datum.size() > 0) {
+                    writeLong(datum.size(), out);
+                    for (int i = 0; i < datum.size(); i++) {
+                        this.items.write(datum.get(i), out, path + "/" + i);
+                    }
+                }
+                writeLong(0, out);
+                break;
+            case MAP:
+                check(datum.isObject(), path);
+                if (datum.size() > 0) {
+                    writeLong(datum.size(), out);
+                    Iterator<Map.Entry<String, JsonNode>> entries = datum.fields();
+                    while (entries.hasNext()) {
+                        Map.Entry<String, JsonNode> entry = entries.next();
+                        byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                        writeLong(key.length, out);
+                        out.write(key, 0, key.length);
+                        this.items.write(entry.getValue(), out, path + "/" + entry.getKey());
+                    }
+                }
+                writeLong(0, out);
+                break;
+            default:
+                this.writeUnion(datum, out, path);
+                break;
+        }
+    }
+
+    private void writeUnion(JsonNode datum, ByteArrayOutputStream out, String path) {
+        // wrapped value, i.e. {"string": "foo"} or {"com.example.Record": {...}}
+        if (datum.isObject() && datum.size() == 1) {
+            String branchName = datum.fieldNames().next();
+            for (int i = 0; i < this.branches.size(); i++) {
+                if (branchName.equals(this.branches.get(i).typeName())) {
+                    writeLong(i, out);
+                    this.branches.get(i).write(datum.get(branchName), out, path);
+                    return;
+                }
+            }
+        }
+        for (int i = 0; i < this.branches.size(); i++) {
+            ByteArrayOutputStream branchOut = new ByteArrayOutputStream();
+            try {
+                this.branches.get(i).write(datum, branchOut, path);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            writeLong(i, out);
+            out.write(branchOut.toByteArray(), 0, branchOut.size());
+            return;
+        }
+        throw new IllegalArgumentException("Value at " + (path.isEmpty() ? "/" : path) + " doesn't match any of the union types");
+    }
+
+    private String typeName() {
+        return this.name != null ? this.name : this.type.name().toLowerCase(Locale.ROOT);
+    }
+
+    @SuppressWarnings({"checkstyle:CyclomaticComplexity"})
+    private Object read(Reader reader) {
+        switch (this.type) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return reader.readByte() != 0;
+            case INT:
+                return (int) reader.readLong();
+            case LONG:
+                return reader.readLong();
+            case FLOAT:
+                return Float.intBitsToFloat((int) reader.readFixedLong(4));
+            case DOUBLE:
+                return Double.longBitsToDouble(reader.readFixedLong(8));
+            case BYTES:
+                return new String(reader.readBytes((int) reader.readLong()), StandardCharsets.ISO_8859_1);
+            case STRING:
+                return new String(reader.readBytes((int) reader.readLong()), StandardCharsets.UTF_8);
+            case FIXED:
+                return new String(reader.readBytes(this.size), StandardCharsets.ISO_8859_1);
+            case ENUM:
+                return this.symbols.get(reader.readIndex(this.symbols.size()));
+            case UNION:
+                return this.branches.get(reader.readIndex(this.branches.size())).read(reader);
+            default:
+                return this.readComplex(reader);
+        }
+    }
+
+    private Object readComplex(Reader reader) {
+        switch (this.type) {
+            case RECORD:
+                JsonObject record = new JsonObject();
+                for (Field field : this.fields) {
+                    record.put(field.name, field.schema.read(reader));
+                }
+                return record;
+            case ARRAY:
+                JsonArray array = new JsonArray();
+                for (long count = reader.readBlockCount(); count != 0; count = reader.readBlockCount()) {
+                    for (long i = 0; i < count; i++) {
+                        array.add(this.items.read(reader));
+                    }
+                }
+                return array;
+            default:
+                JsonObject map = new JsonObject();
+                for (long count = reader.readBlockCount(); count != 0; count = reader.readBlockCount()) {
+                    for (long i = 0; i < count; i++) {
+                        String key = new String(reader.readBytes((int) reader.readLong()), StandardCharsets.UTF_8);
+                        map.put(key, this.items.read(reader));
+                    }
+                }
+                return map;
+        }
+    }
+
+    private void check(boolean valid, String path) {
+        if (!valid) {
+            throw new IllegalArgumentException("Value at " + (path.isEmpty() ? "/" : path) + " is not a valid Avro " + this.typeName());
+        }
+    }
+
+    private static void writeLong(long value, ByteArrayOutputStream out) {
+        // zig-zag variable length encoding
+        long n = (value << 1) ^ (value >> 63);
+        while ((n & ~0x7FL) != 0) {
+            out.write((int) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        out.write((int) n);
+    }
+
+    private static void writeFixedLong(long bits, int bytes, ByteArrayOutputStream out) {
+        // little endian
+        for (int i = 0; i < bytes; i++) {
+            out.write((int) (bits >>> (8 * i)) & 0xFF);
+        }
+    }
+
+    private static class Field {
+
+        private final String name;
+        private final AvroSchema schema;
+        private final boolean hasDefault;
+        private final Object defaultValue;
+
+        Field(String name, AvroSchema schema, boolean hasDefault, Object defaultValue) {
+            this.name = name;
+            this.schema = schema;
+            this.hasDefault = hasDefault;
+            this.defaultValue = defaultValue;
+        }
+
+        JsonNode defaultValue() {
+            // the default value of a union field is for its first branch, so it's wrapped for matching it
+            JsonNode value = Json.mapper.valueToTree(
+                    this.defaultValue instanceof JsonObject ? ((JsonObject) this.defaultValue).getMap() :
+                    this.defaultValue instanceof JsonArray ? ((JsonArray) this.defaultValue).getList() : this.defaultValue);
+            if (this.schema.type == Type.UNION && !this.schema.branches.isEmpty()) {
+                return Json.mapper.createObjectNode()
+                        .set(this.schema.branches.get(0).typeName(), value);
+            }
+            return value;
+        }
+    }
+
+    private static class Reader {
+
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() {
+            if (this.pos >= this.data.length) {
+                throw new IllegalArgumentException("Unexpected end of Avro datum");
+            }
+            return this.data[this.pos++];
+        }
+
+        long readLong() {
+            long n = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Invalid Avro variable length integer");
+                }
+                b = this.readByte();
+                n |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (n >>> 1) ^ -(n & 1);
+        }
+
+        /**
+         * Read the index of an enum symbol or of a union branch
+         *
+         * @param size number of symbols or branches
+         * @return the index
+         */
+        int readIndex(int size) {
+            long index = this.readLong();
+            if (index < 0 || index >= size) {
+                throw new IllegalArgumentException("Invalid Avro enum symbol or union branch index " + index);
+            }
+            return (int) index;
+        }
+
+        long readBlockCount() {
+            long count = this.readLong();
+            if (count < 0) {
+                // negative count is followed by the block size in bytes, not needed here
+                this.readLong();
+                return -count;
+            }
+            return count;
+        }
+
+        long readFixedLong(int bytes) {
+            long bits = 0;
+            for (int i = 0; i < bytes; i++) {
+                bits |= (long) (this.readByte() & 0xFF) << (8 * i);
+            }
+            return bits;
+        }
+
+        byte[] readBytes(int length) {
+            if (length < 0 || this.pos + length > this.data.length) {
+                throw new IllegalArgumentException("Unexpected end of Avro datum");
+            }
+            byte[] bytes = new byte[length];
+            System.arraycopy(this.data, this.pos, bytes, 0, length);
+            this.pos += length;
+            return bytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.typeName();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.converter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the Avro schemas used for encoding and decoding keys and values in the Avro embedded format.
+ *
+ * The schemas are read from a local directory acting as the schema registry, with a [subject].avsc file
+ * for each subject; the subjects are named after the topic, as [topic]-key and [topic]-value.
+ * All the schemas are loaded when the cache is started, so that the records hot path never reads them;
+ * when there are more schemas than the cache size, the least recently used ones are evicted and read again on next use.
+ */
+public class AvroSchemaCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AvroSchemaCache.class);
+
+    private static final String SCHEMA_FILE_EXTENSION = ".avsc";
+
+    private final File dir;
+    private final int size;
+    private final Map<String, AvroSchema> schemas;
+
+    /**
+     * Constructor
+     *
+     * @param dir directory with the schema files (null or empty for disabling the Avro embedded format)
+     * @param size maximum number of schemas kept in memory
+     */
+    public AvroSchemaCache(String dir, int size) {
+        this.dir = dir == null || dir.isEmpty() ? null : new File(dir);
+        this.size = Math.max(size, 1);
+        this.schemas = new LinkedHashMap<String, AvroSchema>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AvroSchema> eldest) {
+                return size() > AvroSchemaCache.this.size;
+            }
+        };
+    }
+
+    /**
+     * @return if the Avro embedded format is enabled, having a directory with the schemas
+     */
+    public boolean isEnabled() {
+        return this.dir != null;
+    }
+
+    /**
+     * Start the cache, loading the schemas in the directory up to the cache size
+     */
+    public void start() {
+        if (!this.isEnabled()) {
+            return;
+        }
+        File[] files = this.dir.listFiles((d, name) -> name.endsWith(SCHEMA_FILE_EXTENSION));
+        if (files == null) {
+            log.warn("Avro schemas directory {} not readable", this.dir);
+            return;
+        }
+        for (File file : files) {
+            String subject = file.getName().substring(0, file.getName().length() - SCHEMA_FILE_EXTENSION.length());
+            try {
+                this.schema(subject);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid Avro schema for subject {}: {}", subject, e.getMessage());
+            }
+        }
+        log.info("Avro schemas cached, {} subjects", this.cached());
+    }
+
+    /**
+     * @param topic the topic
+     * @return the schema for the keys of the records in the topic, null if not available
+     */
+    public AvroSchema keySchema(String topic) {
+        return this.schema(topic + "-key");
+    }
+
+    /**
+     * @param topic the topic
+     * @return the schema for the values of the records in the topic, null if not available
+     */
+    public AvroSchema valueSchema(String topic) {
+        return this.schema(topic + "-value");
+    }
+
+    /**
+     * Get the schema for a subject, from the cache or from its file if not cached
+     *
+     * @param subject the subject
+     * @return the schema, null if not available
+     * @throws IllegalArgumentException if the schema file isn't a valid Avro schema
+     */
+    public synchronized AvroSchema schema(String subject) {
+        if (!this.isEnabled()) {
+            return null;
+        }
+        AvroSchema schema = this.schemas.get(subject);
+        if (schema != null) {
+            return schema;
+        }
+        File file = new File(this.dir, subject + SCHEMA_FILE_EXTENSION);
+        // not allowing a subject to escape the schemas directory
+        if (!this.dir.equals(file.getParentFile()) || !file.isFile()) {
+            return null;
+        }
+        try {
+            schema = AvroSchema.parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Failed to read Avro schema for subject {}", subject, e);
+            return null;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid Avro schema for subject " + subject + ": " + e.getMessage());
+        }
+        this.schemas.put(subject, schema);
+        return schema;
+    }
+
+    /**
+     * @return the number of schemas in the cache
+     */
+    public synchronized int cached() {
+        return this.schemas.size();
+    }
+}
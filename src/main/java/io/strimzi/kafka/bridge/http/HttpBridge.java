@@ -5,6 +5,8 @@
 
 package io.strimzi.kafka.bridge.http;
 
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.strimzi.kafka.bridge.BridgeContentType;
 import io.strimzi.kafka.bridge.EmbeddedFormat;
@@ -22,6 +24,7 @@ import io.vertx.core.http.HttpConnection;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -37,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -77,6 +81,7 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         this.httpServer = this.vertx.createHttpServer(httpServerOptions)
                 .connectionHandler(this::processConnection)
                 .requestHandler(this.router)
+                .websocketHandler(this::processWebSocket)
                 .listen(httpServerAsyncResult -> {
                     if (httpServerAsyncResult.succeeded()) {
                         log.info("HTTP-Kafka Bridge started and listening on port {}", httpServerAsyncResult.result().actualPort());
@@ -88,6 +93,8 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
                         if (this.bridgeConfig.getHttpConfig().getConsumerTimeout() > -1) {
                             startInactiveConsumerDeletionTimer(this.bridgeConfig.getHttpConfig().getConsumerTimeout());
                         }
+                        startReceiptsExpirationTimer(this.bridgeConfig.getHttpConfig().getReceiptsTtl());
+                        startIdempotencyExpirationTimer(this.bridgeConfig.getHttpConfig().getIdempotencyTtl());
 
                         this.isReady = true;
                         startFuture.complete();
@@ -107,7 +114,10 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
                 Map.Entry<String, Long> item = (Map.Entry) it.next();
                 if (item.getValue() + timeoutInMs < System.currentTimeMillis()) {
                     SinkBridgeEndpoint<byte[], byte[]> deleteSinkEndpoint = this.httpBridgeContext.getHttpSinkEndpoints().get(item.getKey());
-                    if (deleteSinkEndpoint != null) {
+                    if (isStreaming(deleteSinkEndpoint)) {
+                        // a consumer streaming records is in use, even without requests
+                        item.setValue(System.currentTimeMillis());
+                    } else if (deleteSinkEndpoint != null) {
                         deleteSinkEndpoint.close();
                         this.httpBridgeContext.getHttpSinkEndpoints().remove(item.getKey());
                         log.warn("Consumer {} deleted after inactivity timeout ({}s).", item.getKey(), timeout);
@@ -118,14 +128,38 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         });
     }
 
+    private static boolean isStreaming(SinkBridgeEndpoint<?, ?> sinkEndpoint) {
+        return sinkEndpoint instanceof HttpSinkBridgeEndpoint && ((HttpSinkBridgeEndpoint<?, ?>) sinkEndpoint).isStreaming();
+    }
+
+    private void startReceiptsExpirationTimer(long ttl) {
+        long ttlInMs = Math.max(ttl * 1000L, 2L);
+        vertx.setPeriodic(ttlInMs / 2, ignore -> {
+            int expired = this.httpBridgeContext.getReceiptStore().expire();
+            log.debug("Expired {} delivery receipts, {} left", expired, this.httpBridgeContext.getReceiptStore().size());
+        });
+    }
+
+    private void startIdempotencyExpirationTimer(long ttl) {
+        long ttlInMs = Math.max(ttl * 1000L, 2L);
+        vertx.setPeriodic(ttlInMs / 2, ignore -> {
+            int expired = this.httpBridgeContext.getIdempotencyStore().expire();
+            log.debug("Expired {} idempotent responses, {} left", expired, this.httpBridgeContext.getIdempotencyStore().size());
+        });
+    }
+
     @Override
     public void start(Future<Void> startFuture) throws Exception {
 
         OpenAPI3RouterFactory.create(vertx, "openapi.json", ar -> {
             if (ar.succeeded()) {
                 OpenAPI3RouterFactory routerFactory = ar.result();
+                routerFactory.addGlobalHandler(this::compressionHandler);
                 routerFactory.addHandlerByOperationId(this.SEND.getOperationId().toString(), this.SEND);
                 routerFactory.addHandlerByOperationId(this.SEND_TO_PARTITION.getOperationId().toString(), this.SEND_TO_PARTITION);
+                routerFactory.addHandlerByOperationId(this.SEND_STREAM.getOperationId().toString(), this.SEND_STREAM);
+                routerFactory.addHandlerByOperationId(this.SEND_TO_TOPICS.getOperationId().toString(), this.SEND_TO_TOPICS);
+                routerFactory.addHandlerByOperationId(this.GET_RECEIPT.getOperationId().toString(), this.GET_RECEIPT);
                 routerFactory.addHandlerByOperationId(this.CREATE_CONSUMER.getOperationId().toString(), this.CREATE_CONSUMER);
                 routerFactory.addHandlerByOperationId(this.DELETE_CONSUMER.getOperationId().toString(), this.DELETE_CONSUMER);
                 routerFactory.addHandlerByOperationId(this.SUBSCRIBE.getOperationId().toString(), this.SUBSCRIBE);
@@ -133,6 +167,7 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
                 routerFactory.addHandlerByOperationId(this.LIST_SUBSCRIPTIONS.getOperationId().toString(), this.LIST_SUBSCRIPTIONS);
                 routerFactory.addHandlerByOperationId(this.ASSIGN.getOperationId().toString(), this.ASSIGN);
                 routerFactory.addHandlerByOperationId(this.POLL.getOperationId().toString(), this.POLL);
+                routerFactory.addHandlerByOperationId(this.POLL_STREAM.getOperationId().toString(), this.POLL_STREAM);
                 routerFactory.addHandlerByOperationId(this.COMMIT.getOperationId().toString(), this.COMMIT);
                 routerFactory.addHandlerByOperationId(this.SEEK.getOperationId().toString(), this.SEEK);
                 routerFactory.addHandlerByOperationId(this.SEEK_TO_BEGINNING.getOperationId().toString(), this.SEEK_TO_BEGINNING);
@@ -141,6 +176,12 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
                 routerFactory.addHandlerByOperationId(this.READY.getOperationId().toString(), this.READY);
                 routerFactory.addHandlerByOperationId(this.OPENAPI.getOperationId().toString(), this.OPENAPI);
 
+                this.httpBridgeContext = new HttpBridgeContext<>(this.vertx, this.bridgeConfig.getHttpConfig());
+
+                // streaming requests are read record by record, not buffered by the body handler
+                // the others get a body buffer sized on the Content-Length, so that a raw body can be sent as it is
+                routerFactory.setBodyHandler(new HttpStreamingBodyHandler(this.httpBridgeContext.getAdmissionController())
+                        .setPreallocateBodyBuffer(true));
                 this.router = routerFactory.getRouter();
 
                 // handling validation errors and not existing endpoints
@@ -148,7 +189,9 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
                 this.router.errorHandler(HttpResponseStatus.NOT_FOUND.code(), this::errorHandler);
 
                 log.info("Starting HTTP-Kafka bridge verticle...");
-                this.httpBridgeContext = new HttpBridgeContext<>();
+                this.warmUpTopicsMetadata();
+                // schemas are loaded before accepting requests, so the records hot path doesn't read them
+                this.httpBridgeContext.getAvroSchemaCache().start();
                 this.bindHttpServer(startFuture);
             } else {
                 log.error("Failed to create OpenAPI router factory");
@@ -171,6 +214,10 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         // for each connection, we have to close the connection itself but before that
         // all the sink/source endpoints (so the related links inside each of them)
         this.httpBridgeContext.closeAllSourceBridgeEndpoints();
+        // source endpoints just released their leases, the shared producers are closed here
+        this.httpBridgeContext.getProducerPool().close();
+        this.httpBridgeContext.getTopicMetadataCache().close();
+        this.httpBridgeContext.getTransactionalProducerPool().close();
 
         if (this.httpServer != null) {
 
@@ -187,13 +234,54 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         }
     }
 
+    private void warmUpTopicsMetadata() {
+        List<String> topics = this.bridgeConfig.getHttpConfig().getTopicsMetadataPrewarm();
+        this.httpBridgeContext.getTopicMetadataCache().start(this.bridgeConfig.getKafkaConfig().getConfig(), topics);
+        if (!topics.isEmpty()) {
+            // the endpoint leases the shared producer, which keeps the metadata once the endpoint is closed
+            SourceBridgeEndpoint<byte[], byte[]> source = new HttpSourceBridgeEndpoint<>(this.vertx, this.bridgeConfig, this.httpBridgeContext,
+                    EmbeddedFormat.BINARY, new ByteArraySerializer(), new ByteArraySerializer());
+            source.open();
+            source.warmUp(topics);
+            source.close();
+        }
+    }
+
     private HttpServerOptions httpServerOptions() {
         HttpServerOptions httpServerOptions = new HttpServerOptions();
         httpServerOptions.setHost(this.bridgeConfig.getHttpConfig().getHost());
         httpServerOptions.setPort(this.bridgeConfig.getHttpConfig().getPort());
+        // request bodies are decompressed as they are read, so streaming requests as well
+        httpServerOptions.setDecompressionSupported(this.bridgeConfig.getHttpConfig().isDecompressionEnabled());
+        httpServerOptions.setCompressionSupported(this.bridgeConfig.getHttpConfig().isCompressionEnabled());
+        httpServerOptions.setCompressionLevel(this.bridgeConfig.getHttpConfig().getCompressionLevel());
+        // a message is aggregated from its frames by the bridge, which applies the same limit to the whole message
+        httpServerOptions.setMaxWebsocketFrameSize(this.bridgeConfig.getHttpConfig().getWebSocketMaxMessageSize());
         return httpServerOptions;
     }
 
+    private void compressionHandler(RoutingContext routingContext) {
+        // a request body which is still encoded wasn't decompressed, so the encoding is not supported
+        String contentEncoding = routingContext.request().getHeader(HttpHeaderNames.CONTENT_ENCODING);
+        if (contentEncoding != null && !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(contentEncoding)) {
+            HttpBridgeError error = new HttpBridgeError(HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE.code(),
+                    "Content-Encoding " + contentEncoding + " is not supported");
+            HttpUtils.sendResponse(routingContext, HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE.code(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+            return;
+        }
+
+        // compressing small response bodies is not worth it
+        int compressionMinSize = this.bridgeConfig.getHttpConfig().getCompressionMinSize();
+        routingContext.addHeadersEndHandler(v -> {
+            String contentLength = routingContext.response().headers().get(HttpHeaderNames.CONTENT_LENGTH);
+            if (contentLength != null && Long.parseLong(contentLength) < compressionMinSize) {
+                routingContext.response().putHeader(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+            }
+        });
+        routingContext.next();
+    }
+
     private void send(RoutingContext routingContext) {
         this.httpBridgeContext.setOpenApiOperation(HttpOpenApiOperations.SEND);
         this.processProducer(routingContext);
@@ -204,6 +292,38 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         this.processProducer(routingContext);
     }
 
+    private void sendStream(RoutingContext routingContext) {
+        this.httpBridgeContext.setOpenApiOperation(HttpOpenApiOperations.SEND_STREAM);
+        this.processProducer(routingContext);
+    }
+
+    private void sendToTopics(RoutingContext routingContext) {
+        this.httpBridgeContext.setOpenApiOperation(HttpOpenApiOperations.SEND_TO_TOPICS);
+        this.processProducer(routingContext);
+    }
+
+    private void getReceipt(RoutingContext routingContext) {
+        this.httpBridgeContext.setOpenApiOperation(HttpOpenApiOperations.GET_RECEIPT);
+
+        String batchId = routingContext.pathParam("batchid");
+        long timeout = routingContext.queryParams().get("timeout") != null ?
+                Long.parseLong(routingContext.queryParams().get("timeout")) : 0L;
+
+        this.httpBridgeContext.getReceiptStore().await(batchId, timeout, receipt -> {
+            if (receipt != null) {
+                HttpUtils.sendResponse(routingContext, HttpResponseStatus.OK.code(),
+                        BridgeContentType.KAFKA_JSON, receipt.toBuffer());
+            } else {
+                HttpBridgeError error = new HttpBridgeError(
+                        HttpResponseStatus.NOT_FOUND.code(),
+                        "The specified batch was not found."
+                );
+                HttpUtils.sendResponse(routingContext, HttpResponseStatus.NOT_FOUND.code(),
+                        BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+            }
+        });
+    }
+
     private void createConsumer(RoutingContext routingContext) {
         this.httpBridgeContext.setOpenApiOperation(HttpOpenApiOperations.CREATE_CONSUMER);
 
@@ -212,6 +332,9 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
 
         try {
             EmbeddedFormat format = EmbeddedFormat.from(body.getString("format", "binary"));
+            if (format == EmbeddedFormat.AVRO && !this.httpBridgeContext.getAvroSchemaCache().isEnabled()) {
+                throw new IllegalEmbeddedFormatException("Avro embedded format is not enabled.");
+            }
 
             sink = new HttpSinkBridgeEndpoint<>(this.vertx, this.bridgeConfig, this.httpBridgeContext,
                     format, new ByteArrayDeserializer(), new ByteArrayDeserializer());
@@ -289,6 +412,11 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         processConsumer(routingContext);
     }
 
+    private void pollStream(RoutingContext routingContext) {
+        this.httpBridgeContext.setOpenApiOperation(HttpOpenApiOperations.POLL_STREAM);
+        processConsumer(routingContext);
+    }
+
     private void commit(RoutingContext routingContext) {
         this.httpBridgeContext.setOpenApiOperation(HttpOpenApiOperations.COMMIT);
         processConsumer(routingContext);
@@ -339,14 +467,14 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
      */
     private void processProducer(RoutingContext routingContext) {
         HttpServerRequest httpServerRequest = routingContext.request();
-        String contentType = httpServerRequest.getHeader("Content-Type") != null ?
-                httpServerRequest.getHeader("Content-Type") : BridgeContentType.KAFKA_JSON_BINARY;
+        String contentType = HttpUtils.mediaType(httpServerRequest) != null ?
+                HttpUtils.mediaType(httpServerRequest) : BridgeContentType.KAFKA_JSON_BINARY;
 
         SourceBridgeEndpoint<byte[], byte[]> source = this.httpBridgeContext.getHttpSourceEndpoints().get(httpServerRequest.connection());
 
         try {
             if (source == null) {
-                source = new HttpSourceBridgeEndpoint<>(this.vertx, this.bridgeConfig,
+                source = new HttpSourceBridgeEndpoint<>(this.vertx, this.bridgeConfig, this.httpBridgeContext,
                         contentTypeToFormat(contentType), new ByteArraySerializer(), new ByteArraySerializer());
 
                 source.closeHandler(s -> {
@@ -427,6 +555,14 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
             routingContext.response().getStatusMessage());
     }
 
+    private void processWebSocket(ServerWebSocket webSocket) {
+        if (!this.bridgeConfig.getHttpConfig().isWebSocketEnabled()) {
+            webSocket.reject(HttpResponseStatus.NOT_FOUND.code());
+            return;
+        }
+        HttpWebSocketConnection.accept(this.vertx, this.bridgeConfig, this.httpBridgeContext, webSocket);
+    }
+
     private void processConnection(HttpConnection httpConnection) {
         httpConnection.closeHandler(close -> {
             closeConnectionEndpoint(httpConnection);
@@ -456,6 +592,15 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
                 return EmbeddedFormat.BINARY;
             case BridgeContentType.KAFKA_JSON_JSON:
                 return EmbeddedFormat.JSON;
+            case BridgeContentType.KAFKA_JSON_AVRO:
+                return EmbeddedFormat.AVRO;
+            case BridgeContentType.KAFKA_CBOR_BINARY:
+                return EmbeddedFormat.CBOR;
+            case BridgeContentType.NDJSON:
+            case BridgeContentType.OCTET_STREAM:
+                // the embedded format of a streaming request is selected by a query parameter,
+                // while a raw request has no embedded format at all
+                return EmbeddedFormat.BINARY;
         }
         throw new IllegalArgumentException(contentType);
     }
@@ -490,6 +635,30 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         }
     };
 
+    HttpOpenApiOperation SEND_STREAM = new HttpOpenApiOperation(HttpOpenApiOperations.SEND_STREAM) {
+
+        @Override
+        public void process(RoutingContext routingContext) {
+            sendStream(routingContext);
+        }
+    };
+
+    HttpOpenApiOperation SEND_TO_TOPICS = new HttpOpenApiOperation(HttpOpenApiOperations.SEND_TO_TOPICS) {
+
+        @Override
+        public void process(RoutingContext routingContext) {
+            sendToTopics(routingContext);
+        }
+    };
+
+    HttpOpenApiOperation GET_RECEIPT = new HttpOpenApiOperation(HttpOpenApiOperations.GET_RECEIPT) {
+
+        @Override
+        public void process(RoutingContext routingContext) {
+            getReceipt(routingContext);
+        }
+    };
+
     HttpOpenApiOperation CREATE_CONSUMER = new HttpOpenApiOperation(HttpOpenApiOperations.CREATE_CONSUMER) {
     
         @Override
@@ -546,6 +715,14 @@ public class HttpBridge extends AbstractVerticle implements HealthCheckable {
         }
     };
 
+    HttpOpenApiOperation POLL_STREAM = new HttpOpenApiOperation(HttpOpenApiOperations.POLL_STREAM) {
+
+        @Override
+        public void process(RoutingContext routingContext) {
+            pollStream(routingContext);
+        }
+    };
+
     HttpOpenApiOperation COMMIT = new HttpOpenApiOperation(HttpOpenApiOperations.COMMIT) {
     
         @Override
@@ -5,8 +5,17 @@
 
 package io.strimzi.kafka.bridge.http;
 
+import io.strimzi.kafka.bridge.DeadLetterTopics;
+import io.strimzi.kafka.bridge.KafkaProducerPool;
+import io.strimzi.kafka.bridge.ProducerAdmissionController;
+import io.strimzi.kafka.bridge.ProducerRetryQueue;
 import io.strimzi.kafka.bridge.SinkBridgeEndpoint;
 import io.strimzi.kafka.bridge.SourceBridgeEndpoint;
+import io.strimzi.kafka.bridge.StickyPartitioner;
+import io.strimzi.kafka.bridge.TopicMetadataCache;
+import io.strimzi.kafka.bridge.TransactionalProducerPool;
+import io.strimzi.kafka.bridge.converter.AvroSchemaCache;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpConnection;
 
 import java.util.HashMap;
@@ -24,7 +33,45 @@ public class HttpBridgeContext<K, V> {
     private Map<String, SinkBridgeEndpoint<K, V>> httpSinkEndpoints = new HashMap<>();
     private Map<HttpConnection, SourceBridgeEndpoint<K, V>> httpSourceEndpoints = new HashMap<>();
     private HttpOpenApiOperations openApiOperation;
+    private final KafkaProducerPool<K, V> producerPool;
+    private final HttpReceiptStore receiptStore;
+    private final HttpIdempotencyStore idempotencyStore;
+    private final ProducerAdmissionController admissionController;
+    private final TopicMetadataCache topicMetadataCache;
+    private final TransactionalProducerPool<K, V> transactionalProducerPool;
+    private final AvroSchemaCache avroSchemaCache;
+    private final StickyPartitioner stickyPartitioner;
+    private final ProducerRetryQueue producerRetryQueue;
+    private final DeadLetterTopics deadLetterTopics;
 
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param httpConfig HTTP configuration for the bridge-wide services shared by the endpoints
+     */
+    public HttpBridgeContext(Vertx vertx, HttpConfig httpConfig) {
+        this.producerPool = new KafkaProducerPool<>(vertx);
+        this.receiptStore = new HttpReceiptStore(vertx, httpConfig.getReceiptsMaxEntries(),
+                httpConfig.getReceiptsTtl() * 1000L);
+        this.idempotencyStore = new HttpIdempotencyStore(httpConfig.getIdempotencyMaxEntries(),
+                httpConfig.getIdempotencyTtl() * 1000L);
+        this.admissionController = new ProducerAdmissionController(
+                httpConfig.getProducerMaxInFlightBytes(), httpConfig.getProducerMaxInFlightRecords(),
+                httpConfig.getProducerMaxInFlightBytesPerTopic(), httpConfig.getProducerMaxInFlightRecordsPerTopic(),
+                httpConfig.getProducerPauseInFlightBytes());
+        this.topicMetadataCache = new TopicMetadataCache(vertx,
+                httpConfig.getTopicsMetadataRefresh() < 0 ? -1 : httpConfig.getTopicsMetadataRefresh() * 1000L);
+        this.transactionalProducerPool = new TransactionalProducerPool<>(vertx,
+                httpConfig.getProducerTransactionalIdPrefix(), httpConfig.getProducerTransactionalPoolSize(),
+                httpConfig.getProducerTransactionalMaxWaiting(), httpConfig.getProducerTransactionalWaitTimeout());
+        this.avroSchemaCache = new AvroSchemaCache(httpConfig.getAvroSchemasDir(), httpConfig.getAvroSchemasCacheSize());
+        this.stickyPartitioner = new StickyPartitioner(httpConfig.getProducerStickyPartitionWindow());
+        this.producerRetryQueue = new ProducerRetryQueue(vertx, httpConfig.getProducerRetries(),
+                httpConfig.getProducerRetryBackoff(), httpConfig.getProducerRetryMaxBackoff(),
+                httpConfig.getProducerRetryDeadline(), httpConfig.getProducerRetryMaxBytes());
+        this.deadLetterTopics = new DeadLetterTopics(httpConfig.getProducerDeadLetterTopics());
+    }
 
     /**
      * @return map of sink endpoints
@@ -40,6 +87,76 @@ public class HttpBridgeContext<K, V> {
         return this.httpSourceEndpoints;
     }
 
+    /**
+     * @return pool of Kafka producers shared by the source endpoints
+     */
+    public KafkaProducerPool<K, V> getProducerPool() {
+        return this.producerPool;
+    }
+
+    /**
+     * @return store for the delivery receipts of the records sent asynchronously
+     */
+    public HttpReceiptStore getReceiptStore() {
+        return this.receiptStore;
+    }
+
+    /**
+     * @return store for the responses to the produce requests carrying an idempotency key
+     */
+    public HttpIdempotencyStore getIdempotencyStore() {
+        return this.idempotencyStore;
+    }
+
+    /**
+     * @return admission controller for the records sent by the source endpoints
+     */
+    public ProducerAdmissionController getAdmissionController() {
+        return this.admissionController;
+    }
+
+    /**
+     * @return cache of the topics metadata, for rejecting records sent to not existing topics or partitions
+     */
+    public TopicMetadataCache getTopicMetadataCache() {
+        return this.topicMetadataCache;
+    }
+
+    /**
+     * @return pool of transactional Kafka producers, for sending batches of records atomically
+     */
+    public TransactionalProducerPool<K, V> getTransactionalProducerPool() {
+        return this.transactionalProducerPool;
+    }
+
+    /**
+     * @return cache of the Avro schemas, for the keys and values in the Avro embedded format
+     */
+    public AvroSchemaCache getAvroSchemaCache() {
+        return this.avroSchemaCache;
+    }
+
+    /**
+     * @return partitioner pinning the records without key and partition to a single partition
+     */
+    public StickyPartitioner getStickyPartitioner() {
+        return this.stickyPartitioner;
+    }
+
+    /**
+     * @return retry stage for the records failed with a retriable error
+     */
+    public ProducerRetryQueue getProducerRetryQueue() {
+        return this.producerRetryQueue;
+    }
+
+    /**
+     * @return dead letter topics for the records failing conversion or delivery
+     */
+    public DeadLetterTopics getDeadLetterTopics() {
+        return this.deadLetterTopics;
+    }
+
     /**
      * Set the OpenAPI operation invoked
      *
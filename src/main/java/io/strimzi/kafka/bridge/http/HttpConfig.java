@@ -7,6 +7,8 @@ package io.strimzi.kafka.bridge.http;
 
 import io.strimzi.kafka.bridge.config.AbstractConfig;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -21,11 +23,75 @@ public class HttpConfig extends AbstractConfig {
     public static final String HTTP_HOST = HTTP_CONFIG_PREFIX + "host";
     public static final String HTTP_PORT = HTTP_CONFIG_PREFIX + "port";
     public static final String HTTP_CONSUMER_TIMEOUT = HTTP_CONFIG_PREFIX + "timeoutSeconds";
+    public static final String HTTP_CONSUMER_MAX_WAIT = HTTP_CONFIG_PREFIX + "consumerMaxWaitMs";
+    public static final String HTTP_CONSUMER_PREFETCH_RECORDS = HTTP_CONFIG_PREFIX + "consumerPrefetchRecords";
+    public static final String HTTP_CONSUMER_PREFETCH_BYTES = HTTP_CONFIG_PREFIX + "consumerPrefetchBytes";
+    public static final String HTTP_RECEIPTS_MAX_ENTRIES = HTTP_CONFIG_PREFIX + "receiptsMaxEntries";
+    public static final String HTTP_RECEIPTS_TTL = HTTP_CONFIG_PREFIX + "receiptsTtlSeconds";
+    public static final String HTTP_IDEMPOTENCY_MAX_ENTRIES = HTTP_CONFIG_PREFIX + "idempotencyMaxEntries";
+    public static final String HTTP_IDEMPOTENCY_TTL = HTTP_CONFIG_PREFIX + "idempotencyTtlSeconds";
+    public static final String HTTP_PRODUCER_MAX_IN_FLIGHT_BYTES = HTTP_CONFIG_PREFIX + "producerMaxInFlightBytes";
+    public static final String HTTP_PRODUCER_MAX_IN_FLIGHT_RECORDS = HTTP_CONFIG_PREFIX + "producerMaxInFlightRecords";
+    public static final String HTTP_PRODUCER_MAX_IN_FLIGHT_BYTES_PER_TOPIC = HTTP_CONFIG_PREFIX + "producerMaxInFlightBytesPerTopic";
+    public static final String HTTP_PRODUCER_MAX_IN_FLIGHT_RECORDS_PER_TOPIC = HTTP_CONFIG_PREFIX + "producerMaxInFlightRecordsPerTopic";
+    public static final String HTTP_PRODUCER_PAUSE_IN_FLIGHT_BYTES = HTTP_CONFIG_PREFIX + "producerPauseInFlightBytes";
+    public static final String HTTP_PRODUCER_RETRIES = HTTP_CONFIG_PREFIX + "producerRetries";
+    public static final String HTTP_PRODUCER_RETRY_BACKOFF = HTTP_CONFIG_PREFIX + "producerRetryBackoffMs";
+    public static final String HTTP_PRODUCER_RETRY_MAX_BACKOFF = HTTP_CONFIG_PREFIX + "producerRetryMaxBackoffMs";
+    public static final String HTTP_PRODUCER_RETRY_DEADLINE = HTTP_CONFIG_PREFIX + "producerRetryDeadlineMs";
+    public static final String HTTP_PRODUCER_RETRY_MAX_BYTES = HTTP_CONFIG_PREFIX + "producerRetryMaxBytes";
+    public static final String HTTP_PRODUCER_STICKY_PARTITION_WINDOW = HTTP_CONFIG_PREFIX + "producerStickyPartitionWindowMs";
+    public static final String HTTP_PRODUCER_DEAD_LETTER_TOPICS = HTTP_CONFIG_PREFIX + "producerDeadLetterTopics";
+    public static final String HTTP_PRODUCER_TRANSACTIONAL_POOL_SIZE = HTTP_CONFIG_PREFIX + "producerTransactionalPoolSize";
+    public static final String HTTP_PRODUCER_TRANSACTIONAL_ID_PREFIX = HTTP_CONFIG_PREFIX + "producerTransactionalIdPrefix";
+    public static final String HTTP_PRODUCER_TRANSACTIONAL_MAX_WAITING = HTTP_CONFIG_PREFIX + "producerTransactionalMaxWaiting";
+    public static final String HTTP_PRODUCER_TRANSACTIONAL_WAIT_TIMEOUT = HTTP_CONFIG_PREFIX + "producerTransactionalWaitTimeoutMs";
+    public static final String HTTP_TOPICS_METADATA_REFRESH = HTTP_CONFIG_PREFIX + "topicsMetadataRefreshSeconds";
+    public static final String HTTP_TOPICS_METADATA_PREWARM = HTTP_CONFIG_PREFIX + "topicsMetadataPrewarm";
+    public static final String HTTP_AVRO_SCHEMAS_DIR = HTTP_CONFIG_PREFIX + "avroSchemasDir";
+    public static final String HTTP_AVRO_SCHEMAS_CACHE_SIZE = HTTP_CONFIG_PREFIX + "avroSchemasCacheSize";
+    public static final String HTTP_DECOMPRESSION_ENABLED = HTTP_CONFIG_PREFIX + "decompressionEnabled";
+    public static final String HTTP_COMPRESSION_ENABLED = HTTP_CONFIG_PREFIX + "compressionEnabled";
+    public static final String HTTP_COMPRESSION_LEVEL = HTTP_CONFIG_PREFIX + "compressionLevel";
+    public static final String HTTP_COMPRESSION_MIN_SIZE = HTTP_CONFIG_PREFIX + "compressionMinSize";
+    public static final String HTTP_WEBSOCKET_ENABLED = HTTP_CONFIG_PREFIX + "websocketEnabled";
+    public static final String HTTP_WEBSOCKET_MAX_MESSAGE_SIZE = HTTP_CONFIG_PREFIX + "websocketMaxMessageSize";
+    public static final String HTTP_STREAM_MAX_RECORD_SIZE = HTTP_CONFIG_PREFIX + "streamMaxRecordSize";
 
     public static final boolean DEFAULT_HTTP_ENABLED = true;
     public static final String DEFAULT_HOST = "0.0.0.0";
     public static final int DEFAULT_PORT = 8080;
     public static final long DEFAULT_CONSUMER_TIMEOUT = -1L;
+    public static final long DEFAULT_CONSUMER_MAX_WAIT = 30000L;
+    public static final int DEFAULT_CONSUMER_PREFETCH_RECORDS = 0;
+    public static final long DEFAULT_CONSUMER_PREFETCH_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_RECEIPTS_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_RECEIPTS_TTL = 300L;
+    public static final int DEFAULT_IDEMPOTENCY_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_IDEMPOTENCY_TTL = 300L;
+    public static final long DEFAULT_PRODUCER_MAX_IN_FLIGHT = -1L;
+    public static final int DEFAULT_PRODUCER_RETRIES = 0;
+    public static final long DEFAULT_PRODUCER_RETRY_BACKOFF = 100L;
+    public static final long DEFAULT_PRODUCER_RETRY_MAX_BACKOFF = 5000L;
+    public static final long DEFAULT_PRODUCER_RETRY_DEADLINE = 30000L;
+    public static final long DEFAULT_PRODUCER_RETRY_MAX_BYTES = 32L * 1024 * 1024;
+    public static final long DEFAULT_PRODUCER_STICKY_PARTITION_WINDOW = -1L;
+    public static final String DEFAULT_PRODUCER_DEAD_LETTER_TOPICS = "";
+    public static final int DEFAULT_PRODUCER_TRANSACTIONAL_POOL_SIZE = 0;
+    public static final String DEFAULT_PRODUCER_TRANSACTIONAL_ID_PREFIX = "kafka-bridge";
+    public static final int DEFAULT_PRODUCER_TRANSACTIONAL_MAX_WAITING = 1000;
+    public static final long DEFAULT_PRODUCER_TRANSACTIONAL_WAIT_TIMEOUT = 10000L;
+    public static final long DEFAULT_TOPICS_METADATA_REFRESH = -1L;
+    public static final String DEFAULT_TOPICS_METADATA_PREWARM = "";
+    public static final String DEFAULT_AVRO_SCHEMAS_DIR = "";
+    public static final int DEFAULT_AVRO_SCHEMAS_CACHE_SIZE = 1000;
+    public static final boolean DEFAULT_DECOMPRESSION_ENABLED = true;
+    public static final boolean DEFAULT_COMPRESSION_ENABLED = true;
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    public static final boolean DEFAULT_WEBSOCKET_ENABLED = false;
+    public static final int DEFAULT_WEBSOCKET_MAX_MESSAGE_SIZE = 1024 * 1024;
+    public static final int DEFAULT_STREAM_MAX_RECORD_SIZE = 2 * 1024 * 1024;
 
     /**
      * Constructor
@@ -64,6 +130,255 @@ public class HttpConfig extends AbstractConfig {
         return Long.parseLong(this.config.getOrDefault(HTTP_CONSUMER_TIMEOUT, DEFAULT_CONSUMER_TIMEOUT).toString());
     }
 
+    /**
+     * @return the maximum time a long-poll request for records is held waiting for them, in milliseconds
+     */
+    public long getConsumerMaxWait() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_CONSUMER_MAX_WAIT, DEFAULT_CONSUMER_MAX_WAIT).toString());
+    }
+
+    /**
+     * @return the maximum number of records prefetched for each consumer, 0 for disabling prefetching
+     */
+    public int getConsumerPrefetchRecords() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_CONSUMER_PREFETCH_RECORDS, DEFAULT_CONSUMER_PREFETCH_RECORDS).toString());
+    }
+
+    /**
+     * @return the maximum size of the records (keys and values) prefetched for each consumer, in bytes
+     */
+    public long getConsumerPrefetchBytes() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_CONSUMER_PREFETCH_BYTES, DEFAULT_CONSUMER_PREFETCH_BYTES).toString());
+    }
+
+    /**
+     * @return the maximum number of delivery receipts kept for the records sent asynchronously
+     */
+    public int getReceiptsMaxEntries() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_RECEIPTS_MAX_ENTRIES, DEFAULT_RECEIPTS_MAX_ENTRIES).toString());
+    }
+
+    /**
+     * @return the time to live of a completed delivery receipt, in seconds
+     */
+    public long getReceiptsTtl() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_RECEIPTS_TTL, DEFAULT_RECEIPTS_TTL).toString());
+    }
+
+    /**
+     * @return the maximum number of responses recorded for the produce requests carrying an idempotency key
+     */
+    public int getIdempotencyMaxEntries() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_IDEMPOTENCY_MAX_ENTRIES, DEFAULT_IDEMPOTENCY_MAX_ENTRIES).toString());
+    }
+
+    /**
+     * @return the time to live of a response recorded for an idempotency key, in seconds
+     */
+    public long getIdempotencyTtl() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_IDEMPOTENCY_TTL, DEFAULT_IDEMPOTENCY_TTL).toString());
+    }
+
+    /**
+     * @return the maximum bytes in flight to Kafka for the bridge, before rejecting new records (-1 for no limit)
+     */
+    public long getProducerMaxInFlightBytes() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_MAX_IN_FLIGHT_BYTES, DEFAULT_PRODUCER_MAX_IN_FLIGHT).toString());
+    }
+
+    /**
+     * @return the maximum records in flight to Kafka for the bridge, before rejecting new records (-1 for no limit)
+     */
+    public long getProducerMaxInFlightRecords() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_MAX_IN_FLIGHT_RECORDS, DEFAULT_PRODUCER_MAX_IN_FLIGHT).toString());
+    }
+
+    /**
+     * @return the maximum bytes in flight to Kafka for each topic, before rejecting new records (-1 for no limit)
+     */
+    public long getProducerMaxInFlightBytesPerTopic() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_MAX_IN_FLIGHT_BYTES_PER_TOPIC, DEFAULT_PRODUCER_MAX_IN_FLIGHT).toString());
+    }
+
+    /**
+     * @return the maximum records in flight to Kafka for each topic, before rejecting new records (-1 for no limit)
+     */
+    public long getProducerMaxInFlightRecordsPerTopic() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_MAX_IN_FLIGHT_RECORDS_PER_TOPIC, DEFAULT_PRODUCER_MAX_IN_FLIGHT).toString());
+    }
+
+    /**
+     * @return the bytes in flight to Kafka at which reading produce requests is paused, until half of them
+     * is acknowledged (-1 for never pausing)
+     */
+    public long getProducerPauseInFlightBytes() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_PAUSE_IN_FLIGHT_BYTES, DEFAULT_PRODUCER_MAX_IN_FLIGHT).toString());
+    }
+
+    /**
+     * @return the maximum number of times the bridge sends again a record failed with a retriable error (0 for no retries)
+     */
+    public int getProducerRetries() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_PRODUCER_RETRIES, DEFAULT_PRODUCER_RETRIES).toString());
+    }
+
+    /**
+     * @return the backoff before the first retry of a record, doubled on each following one, in milliseconds
+     */
+    public long getProducerRetryBackoff() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_RETRY_BACKOFF, DEFAULT_PRODUCER_RETRY_BACKOFF).toString());
+    }
+
+    /**
+     * @return the maximum backoff between the retries of a record, in milliseconds
+     */
+    public long getProducerRetryMaxBackoff() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_RETRY_MAX_BACKOFF, DEFAULT_PRODUCER_RETRY_MAX_BACKOFF).toString());
+    }
+
+    /**
+     * @return the time from the first attempt after which a record isn't retried anymore, in milliseconds
+     */
+    public long getProducerRetryDeadline() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_RETRY_DEADLINE, DEFAULT_PRODUCER_RETRY_DEADLINE).toString());
+    }
+
+    /**
+     * @return the maximum bytes of the records waiting to be retried (-1 for no limit)
+     */
+    public long getProducerRetryMaxBytes() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_RETRY_MAX_BYTES, DEFAULT_PRODUCER_RETRY_MAX_BYTES).toString());
+    }
+
+    /**
+     * @return the time window for which the records without key and partition sent to a topic are pinned
+     * to the same partition, in milliseconds (0 for each produce request, -1 for leaving them to the producer partitioner)
+     */
+    public long getProducerStickyPartitionWindow() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_STICKY_PARTITION_WINDOW, DEFAULT_PRODUCER_STICKY_PARTITION_WINDOW).toString());
+    }
+
+    /**
+     * @return comma separated list of [topic]:[dead letter topic] mappings, with * as topic for all the other topics,
+     * for the records failing conversion or delivery (empty for failing them back to the client)
+     */
+    public String getProducerDeadLetterTopics() {
+        return (String) this.config.getOrDefault(HTTP_PRODUCER_DEAD_LETTER_TOPICS, DEFAULT_PRODUCER_DEAD_LETTER_TOPICS);
+    }
+
+    /**
+     * @return the maximum number of transactional producers, for sending batches of records atomically (0 for disabling transactions)
+     */
+    public int getProducerTransactionalPoolSize() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_PRODUCER_TRANSACTIONAL_POOL_SIZE, DEFAULT_PRODUCER_TRANSACTIONAL_POOL_SIZE).toString());
+    }
+
+    /**
+     * @return the maximum number of transactional produce requests waiting for a transactional producer to be released
+     */
+    public int getProducerTransactionalMaxWaiting() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_PRODUCER_TRANSACTIONAL_MAX_WAITING, DEFAULT_PRODUCER_TRANSACTIONAL_MAX_WAITING).toString());
+    }
+
+    /**
+     * @return the maximum time a transactional produce request waits for a transactional producer to be released, in milliseconds
+     */
+    public long getProducerTransactionalWaitTimeout() {
+        return Long.parseLong(this.config.getOrDefault(HTTP_PRODUCER_TRANSACTIONAL_WAIT_TIMEOUT, DEFAULT_PRODUCER_TRANSACTIONAL_WAIT_TIMEOUT).toString());
+    }
+
+    /**
+     * @return the prefix for the transactional id of the transactional producers, it has to be unique for each bridge instance
+     */
+    public String getProducerTransactionalIdPrefix() {
+        return (String) this.config.getOrDefault(HTTP_PRODUCER_TRANSACTIONAL_ID_PREFIX, DEFAULT_PRODUCER_TRANSACTIONAL_ID_PREFIX);
+    }
+
+    /**
+     * @return the interval for refreshing the cached topics metadata, in seconds (-1 for disabling the cache)
+     * @throws IllegalArgumentException if the interval is 0, which would describe the cached topics continuously
+     */
+    public long getTopicsMetadataRefresh() {
+        long refresh = Long.parseLong(this.config.getOrDefault(HTTP_TOPICS_METADATA_REFRESH, DEFAULT_TOPICS_METADATA_REFRESH).toString());
+        if (refresh == 0) {
+            throw new IllegalArgumentException(HTTP_TOPICS_METADATA_REFRESH + " has to be greater than 0, or lower for disabling the cache");
+        }
+        return refresh;
+    }
+
+    /**
+     * @return the topics to get the metadata for at startup, so that the first records sent to them don't wait for it
+     */
+    public List<String> getTopicsMetadataPrewarm() {
+        return Arrays.stream(this.config.getOrDefault(HTTP_TOPICS_METADATA_PREWARM, DEFAULT_TOPICS_METADATA_PREWARM).toString().split(","))
+                .map(String::trim)
+                .filter(topic -> !topic.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the directory with the Avro schemas, as [subject].avsc files, for the Avro embedded format (empty for disabling it)
+     */
+    public String getAvroSchemasDir() {
+        return this.config.getOrDefault(HTTP_AVRO_SCHEMAS_DIR, DEFAULT_AVRO_SCHEMAS_DIR).toString();
+    }
+
+    /**
+     * @return the maximum number of Avro schemas kept in memory
+     */
+    public int getAvroSchemasCacheSize() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_AVRO_SCHEMAS_CACHE_SIZE, DEFAULT_AVRO_SCHEMAS_CACHE_SIZE).toString());
+    }
+
+    /**
+     * @return if the gzip and deflate encoded request bodies are decompressed
+     */
+    public boolean isDecompressionEnabled() {
+        return Boolean.valueOf(this.config.getOrDefault(HTTP_DECOMPRESSION_ENABLED, DEFAULT_DECOMPRESSION_ENABLED).toString());
+    }
+
+    /**
+     * @return if the response bodies are compressed, when accepted by the client
+     */
+    public boolean isCompressionEnabled() {
+        return Boolean.valueOf(this.config.getOrDefault(HTTP_COMPRESSION_ENABLED, DEFAULT_COMPRESSION_ENABLED).toString());
+    }
+
+    /**
+     * @return the compression level for the response bodies, from 1 (fastest) to 9 (best compression)
+     */
+    public int getCompressionLevel() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL).toString());
+    }
+
+    /**
+     * @return the minimum size of a response body for being compressed, in bytes
+     */
+    public int getCompressionMinSize() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE).toString());
+    }
+
+    /**
+     * @return if the WebSocket endpoint for producing and consuming on a single connection is enabled
+     */
+    public boolean isWebSocketEnabled() {
+        return Boolean.valueOf(this.config.getOrDefault(HTTP_WEBSOCKET_ENABLED, DEFAULT_WEBSOCKET_ENABLED).toString());
+    }
+
+    /**
+     * @return the maximum size of a WebSocket message (and of each of its frames), in bytes
+     */
+    public int getWebSocketMaxMessageSize() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_WEBSOCKET_MAX_MESSAGE_SIZE, DEFAULT_WEBSOCKET_MAX_MESSAGE_SIZE).toString());
+    }
+
+    /**
+     * @return the maximum size of a record line in a streaming produce request, in bytes
+     */
+    public int getStreamMaxRecordSize() {
+        return Integer.parseInt(this.config.getOrDefault(HTTP_STREAM_MAX_RECORD_SIZE, DEFAULT_STREAM_MAX_RECORD_SIZE).toString());
+    }
+
     /**
      * Loads HTTP related configuration parameters from a related map
      *
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.kafka.bridge.BridgeContentType;
+import io.strimzi.kafka.bridge.converter.MessageConverter;
+import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.kafka.client.common.TopicPartition;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.consumer.OffsetAndMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming consume request.
+ *
+ * The records are pushed to the client as Server-Sent Events over a single long-lived response, as soon as
+ * they are handed over by the consumer record handler, each event carrying a record as a JSON object.
+ * When the response write queue is full, because the client is slower than Kafka, the consumer is paused
+ * until the queue is drained, so that the records aren't buffered in memory.
+ * A comment is written periodically, so that the idle connection isn't closed by the proxies in between.
+ * The consumer position is past the records fetched but not pushed yet, so the offsets to commit are the ones
+ * of the records written to the client instead.
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+class HttpConsumeStream<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpConsumeStream.class);
+
+    // interval for writing a keep alive comment, in milliseconds
+    private static final long KEEP_ALIVE_MS = 15000L;
+
+    private static final Buffer DATA = Buffer.buffer("data: ");
+    private static final Buffer ERROR = Buffer.buffer("event: error\ndata: ");
+    private static final Buffer END = Buffer.buffer("\n\n");
+    private static final Buffer KEEP_ALIVE = Buffer.buffer(": keep-alive\n\n");
+
+    private final Vertx vertx;
+    private final RoutingContext routingContext;
+    private final MessageConverter<K, V, Buffer, Buffer> messageConverter;
+    private final Handler<Boolean> flowControl;
+    private final Handler<Void> closeHandler;
+
+    // next offset to commit for each partition, after the records written to the client
+    private final Map<TopicPartition, OffsetAndMetadata> delivered = new HashMap<>();
+
+    private long keepAliveTimer = -1;
+    private boolean paused;
+    private boolean ended;
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param routingContext routing context of the streaming consume request
+     * @param messageConverter converter for the records to push
+     * @param flowControl handler called with false for pausing the consumer and with true for resuming it
+     * @param closeHandler handler called when the client closes the stream
+     */
+    HttpConsumeStream(Vertx vertx, RoutingContext routingContext, MessageConverter<K, V, Buffer, Buffer> messageConverter,
+                      Handler<Boolean> flowControl, Handler<Void> closeHandler) {
+        this.vertx = vertx;
+        this.routingContext = routingContext;
+        this.messageConverter = messageConverter;
+        this.flowControl = flowControl;
+        this.closeHandler = closeHandler;
+    }
+
+    /**
+     * Start the stream, sending the response headers right away
+     */
+    void start() {
+        HttpServerResponse response = this.routingContext.response();
+
+        response.setStatusCode(HttpResponseStatus.OK.code())
+                .setChunked(true)
+                .putHeader(HttpHeaderNames.CONTENT_TYPE, BridgeContentType.EVENT_STREAM)
+                .putHeader(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE);
+        response.closeHandler(v -> {
+            if (!this.ended) {
+                log.debug("Records stream closed by the client");
+                this.stop();
+                this.closeHandler.handle(null);
+            }
+        });
+        response.drainHandler(v -> {
+            if (this.paused) {
+                this.paused = false;
+                this.flowControl.handle(true);
+            }
+        });
+        response.write(KEEP_ALIVE);
+        this.keepAliveTimer = this.vertx.setPeriodic(KEEP_ALIVE_MS, t -> response.write(KEEP_ALIVE));
+    }
+
+    /**
+     * Push a record to the client, as an event with the record as data
+     *
+     * @param record the record
+     */
+    void handle(KafkaConsumerRecord<K, V> record) {
+        if (this.ended) {
+            return;
+        }
+        HttpServerResponse response = this.routingContext.response();
+        Buffer event;
+        try {
+            event = Buffer.buffer().appendBuffer(DATA)
+                    .appendBuffer(this.messageConverter.toMessage(null, record))
+                    .appendBuffer(END);
+        } catch (RuntimeException e) {
+            // the record is reported without stopping the stream
+            HttpBridgeError error = new HttpBridgeError(HttpResponseStatus.NOT_ACCEPTABLE.code(), e.getMessage());
+            event = Buffer.buffer().appendBuffer(ERROR).appendBuffer(error.toJson().toBuffer()).appendBuffer(END);
+        }
+        response.write(event);
+        this.delivered.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1, ""));
+        if (!this.paused && response.writeQueueFull()) {
+            this.paused = true;
+            this.flowControl.handle(false);
+        }
+    }
+
+    /**
+     * @return the offsets to commit for the records written to the client so far
+     */
+    Map<TopicPartition, OffsetAndMetadata> delivered() {
+        return new HashMap<>(this.delivered);
+    }
+
+    /**
+     * Forget the offsets to commit for partitions whose position changed, because of a seek or a rebalancing
+     *
+     * @param partitions the partitions
+     */
+    void reset(Collection<TopicPartition> partitions) {
+        this.delivered.keySet().removeAll(partitions);
+    }
+
+    /**
+     * End the stream, when the consumer is closed or deleted
+     */
+    void end() {
+        if (!this.ended) {
+            this.stop();
+            this.routingContext.response().end();
+        }
+    }
+
+    private void stop() {
+        this.ended = true;
+        this.vertx.cancelTimer(this.keepAliveTimer);
+    }
+}
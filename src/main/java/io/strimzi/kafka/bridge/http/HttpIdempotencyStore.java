@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Store for the responses to the produce requests carrying an idempotency key.
+ *
+ * An entry is created, as pending, when a request with a new key is received, together with the fingerprint
+ * of the request, and it's completed with the response once the records are delivered (or accepted, in the
+ * asynchronous mode). A retried request, with the same key and fingerprint, gets the recorded response back
+ * without sending the records to Kafka again.
+ * The store is bounded: when it's full, the oldest entry is evicted to make room for the new one;
+ * entries are also expired after a configurable time to live, since their completion or, for the pending ones
+ * whose request never completed (i.e. lost on a failure), since their creation.
+ */
+public class HttpIdempotencyStore {
+
+    private final int maxEntries;
+    private final long ttlMs;
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * Constructor
+     *
+     * @param maxEntries maximum number of entries in the store
+     * @param ttlMs time to live of an entry, in milliseconds
+     */
+    public HttpIdempotencyStore(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>() {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > HttpIdempotencyStore.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param key the idempotency key
+     * @return the entry for the provided key, null if it doesn't exist
+     */
+    public Entry get(String key) {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Create a new pending entry
+     *
+     * @param key the idempotency key
+     * @param fingerprint fingerprint of the request carrying the key
+     */
+    public void create(String key, String fingerprint) {
+        Entry entry = new Entry(fingerprint);
+        entry.expiration = System.currentTimeMillis() + this.ttlMs;
+        this.entries.put(key, entry);
+    }
+
+    /**
+     * Complete a pending entry with the response to the request
+     *
+     * @param key the idempotency key
+     * @param statusCode status code of the response
+     * @param body body of the response
+     */
+    public void complete(String key, int statusCode, Buffer body) {
+        Entry entry = this.entries.get(key);
+        // the entry could have been evicted in the meantime
+        if (entry != null && !entry.isCompleted()) {
+            entry.statusCode = statusCode;
+            entry.body = body;
+            entry.expiration = System.currentTimeMillis() + this.ttlMs;
+        }
+    }
+
+    /**
+     * Remove an entry, so that the request can be retried with the same key
+     *
+     * @param key the idempotency key
+     */
+    public void remove(String key) {
+        this.entries.remove(key);
+    }
+
+    /**
+     * Remove the entries which are expired, completed or not
+     *
+     * @return the number of removed entries
+     */
+    public int expire() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiration <= now) {
+                it.remove();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @param uri path and query of the request
+     * @param body body of the request, if any
+     * @return fingerprint of the request, as hash of its path, query and body
+     */
+    public static String fingerprint(String uri, Buffer body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(uri.getBytes(StandardCharsets.UTF_8));
+        if (body != null) {
+            digest.update(body.getByteBuf().nioBuffer());
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * @return the number of entries in the store
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Entry for a request carrying an idempotency key
+     */
+    public static class Entry {
+
+        private final String fingerprint;
+        private int statusCode;
+        private Buffer body;
+        private long expiration;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return fingerprint of the request
+         */
+        public String getFingerprint() {
+            return this.fingerprint;
+        }
+
+        /**
+         * @return if the response to the request is recorded
+         */
+        public boolean isCompleted() {
+            return this.body != null;
+        }
+
+        /**
+         * @return status code of the response
+         */
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+
+        /**
+         * @return body of the response
+         */
+        public Buffer getBody() {
+            return this.body;
+        }
+    }
+}
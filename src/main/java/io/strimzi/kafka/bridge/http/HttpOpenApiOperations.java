@@ -12,6 +12,9 @@ public enum HttpOpenApiOperations {
 
     SEND("send"),
     SEND_TO_PARTITION("sendToPartition"),
+    SEND_STREAM("sendStream"),
+    SEND_TO_TOPICS("sendToTopics"),
+    GET_RECEIPT("getReceipt"),
     CREATE_CONSUMER("createConsumer"),
     DELETE_CONSUMER("deleteConsumer"),
     SUBSCRIBE("subscribe"),
@@ -19,6 +22,7 @@ public enum HttpOpenApiOperations {
     LIST_SUBSCRIPTIONS("listSubscriptions"),
     ASSIGN("assign"),
     POLL("poll"),
+    POLL_STREAM("pollStream"),
     COMMIT("commit"),
     SEEK("seek"),
     SEEK_TO_BEGINNING("seekToBeginning"),
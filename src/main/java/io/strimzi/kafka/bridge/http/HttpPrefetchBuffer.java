@@ -0,0 +1,276 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.kafka.client.common.TopicPartition;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
+import io.vertx.kafka.client.consumer.OffsetAndMetadata;
+import io.vertx.kafka.client.consumer.impl.KafkaConsumerRecordImpl;
+import io.vertx.kafka.client.consumer.impl.KafkaConsumerRecordsImpl;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffer of the records prefetched for a consumer, so that a poll request is answered from memory
+ * while the next records are fetched from Kafka in the background.
+ *
+ * Polling Kafka starts with the first poll request and goes on until the buffer reaches the maximum number
+ * of records or bytes (it can go over by the records of a single poll); it's paused then, until the buffer
+ * drains to half of them. Polling stops on failure, reported to the next poll request, and when the buffer
+ * is cleared, until the next poll request.
+ * The consumer position is past the buffered records, so the offsets to commit are the ones of the records
+ * handed to the client instead.
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+class HttpPrefetchBuffer<K, V> {
+
+    private final Vertx vertx;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final Handler<Handler<AsyncResult<KafkaConsumerRecords<K, V>>>> poller;
+
+    private final Deque<ConsumerRecord<K, V>> records = new ArrayDeque<>();
+    private long bytes;
+    // next offset to commit for each partition, after the records handed to the client
+    private final Map<TopicPartition, OffsetAndMetadata> delivered = new HashMap<>();
+
+    private boolean started;
+    private boolean polling;
+    private boolean paused;
+    private Throwable failure;
+
+    // poll request waiting for records, with the timer for its timeout
+    private Handler<AsyncResult<KafkaConsumerRecords<K, V>>> waiter;
+    private long waitTimer = -1;
+    // handler the records of the in flight poll are handed to, after the buffer is stopped
+    private Handler<KafkaConsumerRecord<K, V>> handover;
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param maxRecords maximum number of records in the buffer
+     * @param maxBytes maximum size of the records (keys and values) in the buffer, in bytes
+     * @param poller handler polling Kafka once, called with the handler for the polled records
+     */
+    HttpPrefetchBuffer(Vertx vertx, int maxRecords, long maxBytes, Handler<Handler<AsyncResult<KafkaConsumerRecords<K, V>>>> poller) {
+        this.vertx = vertx;
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.poller = poller;
+    }
+
+    /**
+     * Take all the buffered records, waiting for them up to the timeout if the buffer is empty
+     *
+     * @param timeout maximum time to wait for records, in milliseconds
+     * @param handler handler called with the records (empty if none arrived in time) or with the polling failure
+     */
+    void take(long timeout, Handler<AsyncResult<KafkaConsumerRecords<K, V>>> handler) {
+        // a single poll request can wait, the previous one gets what's there
+        this.complete();
+
+        this.waiter = handler;
+        if (this.records.isEmpty() && this.failure == null && timeout > 0) {
+            this.waitTimer = this.vertx.setTimer(timeout, t -> {
+                this.waitTimer = -1;
+                this.complete();
+            });
+        } else {
+            this.complete();
+        }
+        this.started = true;
+        this.poll();
+    }
+
+    /**
+     * Put back at the head of the buffer the last records of a batch taken from it, not returned to the client
+     * because over the response limits, so that they are the first ones returned to the next poll request
+     *
+     * @param records the records taken from the buffer
+     * @param from index of the first record not returned
+     */
+    void putBack(KafkaConsumerRecords<K, V> records, int from) {
+        for (int i = records.size() - 1; i >= from; i--) {
+            ConsumerRecord<K, V> record = records.recordAt(i).record();
+            this.records.addFirst(record);
+            this.bytes += size(record);
+            // the records put back are the last ones of their partition, the first of them is the next to commit
+            this.delivered.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset(), ""));
+        }
+        this.paused = this.paused || this.isFull();
+    }
+
+    /**
+     * @return the offsets to commit for the records handed to the client so far
+     */
+    Map<TopicPartition, OffsetAndMetadata> delivered() {
+        return new HashMap<>(this.delivered);
+    }
+
+    /**
+     * Drop the buffered records of partitions whose position changed, because of a seek or a rebalancing
+     *
+     * @param partitions the partitions
+     */
+    void reset(Collection<TopicPartition> partitions) {
+        Iterator<ConsumerRecord<K, V>> it = this.records.iterator();
+        while (it.hasNext()) {
+            ConsumerRecord<K, V> record = it.next();
+            if (partitions.contains(new TopicPartition(record.topic(), record.partition()))) {
+                it.remove();
+                this.bytes -= size(record);
+            }
+        }
+        this.delivered.keySet().removeAll(partitions);
+        this.resumeIfDrained();
+    }
+
+    /**
+     * Drop all the buffered records and stop polling Kafka until the next poll request,
+     * because the consumer subscription or assignment changed
+     */
+    void clear() {
+        this.records.clear();
+        this.bytes = 0;
+        this.delivered.clear();
+        this.paused = false;
+        this.failure = null;
+        this.started = false;
+    }
+
+    /**
+     * Stop polling Kafka until the next poll request, handing over the buffered records
+     * and the ones of the poll in flight
+     *
+     * @param handler handler the records are handed to, one by one
+     */
+    void stop(Handler<KafkaConsumerRecord<K, V>> handler) {
+        this.started = false;
+        this.complete();
+        this.handover = this.polling ? handler : null;
+        while (!this.records.isEmpty()) {
+            handler.handle(new KafkaConsumerRecordImpl<>(this.records.poll()));
+        }
+        this.bytes = 0;
+        this.paused = false;
+    }
+
+    /**
+     * Drop all the buffered records and the poll request waiting for them, when the consumer is closed
+     */
+    void close() {
+        this.clear();
+        this.handover = null;
+        if (this.waitTimer != -1) {
+            this.vertx.cancelTimer(this.waitTimer);
+            this.waitTimer = -1;
+        }
+        this.waiter = null;
+    }
+
+    /**
+     * @return the number of buffered records
+     */
+    int size() {
+        return this.records.size();
+    }
+
+    private void poll() {
+        if (!this.started || this.polling || this.paused || this.failure != null) {
+            return;
+        }
+        this.polling = true;
+        this.poller.handle(done -> {
+            this.polling = false;
+            if (done.failed()) {
+                this.failure = done.cause();
+            } else if (this.handover != null) {
+                done.result().records().forEach(record -> this.handover.handle(new KafkaConsumerRecordImpl<>(record)));
+            } else if (this.started) {
+                for (ConsumerRecord<K, V> record : done.result().records()) {
+                    this.records.add(record);
+                    this.bytes += size(record);
+                }
+                this.paused = this.isFull();
+            }
+            this.handover = null;
+            if (!this.records.isEmpty() || this.failure != null) {
+                this.complete();
+            }
+            this.poll();
+        });
+    }
+
+    /**
+     * Complete the waiting poll request, if any, with the buffered records or the polling failure
+     */
+    private void complete() {
+        if (this.waiter == null) {
+            return;
+        }
+        if (this.waitTimer != -1) {
+            this.vertx.cancelTimer(this.waitTimer);
+            this.waitTimer = -1;
+        }
+        Handler<AsyncResult<KafkaConsumerRecords<K, V>>> handler = this.waiter;
+        this.waiter = null;
+
+        if (this.failure != null) {
+            Throwable cause = this.failure;
+            this.failure = null;
+            handler.handle(Future.failedFuture(cause));
+        } else {
+            handler.handle(Future.succeededFuture(this.drain()));
+        }
+    }
+
+    private KafkaConsumerRecords<K, V> drain() {
+        Map<org.apache.kafka.common.TopicPartition, List<ConsumerRecord<K, V>>> partitions = new LinkedHashMap<>();
+        while (!this.records.isEmpty()) {
+            ConsumerRecord<K, V> record = this.records.poll();
+            partitions.computeIfAbsent(new org.apache.kafka.common.TopicPartition(record.topic(), record.partition()),
+                tp -> new ArrayList<>()).add(record);
+            this.delivered.put(new TopicPartition(record.topic(), record.partition()),
+                    new OffsetAndMetadata(record.offset() + 1, ""));
+        }
+        this.bytes = 0;
+        this.resumeIfDrained();
+        return new KafkaConsumerRecordsImpl<>(new ConsumerRecords<>(partitions));
+    }
+
+    private boolean isFull() {
+        return this.records.size() >= this.maxRecords || this.bytes >= this.maxBytes;
+    }
+
+    private void resumeIfDrained() {
+        if (this.paused && this.records.size() <= this.maxRecords / 2 && this.bytes <= this.maxBytes / 2) {
+            this.paused = false;
+            this.poll();
+        }
+    }
+
+    private static long size(ConsumerRecord<?, ?> record) {
+        return Math.max(record.serializedKeySize(), 0) + Math.max(record.serializedValueSize(), 0);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.kafka.bridge.BridgeContentType;
+import io.strimzi.kafka.bridge.ProducerAdmissionController;
+import io.strimzi.kafka.bridge.http.converter.HttpProducerMessageConverter;
+import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+import io.vertx.kafka.client.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Streaming produce request.
+ *
+ * The request body is a sequence of newline delimited JSON records which are parsed as soon as
+ * they arrive and handed to the producer right away, without buffering the whole body.
+ * The result for each record (partition and offset, or an error) is written back as a newline
+ * delimited JSON line of a chunked response, in the same order as the records in the request.
+ * While the admission controller is paused, because of too many bytes in flight to Kafka, reading the request
+ * is paused as well, so that the client is slowed down by the TCP flow control instead of filling the memory.
+ * A record longer than the maximum size gets a 413 error result and its bytes are skipped, up to the delimiter,
+ * without being buffered.
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+class HttpProduceStream<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpProduceStream.class);
+
+    private static final byte DELIMITER = '\n';
+    // placeholder, in the records to handle, for a record over the maximum size
+    private static final Buffer TOO_LARGE = Buffer.buffer();
+
+    private final RoutingContext routingContext;
+    private final HttpProducerMessageConverter<K, V> messageConverter;
+    private final String topic;
+    private final BiConsumer<KafkaProducerRecord<K, V>, Handler<AsyncResult<RecordMetadata>>> sender;
+    private final Function<Throwable, Integer> errorCode;
+    private final ProducerAdmissionController admissionController;
+    private final int maxRecordSize;
+
+    // results completed out of order, waiting for the previous ones before being written
+    private final Map<Long, Buffer> pending = new HashMap<>();
+    // index assigned to the next record read from the request
+    private long nextRecord;
+    // index of the next result to write into the response
+    private long nextResult;
+    private boolean requestEnded;
+    // bytes of a record not terminated yet by the delimiter at the end of the last chunk
+    private Buffer partial;
+    // if the bytes up to the next delimiter are skipped, because the record is over the maximum size
+    private boolean skipping;
+    // records read from the request but not handled yet, because reading is paused
+    private final Deque<Buffer> lines = new ArrayDeque<>();
+    private boolean paused;
+
+    /**
+     * Constructor
+     *
+     * @param routingContext routing context of the streaming produce request
+     * @param messageConverter converter for the records in the request body
+     * @param topic Kafka topic to send the records to
+     * @param sender function sending a record to Kafka
+     * @param errorCode function mapping a send failure to the error code to report
+     * @param admissionController admission controller for the records to send
+     * @param maxRecordSize maximum size of a record line, in bytes
+     */
+    HttpProduceStream(RoutingContext routingContext, HttpProducerMessageConverter<K, V> messageConverter, String topic,
+                      BiConsumer<KafkaProducerRecord<K, V>, Handler<AsyncResult<RecordMetadata>>> sender,
+                      Function<Throwable, Integer> errorCode, ProducerAdmissionController admissionController,
+                      int maxRecordSize) {
+        this.routingContext = routingContext;
+        this.messageConverter = messageConverter;
+        this.topic = topic;
+        this.sender = sender;
+        this.errorCode = errorCode;
+        this.admissionController = admissionController;
+        this.maxRecordSize = maxRecordSize;
+    }
+
+    /**
+     * Start reading the records from the request body
+     */
+    void start() {
+        HttpServerRequest request = this.routingContext.request();
+        HttpServerResponse response = this.routingContext.response();
+
+        response.setStatusCode(HttpResponseStatus.OK.code())
+                .setChunked(true)
+                .putHeader(HttpHeaderNames.CONTENT_TYPE, BridgeContentType.NDJSON);
+
+        request.handler(this::handleChunk);
+        request.exceptionHandler(t -> {
+            log.error("[{}] Error reading the streaming produce request", this.routingContext.get("request-id"), t);
+            response.close();
+        });
+        request.endHandler(v -> {
+            // the last record doesn't need to be terminated by the delimiter
+            if (this.partial != null) {
+                this.lines.add(this.partial);
+                this.partial = null;
+            }
+            this.requestEnded = true;
+            this.drain();
+        });
+        // the request could have been paused by the router while looking for the handler
+        request.resume();
+    }
+
+    private void handleChunk(Buffer chunk) {
+        // only the new chunk is scanned, the partial record before it has no delimiter
+        int start = 0;
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.getByte(i) == DELIMITER) {
+                this.addLine(chunk, start, i);
+                start = i + 1;
+            }
+        }
+        this.addPartial(chunk, start);
+        this.drain();
+    }
+
+    private void addLine(Buffer chunk, int start, int end) {
+        if (this.skipping) {
+            // end of the record over the maximum size
+            this.skipping = false;
+            return;
+        }
+        Buffer line = this.partial != null ? this.partial.appendBuffer(chunk, start, end - start) : chunk.slice(start, end);
+        this.partial = null;
+        this.lines.add(line.length() > this.maxRecordSize ? TOO_LARGE : line);
+    }
+
+    private void addPartial(Buffer chunk, int start) {
+        if (this.skipping || start == chunk.length()) {
+            return;
+        }
+        int length = chunk.length() - start;
+        if ((this.partial != null ? this.partial.length() : 0) + length > this.maxRecordSize) {
+            this.partial = null;
+            this.skipping = true;
+            this.lines.add(TOO_LARGE);
+        } else if (this.partial != null) {
+            this.partial.appendBuffer(chunk, start, length);
+        } else {
+            this.partial = chunk.getBuffer(start, chunk.length());
+        }
+    }
+
+    private void drain() {
+        while (!this.lines.isEmpty()) {
+            if (this.admissionController.isPaused()) {
+                if (!this.paused) {
+                    this.paused = true;
+                    this.routingContext.request().pause();
+                    this.admissionController.whenResumed(this::resume);
+                }
+                return;
+            }
+            this.handleLine(this.lines.poll());
+        }
+        this.maybeEnd();
+    }
+
+    private void resume() {
+        this.paused = false;
+        if (this.routingContext.response().closed()) {
+            // nobody is waiting for the results anymore
+            this.lines.clear();
+            return;
+        }
+        if (!this.requestEnded) {
+            this.routingContext.request().resume();
+        }
+        this.drain();
+    }
+
+    private void handleLine(Buffer line) {
+        if (line == TOO_LARGE) {
+            this.complete(this.nextRecord++, new HttpBridgeError(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code(),
+                    "Record exceeds the maximum size of " + this.maxRecordSize + " bytes").toJson());
+            return;
+        }
+        int length = line.length();
+        if (length > 0 && line.getByte(length - 1) == '\r') {
+            line = line.slice(0, --length);
+        }
+        if (length == 0) {
+            // blank lines between records are allowed
+            return;
+        }
+
+        long index = this.nextRecord++;
+        KafkaProducerRecord<K, V> record;
+        try {
+            record = this.messageConverter.toKafkaRecord(this.topic, null, line);
+        } catch (Exception e) {
+            this.complete(index, new HttpBridgeError(HttpResponseStatus.UNPROCESSABLE_ENTITY.code(), e.getMessage()).toJson());
+            return;
+        }
+
+        long retryAfterMs = this.admissionController.admit(this.topic, ProducerAdmissionController.sizeOf(record), 1);
+        if (retryAfterMs > 0) {
+            this.complete(index, new HttpBridgeError(HttpResponseStatus.TOO_MANY_REQUESTS.code(),
+                    "Too many records in flight to Kafka, retry after " + HttpSourceBridgeEndpoint.retryAfterSeconds(retryAfterMs) + " seconds").toJson());
+            return;
+        }
+
+        this.sender.accept(record, done -> {
+            if (done.succeeded()) {
+                RecordMetadata metadata = done.result();
+                log.debug("Delivered record {} to Kafka on topic {} at partition {} [{}]", record, metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
+                this.complete(index, new JsonObject()
+                        .put("partition", metadata.getPartition())
+                        .put("offset", metadata.getOffset()));
+            } else {
+                log.error("Failed to deliver record {}", record, done.cause());
+                this.complete(index, new HttpBridgeError(this.errorCode.apply(done.cause()), done.cause().getMessage()).toJson());
+            }
+        });
+    }
+
+    private void complete(long index, JsonObject result) {
+        this.pending.put(index, result.toBuffer().appendByte(DELIMITER));
+
+        HttpServerResponse response = this.routingContext.response();
+        Buffer next;
+        while ((next = this.pending.remove(this.nextResult)) != null) {
+            this.nextResult++;
+            if (!response.closed()) {
+                response.write(next);
+            }
+        }
+        this.maybeEnd();
+    }
+
+    private void maybeEnd() {
+        HttpServerResponse response = this.routingContext.response();
+        if (this.requestEnded && this.lines.isEmpty() && this.nextResult == this.nextRecord && !response.ended()) {
+            if (!response.closed()) {
+                response.end();
+            }
+        }
+    }
+}
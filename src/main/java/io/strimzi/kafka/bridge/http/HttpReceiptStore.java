@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Store for the delivery receipts of the records batches sent asynchronously.
+ *
+ * A receipt is created, as pending, when a batch is handed to the producer and it's completed
+ * with the batch delivery results once Kafka acknowledges (or fails) all the records.
+ * The store is bounded: when it's full, the oldest receipt is evicted to make room for the new one;
+ * completed receipts are also expired after a configurable time to live.
+ * A receipt is provided as a JSON object with the batch id, its status (pending or completed)
+ * and, when completed, the delivery results.
+ */
+public class HttpReceiptStore {
+
+    private final Vertx vertx;
+    private final int maxReceipts;
+    private final long ttlMs;
+
+    private final Map<String, Receipt> receipts;
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param maxReceipts maximum number of receipts in the store
+     * @param ttlMs time to live of a completed receipt, in milliseconds
+     */
+    public HttpReceiptStore(Vertx vertx, int maxReceipts, long ttlMs) {
+        this.vertx = vertx;
+        this.maxReceipts = maxReceipts;
+        this.ttlMs = ttlMs;
+        this.receipts = new LinkedHashMap<String, Receipt>() {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Receipt> eldest) {
+                return size() > HttpReceiptStore.this.maxReceipts;
+            }
+        };
+    }
+
+    /**
+     * Create a new pending receipt
+     *
+     * @return the id of the batch the receipt is related to
+     */
+    public String create() {
+        String batchId = UUID.randomUUID().toString();
+        this.receipts.put(batchId, new Receipt());
+        return batchId;
+    }
+
+    /**
+     * Complete a pending receipt with the batch delivery results, notifying the waiting handlers
+     *
+     * @param batchId id of the batch the receipt is related to
+     * @param results delivery results of the batch
+     */
+    public void complete(String batchId, JsonObject results) {
+        Receipt receipt = this.receipts.get(batchId);
+        // the receipt could have been evicted in the meantime
+        if (receipt != null && receipt.results == null) {
+            receipt.results = results;
+            receipt.expiration = System.currentTimeMillis() + this.ttlMs;
+            for (Waiter waiter : receipt.waiters) {
+                this.vertx.cancelTimer(waiter.timerId);
+                waiter.handler.handle(receipt.toJson(batchId));
+            }
+            receipt.waiters.clear();
+        }
+    }
+
+    /**
+     * Get the receipt of a batch, waiting for it to be completed if it's still pending
+     *
+     * @param batchId id of the batch the receipt is related to
+     * @param timeout maximum time to wait for the receipt to be completed, in milliseconds
+     * @param handler handler called with the receipt, completed or still pending when the timeout expires,
+     *                or with null if it doesn't exist
+     */
+    public void await(String batchId, long timeout, Handler<JsonObject> handler) {
+        Receipt receipt = this.receipts.get(batchId);
+        if (receipt == null || receipt.results != null || timeout <= 0) {
+            handler.handle(receipt != null ? receipt.toJson(batchId) : null);
+            return;
+        }
+
+        Waiter waiter = new Waiter(handler);
+        waiter.timerId = this.vertx.setTimer(timeout, t -> {
+            receipt.waiters.remove(waiter);
+            handler.handle(receipt.toJson(batchId));
+        });
+        receipt.waiters.add(waiter);
+    }
+
+    /**
+     * Remove the completed receipts which are expired
+     *
+     * @return the number of removed receipts
+     */
+    public int expire() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        Iterator<Receipt> it = this.receipts.values().iterator();
+        while (it.hasNext()) {
+            Receipt receipt = it.next();
+            if (receipt.results != null && receipt.expiration <= now) {
+                it.remove();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return the number of receipts in the store
+     */
+    public int size() {
+        return this.receipts.size();
+    }
+
+    private static class Receipt {
+
+        private JsonObject results;
+        private long expiration;
+        private final List<Waiter> waiters = new ArrayList<>();
+
+        JsonObject toJson(String batchId) {
+            JsonObject json = new JsonObject()
+                    .put("batch_id", batchId)
+                    .put("status", this.results != null ? "completed" : "pending");
+            if (this.results != null) {
+                json.mergeIn(this.results);
+            }
+            return json;
+        }
+    }
+
+    private static class Waiter {
+
+        private final Handler<JsonObject> handler;
+        private long timerId;
+
+        Waiter(Handler<JsonObject> handler) {
+            this.handler = handler;
+        }
+    }
+}
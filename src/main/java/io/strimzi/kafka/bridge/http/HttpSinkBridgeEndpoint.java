@@ -12,9 +12,11 @@ import io.strimzi.kafka.bridge.Endpoint;
 import io.strimzi.kafka.bridge.SinkBridgeEndpoint;
 import io.strimzi.kafka.bridge.SinkTopicSubscription;
 import io.strimzi.kafka.bridge.config.BridgeConfig;
-import io.strimzi.kafka.bridge.converter.MessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpAvroMessageConverter;
 import io.strimzi.kafka.bridge.http.converter.HttpBinaryMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpCborMessageConverter;
 import io.strimzi.kafka.bridge.http.converter.HttpJsonMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpMessageConverter;
 import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
@@ -27,12 +29,15 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.kafka.client.common.TopicPartition;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
 import io.vertx.kafka.client.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.Deserializer;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -42,16 +47,26 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+@SuppressWarnings("checkstyle:ClassDataAbstractionCoupling")
 public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
 
+    // maximum time for a single poll while long-polling, in milliseconds
+    private static final long LONG_POLL_SLICE_MS = 500L;
+
     Pattern forwardedHostPattern = Pattern.compile("host=([^;]+)", Pattern.CASE_INSENSITIVE);
     Pattern forwardedProtoPattern = Pattern.compile("proto=([^;]+)", Pattern.CASE_INSENSITIVE);
     Pattern hostPortPattern = Pattern.compile("^.*:[0-9]+$");
 
-    private MessageConverter<K, V, Buffer, Buffer> messageConverter;
+    private HttpMessageConverter<K, V> messageConverter;
 
     private HttpBridgeContext<K, V> httpBridgeContext;
 
+    // stream the records are pushed to as they arrive, if open
+    private HttpConsumeStream<K, V> consumeStream;
+
+    // records fetched in the background for the next poll requests, if prefetching
+    private HttpPrefetchBuffer<K, V> prefetch;
+
     HttpSinkBridgeEndpoint(Vertx vertx, BridgeConfig bridgeConfig, HttpBridgeContext<K, V> context,
                            EmbeddedFormat format, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer) {
         super(vertx, bridgeConfig, format, keyDeserializer, valueDeserializer);
@@ -63,6 +78,18 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
 
     }
 
+    @Override
+    public void close() {
+        if (this.consumeStream != null) {
+            this.consumeStream.end();
+            this.consumeStream = null;
+        }
+        if (this.prefetch != null) {
+            this.prefetch.close();
+        }
+        super.close();
+    }
+
     @Override
     public void handle(Endpoint<?> endpoint) {
         this.handle(endpoint, null);
@@ -114,6 +141,14 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
         // create the consumer
         this.initConsumer(false, config);
 
+        // the records are prefetched only when the offsets are committed explicitly, so that the buffered ones are never committed
+        int prefetchRecords = this.bridgeConfig.getHttpConfig().getConsumerPrefetchRecords();
+        if (prefetchRecords > 0 && !this.isAutoCommit(config)) {
+            this.prefetch = new HttpPrefetchBuffer<>(this.vertx, prefetchRecords,
+                    this.bridgeConfig.getHttpConfig().getConsumerPrefetchBytes(), this::consume);
+        }
+        this.setPartitionsRevokedHandler(this::resetPartitions);
+
         handler.handle(this);
 
         log.info("Created consumer {} in group {}", this.name, groupId);
@@ -129,8 +164,10 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
         JsonArray seekOffsetsList = bodyAsJson.getJsonArray("offsets");
 
         List<Future> seekHandlers = new ArrayList<>(seekOffsetsList.size());
+        List<TopicPartition> topicPartitions = new ArrayList<>(seekOffsetsList.size());
         for (int i = 0; i < seekOffsetsList.size(); i++) {
             TopicPartition topicPartition = new TopicPartition(seekOffsetsList.getJsonObject(i));
+            topicPartitions.add(topicPartition);
             long offset = seekOffsetsList.getJsonObject(i).getLong("offset");
             Future<Void> fut = Future.future();
             seekHandlers.add(fut);
@@ -138,6 +175,7 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
         }
 
         CompositeFuture.join(seekHandlers).setHandler(done -> {
+            this.resetPartitions(topicPartitions);
             if (done.succeeded()) {
                 HttpUtils.sendResponse(routingContext, HttpResponseStatus.NO_CONTENT.code(), null, null);
             } else {
@@ -164,6 +202,7 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
                 .collect(Collectors.toSet());
 
         Handler<AsyncResult<Void>> seekHandler = done -> {
+            this.resetPartitions(set);
             if (done.succeeded()) {
                 HttpUtils.sendResponse(routingContext, HttpResponseStatus.NO_CONTENT.code(), null, null);
             } else {
@@ -189,14 +228,20 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
 
     private void doCommit(RoutingContext routingContext, JsonObject bodyAsJson) {
 
-        if (bodyAsJson != null) {
-            JsonArray offsetsList = bodyAsJson.getJsonArray("offsets");
+        if (bodyAsJson != null || this.prefetch != null || this.consumeStream != null) {
             Map<TopicPartition, OffsetAndMetadata> offsetData = new HashMap<>();
 
-            for (int i = 0; i < offsetsList.size(); i++) {
-                TopicPartition topicPartition = new TopicPartition(offsetsList.getJsonObject(i));
-                OffsetAndMetadata offsetAndMetadata = new OffsetAndMetadata(offsetsList.getJsonObject(i));
-                offsetData.put(topicPartition, offsetAndMetadata);
+            if (bodyAsJson != null) {
+                JsonArray offsetsList = bodyAsJson.getJsonArray("offsets");
+                for (int i = 0; i < offsetsList.size(); i++) {
+                    TopicPartition topicPartition = new TopicPartition(offsetsList.getJsonObject(i));
+                    OffsetAndMetadata offsetAndMetadata = new OffsetAndMetadata(offsetsList.getJsonObject(i));
+                    offsetData.put(topicPartition, offsetAndMetadata);
+                }
+            } else {
+                // the consumer position is past the prefetched (or not streamed yet) records,
+                // only the ones handed to the client are committed
+                offsetData.putAll(this.deliveredOffsets());
             }
             this.commit(offsetData, status -> {
                 if (status.succeeded()) {
@@ -235,6 +280,16 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
     private void doPoll(RoutingContext routingContext) {
         String accept = routingContext.request().getHeader("Accept");
 
+        if (this.consumeStream != null) {
+            HttpBridgeError error = new HttpBridgeError(
+                    HttpResponseStatus.CONFLICT.code(),
+                    "The consumer is streaming records, they can't be polled at the same time."
+            );
+            HttpUtils.sendResponse(routingContext, HttpResponseStatus.CONFLICT.code(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+            return;
+        }
+
         // check that the accepted body by the client is the same as the format on creation
         if (accept != null && this.checkAcceptedBody(accept)) {
 
@@ -245,12 +300,19 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
             if (routingContext.request().getParam("max_bytes") != null) {
                 this.maxBytes = Long.parseLong(routingContext.request().getParam("max_bytes"));
             }
+            int maxRecords = routingContext.request().getParam("max_records") != null ?
+                    Integer.parseInt(routingContext.request().getParam("max_records")) : Integer.MAX_VALUE;
 
-            this.consume(records -> {
+            Handler<AsyncResult<KafkaConsumerRecords<K, V>>> pollHandler = records -> {
                 if (records.succeeded()) {
                     try {
-                        Buffer buffer = messageConverter.toMessages(records.result());
-                        if (buffer.getBytes().length > this.maxBytes) {
+                        // the records are converted until a limit is reached, the others are carried over to the next poll
+                        Buffer buffer = Buffer.buffer();
+                        int converted = messageConverter.toMessages(records.result(), maxRecords, this.maxBytes, buffer);
+                        if (converted < records.result().size()) {
+                            this.carryOver(records.result(), converted);
+                        }
+                        if (converted == 0 && !records.result().isEmpty()) {
                             HttpBridgeError error = new HttpBridgeError(
                                     HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
                                     "Response exceeds the maximum number of bytes the consumer can receive"
@@ -259,11 +321,13 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
                                     BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
                         } else {
                             HttpUtils.sendResponse(routingContext, HttpResponseStatus.OK.code(),
-                                    this.format == EmbeddedFormat.BINARY ? BridgeContentType.KAFKA_JSON_BINARY : BridgeContentType.KAFKA_JSON_JSON,
+                                    this.contentType(),
                                     buffer);
                         }    
                     } catch (DecodeException e) {
                         log.error("Error decoding records as JSON", e);
+                        // the records are not lost, they are returned by the next poll
+                        this.carryOver(records.result(), 0);
                         HttpBridgeError error = new HttpBridgeError(
                             HttpResponseStatus.NOT_ACCEPTABLE.code(),
                             e.getMessage()
@@ -279,7 +343,9 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
                     HttpUtils.sendResponse(routingContext, HttpResponseStatus.INTERNAL_SERVER_ERROR.code(),
                             BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
                 }
-            });
+            };
+
+            this.poll(routingContext, pollHandler);
         } else {
             HttpBridgeError error = new HttpBridgeError(
                     HttpResponseStatus.NOT_ACCEPTABLE.code(),
@@ -290,6 +356,102 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
         }
     }
 
+    /**
+     * Get the records for a poll request, from the prefetch buffer if any or polling Kafka
+     *
+     * @param routingContext routing context of the poll request
+     * @param handler handler called with the records
+     */
+    private void poll(RoutingContext routingContext, Handler<AsyncResult<KafkaConsumerRecords<K, V>>> handler) {
+        // with a maximum wait, the request is held until records arrive instead of getting an empty response
+        long maxWaitMs = routingContext.request().getParam("max_wait_ms") != null ?
+                Long.parseLong(routingContext.request().getParam("max_wait_ms")) : 0;
+        if (maxWaitMs > 0) {
+            maxWaitMs = Math.min(maxWaitMs, this.bridgeConfig.getHttpConfig().getConsumerMaxWait());
+        }
+        if (this.prefetch != null) {
+            this.prefetch.take(maxWaitMs > 0 ? maxWaitMs : this.pollTimeOut, handler);
+        } else if (maxWaitMs > 0) {
+            this.longPoll(routingContext, System.currentTimeMillis() + maxWaitMs, handler);
+        } else {
+            this.consume(handler);
+        }
+    }
+
+    private void doPollStream(RoutingContext routingContext) {
+        HttpBridgeError error = null;
+        if (this.consumeStream != null) {
+            error = new HttpBridgeError(
+                    HttpResponseStatus.CONFLICT.code(),
+                    "A records stream is already open for the consumer."
+            );
+        } else if (this.format == EmbeddedFormat.CBOR) {
+            error = new HttpBridgeError(
+                    HttpResponseStatus.NOT_ACCEPTABLE.code(),
+                    "Records in the cbor format can't be streamed as Server-Sent Events."
+            );
+        }
+        if (error != null) {
+            HttpUtils.sendResponse(routingContext, error.getCode(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+            return;
+        }
+
+        // the consumer is paused while the client can't keep up with the records
+        Handler<Boolean> flowControl = running -> {
+            if (running) {
+                this.resume();
+            } else {
+                this.pause();
+            }
+        };
+        this.consumeStream = new HttpConsumeStream<>(this.vertx, routingContext, this.messageConverter,
+                flowControl, v -> this.stopStreaming());
+        this.consumeStream.start();
+        this.setReceivedHandler(this.consumeStream::handle);
+        if (this.prefetch != null) {
+            // the prefetched records come first, the next ones are fetched by the stream
+            this.prefetch.stop(this.consumeStream::handle);
+        }
+        this.stream(true);
+    }
+
+    private void stopStreaming() {
+        this.stream(false);
+        this.setReceivedHandler(null);
+        // the consumer could have been paused by the stream flow control
+        this.resume();
+        this.consumeStream = null;
+    }
+
+    /**
+     * @return if the consumer is streaming records to a client
+     */
+    public boolean isStreaming() {
+        return this.consumeStream != null;
+    }
+
+    /**
+     * Poll for records until some of them arrive or the deadline passes, in slices so that the consumer is
+     * not held by a single long poll and a client going away is noticed. Kafka returns from a poll as soon as
+     * records are fetched, so slicing doesn't add latency.
+     *
+     * @param routingContext routing context of the poll request
+     * @param deadline time by which the request gets a response, even if empty, in milliseconds
+     * @param handler handler called with the polled records
+     */
+    private void longPoll(RoutingContext routingContext, long deadline, Handler<AsyncResult<KafkaConsumerRecords<K, V>>> handler) {
+        long timeout = Math.max(Math.min(deadline - System.currentTimeMillis(), LONG_POLL_SLICE_MS), 0);
+        this.consume(timeout, records -> {
+            if (records.succeeded() && records.result().isEmpty() &&
+                    System.currentTimeMillis() < deadline && !routingContext.response().closed()) {
+                this.longPoll(routingContext, deadline, handler);
+            } else {
+                handler.handle(records);
+            }
+        });
+    }
+
     private void doAssign(RoutingContext routingContext, JsonObject bodyAsJson) {
         JsonArray partitionsList = bodyAsJson.getJsonArray("partitions");
         this.topicSubscriptions.addAll(
@@ -300,6 +462,7 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
         );
 
         this.setAssignHandler(assignResult -> {
+            this.clearPrefetch();
             if (assignResult.succeeded()) {
                 HttpUtils.sendResponse(routingContext, HttpResponseStatus.NO_CONTENT.code(), null, null);
             }
@@ -392,6 +555,7 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
 
     public void doUnsubscribe(RoutingContext routingContext) {
         this.setUnsubscribeHandler(unsubscribeResult -> {
+            this.clearPrefetch();
             if (unsubscribeResult.succeeded()) {
                 HttpUtils.sendResponse(routingContext, HttpResponseStatus.NO_CONTENT.code(), null, null);
             } else {
@@ -406,6 +570,70 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
         this.unsubscribe();
     }
 
+    /**
+     * Keep the last records of a batch, not returned to the client, for the next poll request: they are put back
+     * in the prefetch buffer if any, otherwise the consumer is moved back to them, as the consumer position is what
+     * gets committed and it can't be past records not returned yet
+     *
+     * @param records the records
+     * @param from index of the first record not returned
+     */
+    private void carryOver(KafkaConsumerRecords<K, V> records, int from) {
+        if (this.prefetch != null) {
+            this.prefetch.putBack(records, from);
+            return;
+        }
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (int i = from; i < records.size(); i++) {
+            TopicPartition partition = new TopicPartition(records.recordAt(i).topic(), records.recordAt(i).partition());
+            if (partitions.add(partition)) {
+                this.seek(partition, records.recordAt(i).offset(), null);
+            }
+        }
+    }
+
+    private void resetPartitions(Collection<TopicPartition> partitions) {
+        if (this.prefetch != null) {
+            this.prefetch.reset(partitions);
+        }
+        if (this.consumeStream != null) {
+            this.consumeStream.reset(partitions);
+        }
+    }
+
+    private void clearPrefetch() {
+        if (this.prefetch != null) {
+            this.prefetch.clear();
+        }
+    }
+
+    /**
+     * @return the offsets to commit for the records handed to the client, prefetched or streamed
+     */
+    private Map<TopicPartition, OffsetAndMetadata> deliveredOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        if (this.prefetch != null) {
+            offsets.putAll(this.prefetch.delivered());
+        }
+        if (this.consumeStream != null) {
+            offsets.putAll(this.consumeStream.delivered());
+        }
+        return offsets;
+    }
+
+    /**
+     * Check if the offsets are committed automatically, as set on consumer creation or for all the consumers,
+     * Kafka default otherwise
+     *
+     * @param config configuration parameters provided on consumer creation
+     * @return if the offsets are committed automatically
+     */
+    private boolean isAutoCommit(Properties config) {
+        Object enableAutoCommit = config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG,
+                this.bridgeConfig.getKafkaConfig().getConsumerConfig().getConfig().getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true));
+        return Boolean.parseBoolean(String.valueOf(enableAutoCommit));
+    }
+
     /**
      * Add a configuration parameter with key and value to the provided Properties bag
      *
@@ -451,6 +679,10 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
                 doPoll(routingContext);
                 break;
 
+            case POLL_STREAM:
+                doPollStream(routingContext);
+                break;
+
             case DELETE_CONSUMER:
                 doDeleteConsumer(routingContext);
                 break;
@@ -480,22 +712,43 @@ public class HttpSinkBridgeEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
         }
     }
 
-    private MessageConverter<K, V, Buffer, Buffer> buildMessageConverter() {
+    private HttpMessageConverter<K, V> buildMessageConverter() {
         switch (this.format) {
             case JSON:
-                return (MessageConverter<K, V, Buffer, Buffer>) new HttpJsonMessageConverter();
+                return (HttpMessageConverter<K, V>) new HttpJsonMessageConverter();
             case BINARY:
-                return (MessageConverter<K, V, Buffer, Buffer>) new HttpBinaryMessageConverter();
+                return (HttpMessageConverter<K, V>) new HttpBinaryMessageConverter();
+            case AVRO:
+                return (HttpMessageConverter<K, V>) new HttpAvroMessageConverter(this.httpBridgeContext.getAvroSchemaCache());
+            case CBOR:
+                return (HttpMessageConverter<K, V>) new HttpCborMessageConverter();
         }
         return null;
     }
 
+    private String contentType() {
+        switch (this.format) {
+            case BINARY:
+                return BridgeContentType.KAFKA_JSON_BINARY;
+            case AVRO:
+                return BridgeContentType.KAFKA_JSON_AVRO;
+            case CBOR:
+                return BridgeContentType.KAFKA_CBOR_BINARY;
+            default:
+                return BridgeContentType.KAFKA_JSON_JSON;
+        }
+    }
+
     private boolean checkAcceptedBody(String accept) {
         switch (accept) {
             case BridgeContentType.KAFKA_JSON_JSON:
                 return format == EmbeddedFormat.JSON;
             case BridgeContentType.KAFKA_JSON_BINARY:
                 return format == EmbeddedFormat.BINARY;
+            case BridgeContentType.KAFKA_JSON_AVRO:
+                return format == EmbeddedFormat.AVRO;
+            case BridgeContentType.KAFKA_CBOR_BINARY:
+                return format == EmbeddedFormat.CBOR;
         }
         return false;
     }
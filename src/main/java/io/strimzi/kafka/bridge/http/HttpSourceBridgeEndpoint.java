@@ -5,23 +5,30 @@
 
 package io.strimzi.kafka.bridge.http;
 
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.strimzi.kafka.bridge.BridgeContentType;
 import io.strimzi.kafka.bridge.EmbeddedFormat;
 import io.strimzi.kafka.bridge.Endpoint;
+import io.strimzi.kafka.bridge.IllegalEmbeddedFormatException;
+import io.strimzi.kafka.bridge.ProducerAdmissionController;
 import io.strimzi.kafka.bridge.SourceBridgeEndpoint;
+import io.strimzi.kafka.bridge.StickyPartitioner;
+import io.strimzi.kafka.bridge.TransactionalProducersBusyException;
 import io.strimzi.kafka.bridge.config.BridgeConfig;
-import io.strimzi.kafka.bridge.converter.MessageConverter;
+import io.strimzi.kafka.bridge.http.converter.AbstractHttpMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpAvroMessageConverter;
 import io.strimzi.kafka.bridge.http.converter.HttpBinaryMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpCborMessageConverter;
 import io.strimzi.kafka.bridge.http.converter.HttpJsonMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpProducerMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpRawMessageConverter;
 import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
-import io.strimzi.kafka.bridge.http.model.HttpBridgeResult;
-import io.vertx.core.CompositeFuture;
-import io.vertx.core.Future;
+import io.strimzi.kafka.bridge.http.model.HttpProduceResults;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.kafka.client.producer.KafkaProducerRecord;
@@ -29,47 +36,87 @@ import io.vertx.kafka.client.producer.RecordMetadata;
 import org.apache.kafka.common.errors.TimeoutException;
 import org.apache.kafka.common.serialization.Serializer;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 public class HttpSourceBridgeEndpoint<K, V> extends SourceBridgeEndpoint<K, V> {
 
-    private MessageConverter<K, V, Buffer, Buffer> messageConverter;
-    private boolean closing;
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
 
-    public HttpSourceBridgeEndpoint(Vertx vertx, BridgeConfig bridgeConfig,
+    private HttpProducerMessageConverter<K, V> messageConverter;
+    private HttpBridgeContext<K, V> httpBridgeContext;
+
+    public HttpSourceBridgeEndpoint(Vertx vertx, BridgeConfig bridgeConfig, HttpBridgeContext<K, V> context,
                                     EmbeddedFormat format, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        super(vertx, bridgeConfig, format, keySerializer, valueSerializer);
+        super(vertx, bridgeConfig, format, keySerializer, valueSerializer, context.getProducerPool());
+        this.httpBridgeContext = context;
+        this.setAdmissionController(context.getAdmissionController());
+        this.setTransactionalProducerPool(context.getTransactionalProducerPool());
+        this.setRetryQueue(context.getProducerRetryQueue());
+        this.setDeadLetterTopics(context.getDeadLetterTopics());
     }
 
     @Override
     public void open() {
         this.name = this.bridgeConfig.getBridgeID() == null ? "kafka-bridge-producer-" + UUID.randomUUID() : this.bridgeConfig.getBridgeID() + "-" + UUID.randomUUID();
-        this.closing = false;
         super.open();
     }
 
     @Override
-    @SuppressWarnings("checkstyle:NPathComplexity")
     public void handle(Endpoint<?> endpoint) {
         RoutingContext routingContext = (RoutingContext) endpoint.get();
 
-        messageConverter = this.buildMessageConverter();
+        switch (this.httpBridgeContext.getOpenApiOperation()) {
+
+            case SEND:
+            case SEND_TO_PARTITION:
+            case SEND_TO_TOPICS:
+                doSend(routingContext);
+                break;
 
+            case SEND_STREAM:
+                doSendStream(routingContext);
+                break;
+        }
+    }
+
+    @SuppressWarnings("checkstyle:NPathComplexity")
+    private void doSend(RoutingContext routingContext) {
+        // a retried request gets the response recorded for the original one, without sending the records again
+        if (this.replay(routingContext)) {
+            return;
+        }
+
+        String mediaType = HttpUtils.mediaType(routingContext.request());
+        boolean raw = BridgeContentType.OCTET_STREAM.equals(mediaType);
+        messageConverter = this.buildMessageConverter(routingContext, mediaType);
+
+        // not specified when sending to multiple topics, each record specifies its own one
         String topic = routingContext.pathParam("topicname");
 
         List<KafkaProducerRecord<K, V>> records;
         Integer partition = null;
-        if (routingContext.pathParam("partitionid") != null) {
+        // with a raw body, the partition can be specified as query parameter as well
+        String partitionParam = routingContext.pathParam("partitionid") != null || !raw ?
+                routingContext.pathParam("partitionid") : routingContext.queryParams().get("partition");
+        if (partitionParam != null) {
             try {
-                partition = Integer.parseInt(routingContext.pathParam("partitionid"));
+                partition = Integer.parseInt(partitionParam);
             } catch (NumberFormatException ne) {
                 HttpBridgeError error = new HttpBridgeError(
                         HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
                         "Specified partition is not a valid number");
-                HttpUtils.sendResponse(routingContext, HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
-                        BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+                this.reply(routingContext, HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
+                        BridgeContentType.KAFKA_JSON, error.toJson().toBuffer(), false);
                 return;
             }
         }
@@ -79,89 +126,511 @@ public class HttpSourceBridgeEndpoint<K, V> extends SourceBridgeEndpoint<K, V> {
             HttpBridgeError error = new HttpBridgeError(
                     HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
                     e.getMessage());
-            HttpUtils.sendResponse(routingContext, HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
-                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+            this.reply(routingContext, HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer(), false);
             return;
         }
-        List<HttpBridgeResult<?>> results = new ArrayList<>(records.size());
 
-        // start sending records asynchronously
-        List<Future> sendHandlers = new ArrayList<>(records.size());
-        for (KafkaProducerRecord<K, V> record : records) {
-            Future<RecordMetadata> fut = Future.future();
-            sendHandlers.add(fut);
-            this.send(record, fut.completer());
+        // in the transactional mode, the records are all committed or all aborted
+        boolean transactional = Boolean.parseBoolean(routingContext.queryParams().get("transactional"));
+        if (transactional && !this.isTransactional()) {
+            HttpBridgeError error = new HttpBridgeError(
+                    HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
+                    "Transactional producers are not enabled");
+            this.reply(routingContext, HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer(), false);
+            return;
         }
 
-        // wait for ALL futures completed
-        List<KafkaProducerRecord<K, V>> finalRecords = records;
-        CompositeFuture.join(sendHandlers).setHandler(done -> {
+        this.checkMetadata(records, partitions ->
+            this.checkPartitions(records, partitions, counts ->
+                this.sendRecords(routingContext, this.stick(records, counts), partitions, transactional)));
+    }
 
-            for (int i = 0; i < sendHandlers.size(); i++) {
-                // check if, for each future, the sending operation is completed successfully or failed
-                if (sendHandlers.get(i).succeeded() && sendHandlers.get(i).result() != null) {
-                    RecordMetadata metadata = (RecordMetadata) sendHandlers.get(i).result();
-                    log.debug("Delivered record {} to Kafka on topic {} at partition {} [{}]", finalRecords.get(i), metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
-                    results.add(new HttpBridgeResult<>(metadata));
+    /**
+     * Send the records, apart from the ones going to not existing topics or partitions which get an error right away
+     *
+     * @param routingContext routing context of the produce request
+     * @param records the records to send
+     * @param partitions number of partitions of each topic the records are sent to (0 if not existing, null if not known)
+     * @param transactional if the records have to be sent in a single transaction
+     */
+    private void sendRecords(RoutingContext routingContext, List<KafkaProducerRecord<K, V>> records,
+                             Map<String, Integer> partitions, boolean transactional) {
+        // rejecting the records early if the producer can't take them without going over the in flight limits
+        long retryAfterMs = this.getAdmissionController().admit(records);
+        if (retryAfterMs > 0) {
+            HttpBridgeError error = new HttpBridgeError(
+                    HttpResponseStatus.TOO_MANY_REQUESTS.code(),
+                    "Too many records in flight to Kafka, retry later");
+            routingContext.response().putHeader(HttpHeaderNames.RETRY_AFTER, String.valueOf(retryAfterSeconds(retryAfterMs)));
+            this.reply(routingContext, HttpResponseStatus.TOO_MANY_REQUESTS.code(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer(), false);
+            return;
+        }
+
+        String batchId = this.receipt(routingContext);
+
+        HttpProduceResults results = new HttpProduceResults(records.size());
+        if (records.isEmpty()) {
+            this.sendResults(routingContext, batchId, results);
+            return;
+        }
+        if (transactional) {
+            this.sendTransaction(routingContext, batchId, records, partitions, results);
+            return;
+        }
+
+        // start sending records asynchronously, the results are provided when ALL of them are completed
+        for (int i = 0; i < records.size(); i++) {
+            int index = i;
+            KafkaProducerRecord<K, V> record = records.get(i);
+            HttpBridgeError metadataError = metadataError(record, partitions.get(record.topic()));
+            if (metadataError != null) {
+                if (results.failed(index, metadataError)) {
+                    this.sendResults(routingContext, batchId, results);
+                }
+                continue;
+            }
+            this.sendTracked(record, done -> {
+                boolean completed;
+                if (done.succeeded()) {
+                    RecordMetadata metadata = done.result();
+                    log.debug("Delivered record {} to Kafka on topic {} at partition {} [{}]", record, metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
+                    completed = results.delivered(index, metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
                 } else {
-                    String msg = sendHandlers.get(i).cause().getMessage();
-                    int code = handleError(sendHandlers.get(i).cause());
-                    log.error("Failed to deliver record {}", finalRecords.get(i), done.cause());
-                    results.add(new HttpBridgeResult<>(new HttpBridgeError(code, msg)));
+                    log.error("Failed to deliver record {}", record, done.cause());
+                    completed = results.failed(index, new HttpBridgeError(handleError(record.topic(), done.cause()), done.cause().getMessage()));
+                }
+                if (completed) {
+                    this.sendResults(routingContext, batchId, results);
                 }
+            });
+        }
+    }
+
+    /**
+     * Send the records in a single transaction, aborting it without sending anything if any of them
+     * goes to a not existing topic or partition
+     *
+     * @param routingContext routing context of the produce request
+     * @param batchId id of the batch in the asynchronous mode, null otherwise
+     * @param records the records to send
+     * @param partitions number of partitions of each topic the records are sent to (0 if not existing, null if not known)
+     * @param results the results to fill in
+     */
+    private void sendTransaction(RoutingContext routingContext, String batchId, List<KafkaProducerRecord<K, V>> records,
+                                 Map<String, Integer> partitions, HttpProduceResults results) {
+        for (KafkaProducerRecord<K, V> record : records) {
+            HttpBridgeError metadataError = metadataError(record, partitions.get(record.topic()));
+            if (metadataError != null) {
+                this.abortTransaction(routingContext, batchId, records, results, metadataError, "aborted");
+                return;
             }
-            HttpUtils.sendResponse(routingContext, HttpResponseStatus.OK.code(),
-                    BridgeContentType.KAFKA_JSON, buildOffsets(results).toBuffer());
-            
-            if (this.closing) {
-                this.close();
+        }
+
+        this.sendTransaction(records, done -> {
+            if (done.failed() && done.cause() instanceof TransactionalProducersBusyException && batchId == null) {
+                // nothing started, so the whole request is rejected for the client to retry it later
+                long retryAfterMs = ((TransactionalProducersBusyException) done.cause()).getRetryAfterMs();
+                HttpBridgeError error = new HttpBridgeError(
+                        HttpResponseStatus.SERVICE_UNAVAILABLE.code(), done.cause().getMessage());
+                routingContext.response().putHeader(HttpHeaderNames.RETRY_AFTER, String.valueOf(retryAfterSeconds(retryAfterMs)));
+                this.reply(routingContext, HttpResponseStatus.SERVICE_UNAVAILABLE.code(),
+                        BridgeContentType.KAFKA_JSON, error.toJson().toBuffer(), false);
+            } else if (done.succeeded()) {
+                log.debug("Committed transaction with {} records", records.size());
+                for (int i = 0; i < records.size(); i++) {
+                    RecordMetadata metadata = done.result().get(i);
+                    results.delivered(i, metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
+                }
+                results.setTransaction("committed");
+                this.sendResults(routingContext, batchId, results);
+            } else {
+                log.error("Failed to commit transaction with {} records", records.size(), done.cause());
+                HttpBridgeError error = new HttpBridgeError(
+                        handleError(records.get(0).topic(), done.cause()), done.cause().getMessage());
+                // on commit timeout, the transaction could be completed anyway by the coordinator
+                this.abortTransaction(routingContext, batchId, records, results, error,
+                        done.cause() instanceof TimeoutException ? "unknown" : "aborted");
             }
         });
     }
 
-    @Override
-    public void handle(Endpoint<?> endpoint, Handler<?> handler) {
+    private void abortTransaction(RoutingContext routingContext, String batchId, List<KafkaProducerRecord<K, V>> records,
+                                  HttpProduceResults results, HttpBridgeError error, String transaction) {
+        // none of the records is written, so they all get the error which made the transaction abort
+        for (int i = 0; i < records.size(); i++) {
+            results.failed(i, error);
+        }
+        results.setTransaction(transaction);
+        this.sendResults(routingContext, batchId, results);
+    }
 
+    /**
+     * In the asynchronous mode, reply to the client with a receipt for looking up the delivery results later
+     *
+     * @param routingContext routing context of the produce request
+     * @return the id of the batch the receipt is for, null if not in the asynchronous mode
+     */
+    private String receipt(RoutingContext routingContext) {
+        if (!Boolean.parseBoolean(routingContext.queryParams().get("async"))) {
+            return null;
+        }
+        String batchId = this.httpBridgeContext.getReceiptStore().create();
+        this.reply(routingContext, HttpResponseStatus.ACCEPTED.code(),
+                BridgeContentType.KAFKA_JSON, new JsonObject().put("batch_id", batchId).toBuffer(), true);
+        return batchId;
     }
 
-    private JsonObject buildOffsets(List<HttpBridgeResult<?>> results) {
-        JsonObject jsonResponse = new JsonObject();
-        JsonArray offsets = new JsonArray();
+    /**
+     * Check if a produce request carrying an idempotency key was already received, replying with the response
+     * recorded for it; otherwise, start recording the response for the key
+     *
+     * @param routingContext routing context of the produce request
+     * @return if the request was already received, so a response was sent
+     */
+    private boolean replay(RoutingContext routingContext) {
+        String key = routingContext.request().getHeader(IDEMPOTENCY_KEY);
+        if (key == null) {
+            return false;
+        }
+        HttpIdempotencyStore store = this.httpBridgeContext.getIdempotencyStore();
+        String fingerprint = HttpIdempotencyStore.fingerprint(routingContext.request().uri(), routingContext.getBody());
+        HttpIdempotencyStore.Entry entry = store.get(key);
+        if (entry == null) {
+            store.create(key, fingerprint);
+            return false;
+        }
+
+        HttpBridgeError error = null;
+        if (!entry.getFingerprint().equals(fingerprint)) {
+            error = new HttpBridgeError(
+                    HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
+                    "Idempotency-Key " + key + " was already used for a different request");
+        } else if (!entry.isCompleted()) {
+            error = new HttpBridgeError(
+                    HttpResponseStatus.CONFLICT.code(),
+                    "A request with Idempotency-Key " + key + " is still in progress");
+        }
+        if (error != null) {
+            HttpUtils.sendResponse(routingContext, error.getCode(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+        } else {
+            log.debug("Replaying response for Idempotency-Key {}", key);
+            routingContext.response().putHeader(IDEMPOTENT_REPLAYED, "true");
+            HttpUtils.sendResponse(routingContext, entry.getStatusCode(),
+                    BridgeContentType.KAFKA_JSON, entry.getBody());
+        }
+        return true;
+    }
 
-        for (HttpBridgeResult<?> result : results) {
-            JsonObject offset = null;
-            if (result.getResult() instanceof RecordMetadata) {
-                RecordMetadata metadata = (RecordMetadata) result.getResult();
-                offset = new JsonObject()
-                        .put("partition", metadata.getPartition())
-                        .put("offset", metadata.getOffset());
-            } else if (result.getResult() instanceof HttpBridgeError) {
-                HttpBridgeError error = (HttpBridgeError) result.getResult();
-                offset = error.toJson();
+    /**
+     * Send the response to a produce request, recording it when the request carries an idempotency key.
+     * Only the responses of the requests which wrote records are recorded, even if some of the records failed,
+     * so that a retry gets the same per record results instead of writing the delivered records again;
+     * in the asynchronous mode the receipt is recorded (it reports the delivery results). The others, with
+     * nothing written, allow the request to be retried with the same key.
+     *
+     * @param routingContext routing context of the produce request
+     * @param statusCode status code of the response
+     * @param contentType content type of the response body
+     * @param body the response body
+     * @param written if the request wrote records, or could have, so the response has to be recorded
+     */
+    private void reply(RoutingContext routingContext, int statusCode, String contentType, Buffer body, boolean written) {
+        String key = routingContext.request().getHeader(IDEMPOTENCY_KEY);
+        if (key != null) {
+            // recorded even if the client went away, it's going to retry
+            if (written) {
+                this.httpBridgeContext.getIdempotencyStore().complete(key, statusCode, body);
+            } else {
+                this.httpBridgeContext.getIdempotencyStore().remove(key);
             }
-            offsets.add(offset);
         }
-        jsonResponse.put("offsets", offsets);
-        return jsonResponse;
+        HttpUtils.sendResponse(routingContext, statusCode, contentType, body);
     }
 
-    private int handleError(Throwable ex) {
-        if (ex instanceof TimeoutException && ex.getMessage() != null &&
-            ex.getMessage().contains("not present in metadata")) {
-            this.closing = true;
-            return HttpResponseStatus.NOT_FOUND.code();
+    private void sendResults(RoutingContext routingContext, String batchId, HttpProduceResults results) {
+        // with large batches, the client could just need a summary instead of the result for each record
+        boolean summary = Boolean.parseBoolean(routingContext.queryParams().get("summary"));
+        if (batchId != null) {
+            this.httpBridgeContext.getReceiptStore().complete(batchId, summary ? results.toSummaryJson() : results.toJson());
         } else {
-            return HttpResponseStatus.INTERNAL_SERVER_ERROR.code();
+            this.reply(routingContext, HttpResponseStatus.OK.code(),
+                    BridgeContentType.KAFKA_JSON, summary ? results.toSummaryJson().toBuffer() : results.toBuffer(),
+                    results.isWritten() || !results.hasErrors());
         }
     }
 
-    private MessageConverter<K, V, Buffer, Buffer> buildMessageConverter() {
-        switch (this.format) {
+    /**
+     * Pin the records without key and partition of a produce request to a single partition of their topic,
+     * when the sticky partitioner is enabled
+     *
+     * @param records the records of the produce request
+     * @param partitions number of partitions of each topic the records are sent to (0 if not existing, null if not known)
+     * @return the records, with the partition set for the keyless ones
+     */
+    private List<KafkaProducerRecord<K, V>> stick(List<KafkaProducerRecord<K, V>> records, Map<String, Integer> partitions) {
+        if (!this.httpBridgeContext.getStickyPartitioner().isEnabled()) {
+            return records;
+        }
+        Map<String, Integer> pinned = new HashMap<>();
+        List<KafkaProducerRecord<K, V>> stuck = new ArrayList<>(records.size());
+        for (KafkaProducerRecord<K, V> record : records) {
+            stuck.add(this.stick(record, partitions.get(record.topic()), pinned));
+        }
+        return stuck;
+    }
+
+    private KafkaProducerRecord<K, V> stick(KafkaProducerRecord<K, V> record, Integer partitions, Map<String, Integer> pinned) {
+        StickyPartitioner partitioner = this.httpBridgeContext.getStickyPartitioner();
+        if (record.key() != null || record.partition() != null) {
+            return record;
+        }
+        // without the number of partitions, the records are left to the producer partitioner
+        if (partitions == null || partitions == 0) {
+            return record;
+        }
+        int partition = pinned.computeIfAbsent(record.topic(), topic -> partitioner.partition(topic, partitions));
+        return KafkaProducerRecord.create(record.topic(), record.key(), record.value(), record.timestamp(), partition)
+                .addHeaders(record.headers());
+    }
+
+    /**
+     * Send a record, tracking its bytes in flight for the partition it's pinned to (if any)
+     *
+     * @param record the record to send
+     * @param handler handler called with the delivery result
+     */
+    private void sendTracked(KafkaProducerRecord<K, V> record, Handler<AsyncResult<RecordMetadata>> handler) {
+        StickyPartitioner partitioner = this.httpBridgeContext.getStickyPartitioner();
+        if (!partitioner.isEnabled() || record.partition() == null) {
+            this.send(record, handler);
+            return;
+        }
+        long size = ProducerAdmissionController.sizeOf(record);
+        partitioner.acquire(record.topic(), record.partition(), size);
+        this.send(record, done -> {
+            partitioner.release(record.topic(), record.partition(), size);
+            handler.handle(done);
+        });
+    }
+
+    /**
+     * Get the number of partitions of the topics the records are sent to
+     *
+     * @param records the records
+     * @param handler handler called with the number of partitions of each topic (0 if not existing, null if not known)
+     */
+    private void checkMetadata(List<KafkaProducerRecord<K, V>> records, Handler<Map<String, Integer>> handler) {
+        Set<String> topics = new LinkedHashSet<>();
+        for (KafkaProducerRecord<K, V> record : records) {
+            topics.add(record.topic());
+        }
+        this.checkMetadata(topics.iterator(), new HashMap<>(), handler);
+    }
+
+    private void checkMetadata(Iterator<String> topics, Map<String, Integer> partitions, Handler<Map<String, Integer>> handler) {
+        if (!topics.hasNext()) {
+            handler.handle(partitions);
+            return;
+        }
+        String topic = topics.next();
+        this.httpBridgeContext.getTopicMetadataCache().partitions(topic, count -> {
+            partitions.put(topic, count);
+            this.checkMetadata(topics, partitions, handler);
+        });
+    }
+
+    /**
+     * Get the number of partitions of the topics with keyless records not known by the topics metadata cache
+     * (i.e. because it's disabled) through the producer, for the sticky partitioner to pin them
+     *
+     * @param records the records
+     * @param partitions number of partitions of each topic the records are sent to, from the topics metadata cache
+     * @param handler handler called with the number of partitions of each topic (0 if not existing, null if not known)
+     */
+    private void checkPartitions(List<KafkaProducerRecord<K, V>> records, Map<String, Integer> partitions,
+                                 Handler<Map<String, Integer>> handler) {
+        if (!this.httpBridgeContext.getStickyPartitioner().isEnabled()) {
+            handler.handle(partitions);
+            return;
+        }
+        Set<String> topics = new LinkedHashSet<>();
+        for (KafkaProducerRecord<K, V> record : records) {
+            if (record.key() == null && record.partition() == null && partitions.get(record.topic()) == null) {
+                topics.add(record.topic());
+            }
+        }
+        this.checkPartitions(topics.iterator(), new HashMap<>(partitions), handler);
+    }
+
+    private void checkPartitions(Iterator<String> topics, Map<String, Integer> partitions, Handler<Map<String, Integer>> handler) {
+        if (!topics.hasNext()) {
+            handler.handle(partitions);
+            return;
+        }
+        String topic = topics.next();
+        this.partitionsFor(topic, count -> {
+            partitions.put(topic, count);
+            this.checkPartitions(topics, partitions, handler);
+        });
+    }
+
+    /**
+     * @param record the record to send
+     * @param partitions number of partitions of the topic the record is sent to (0 if not existing, null if not known)
+     * @return the error if the record is sent to a not existing topic or partition, null otherwise
+     */
+    private static HttpBridgeError metadataError(KafkaProducerRecord<?, ?> record, Integer partitions) {
+        if (partitions == null) {
+            return null;
+        }
+        if (partitions == 0) {
+            return new HttpBridgeError(HttpResponseStatus.NOT_FOUND.code(), "Topic " + record.topic() + " not found");
+        }
+        if (record.partition() != null && (record.partition() < 0 || record.partition() >= partitions)) {
+            return new HttpBridgeError(HttpResponseStatus.NOT_FOUND.code(),
+                    "Partition " + record.partition() + " of topic " + record.topic() + " not found");
+        }
+        return null;
+    }
+
+    private void doSendStream(RoutingContext routingContext) {
+        EmbeddedFormat streamFormat;
+        try {
+            streamFormat = EmbeddedFormat.from(routingContext.queryParams().get("format") != null ?
+                    routingContext.queryParams().get("format") : "binary");
+        } catch (IllegalEmbeddedFormatException e) {
+            HttpBridgeError error = new HttpBridgeError(
+                    HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
+                    e.getMessage());
+            HttpUtils.sendResponse(routingContext, HttpResponseStatus.UNPROCESSABLE_ENTITY.code(),
+                    BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+            return;
+        }
+
+        String topic = routingContext.pathParam("topicname");
+        HttpProducerMessageConverter<K, V> converter = this.buildMessageConverter(streamFormat);
+
+        // the body isn't buffered, so it's paused until the stream handlers are set after the metadata lookup
+        routingContext.request().pause();
+        this.httpBridgeContext.getTopicMetadataCache().partitions(topic, partitions -> {
+            if (partitions != null && partitions == 0) {
+                HttpBridgeError error = new HttpBridgeError(
+                        HttpResponseStatus.NOT_FOUND.code(),
+                        "Topic " + topic + " not found");
+                HttpUtils.sendResponse(routingContext, HttpResponseStatus.NOT_FOUND.code(),
+                        BridgeContentType.KAFKA_JSON, error.toJson().toBuffer());
+                // the rest of the body is discarded
+                routingContext.request().resume();
+                return;
+            }
+            boolean sticky = this.httpBridgeContext.getStickyPartitioner().isEnabled();
+            if (sticky && partitions == null) {
+                this.partitionsFor(topic, count -> this.startStream(routingContext, converter, topic, true, count));
+            } else {
+                this.startStream(routingContext, converter, topic, sticky, partitions);
+            }
+        });
+    }
+
+    private void startStream(RoutingContext routingContext, HttpProducerMessageConverter<K, V> converter, String topic,
+                             boolean sticky, Integer partitions) {
+        // the whole stream is a single request, so its keyless records are all pinned to the same partition;
+        // the records failed to be converted are going to the dead letter topic, they are left to the producer partitioner
+        Map<String, Integer> pinned = new HashMap<>();
+        BiConsumer<KafkaProducerRecord<K, V>, Handler<AsyncResult<RecordMetadata>>> sender =
+            (record, handler) -> this.sendTracked(sticky && topic.equals(record.topic()) ? this.stick(record, partitions, pinned) : record, handler);
+        new HttpProduceStream<>(routingContext, converter, topic, sender, t -> this.handleError(topic, t),
+                this.getAdmissionController(), this.bridgeConfig.getHttpConfig().getStreamMaxRecordSize())
+                .start();
+    }
+
+    @Override
+    public void handle(Endpoint<?> endpoint, Handler<?> handler) {
+
+    }
+
+    /**
+     * @param retryAfterMs retry delay in milliseconds
+     * @return the retry delay in seconds, as expected by the Retry-After header
+     */
+    static long retryAfterSeconds(long retryAfterMs) {
+        return (retryAfterMs + 999) / 1000;
+    }
+
+    private int handleError(String topic, Throwable ex) {
+        return HttpUtils.errorCode(this.httpBridgeContext.getTopicMetadataCache(), topic, ex);
+    }
+
+    /**
+     * Build the message converter for the body of a produce request, based on its media type
+     *
+     * @param routingContext routing context of the produce request
+     * @param mediaType media type of the request body
+     * @return the message converter
+     */
+    private HttpProducerMessageConverter<K, V> buildMessageConverter(RoutingContext routingContext, String mediaType) {
+        // in a transaction the records are all committed or all aborted, so none of them is dead lettered
+        boolean deadLetters = !Boolean.parseBoolean(routingContext.queryParams().get("transactional"));
+        EmbeddedFormat format = this.format;
+        if (mediaType != null) {
+            switch (mediaType) {
+                case BridgeContentType.OCTET_STREAM:
+                    String key = routingContext.queryParams().get("key");
+                    return (HttpProducerMessageConverter<K, V>) new HttpRawMessageConverter(
+                            key != null ? key.getBytes(StandardCharsets.UTF_8) : null);
+                case BridgeContentType.KAFKA_JSON_JSON:
+                    format = EmbeddedFormat.JSON;
+                    break;
+                case BridgeContentType.KAFKA_JSON_BINARY:
+                    format = EmbeddedFormat.BINARY;
+                    break;
+                case BridgeContentType.KAFKA_JSON_AVRO:
+                    format = EmbeddedFormat.AVRO;
+                    break;
+                case BridgeContentType.KAFKA_CBOR_BINARY:
+                    format = EmbeddedFormat.CBOR;
+                    break;
+            }
+        }
+        return this.buildMessageConverter(format, deadLetters);
+    }
+
+    private HttpProducerMessageConverter<K, V> buildMessageConverter(EmbeddedFormat format) {
+        return this.buildMessageConverter(format, true);
+    }
+
+    /**
+     * Build the message converter for an embedded format
+     *
+     * @param format the embedded format
+     * @param deadLetters if the records failing conversion are routed to the dead letter topics,
+     *                    instead of failing the whole request
+     * @return the message converter
+     */
+    private HttpProducerMessageConverter<K, V> buildMessageConverter(EmbeddedFormat format, boolean deadLetters) {
+        AbstractHttpMessageConverter converter;
+        switch (format) {
             case JSON:
-                return (MessageConverter<K, V, Buffer, Buffer>) new HttpJsonMessageConverter();
+                converter = new HttpJsonMessageConverter();
+                break;
             case BINARY:
-                return (MessageConverter<K, V, Buffer, Buffer>) new HttpBinaryMessageConverter();
+                converter = new HttpBinaryMessageConverter();
+                break;
+            case AVRO:
+                converter = new HttpAvroMessageConverter(this.httpBridgeContext.getAvroSchemaCache());
+                break;
+            case CBOR:
+                return (HttpProducerMessageConverter<K, V>) new HttpCborMessageConverter();
+            default:
+                return null;
         }
-        return null;
+        if (deadLetters) {
+            converter.setDeadLetterTopics(this.httpBridgeContext.getDeadLetterTopics());
+        }
+        return (HttpProducerMessageConverter<K, V>) converter;
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.strimzi.kafka.bridge.BridgeContentType;
+import io.strimzi.kafka.bridge.ProducerAdmissionController;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+
+/**
+ * Body handler reading the whole request body before the operation handler is called,
+ * apart from the streaming requests (with newline delimited JSON body) which are left
+ * untouched, so that the operation handler can read records as they arrive.
+ * While the admission controller is paused, because of too many bytes in flight to Kafka, the produce
+ * requests body is not read until it's resumed, so that the clients are slowed down by the TCP flow control.
+ */
+class HttpStreamingBodyHandler implements BodyHandler {
+
+    private final BodyHandler bodyHandler = BodyHandler.create();
+    private final ProducerAdmissionController admissionController;
+
+    /**
+     * Constructor
+     *
+     * @param admissionController admission controller for the records to send
+     */
+    HttpStreamingBodyHandler(ProducerAdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public void handle(RoutingContext routingContext) {
+        if (isStreaming(routingContext)) {
+            routingContext.next();
+        } else if (isProduce(routingContext) && this.admissionController.isPaused()) {
+            HttpServerRequest request = routingContext.request();
+            request.pause();
+            this.admissionController.whenResumed(() -> {
+                if (!routingContext.response().closed()) {
+                    this.bodyHandler.handle(routingContext);
+                    request.resume();
+                }
+            });
+        } else {
+            this.bodyHandler.handle(routingContext);
+        }
+    }
+
+    /**
+     * Check if the request is sending records to a topic
+     *
+     * @param routingContext routing context of the request
+     * @return if the request is a produce one
+     */
+    static boolean isProduce(RoutingContext routingContext) {
+        HttpServerRequest request = routingContext.request();
+        return request.method() == HttpMethod.POST && request.path() != null && request.path().startsWith("/topics");
+    }
+
+    /**
+     * Check if the request has a streaming body
+     *
+     * @param routingContext routing context of the request
+     * @return if the request body has to be streamed
+     */
+    static boolean isStreaming(RoutingContext routingContext) {
+        return BridgeContentType.NDJSON.equalsIgnoreCase(HttpUtils.mediaType(routingContext.request()));
+    }
+
+    @Override
+    public BodyHandler setHandleFileUploads(boolean handleFileUploads) {
+        this.bodyHandler.setHandleFileUploads(handleFileUploads);
+        return this;
+    }
+
+    @Override
+    public BodyHandler setBodyLimit(long bodyLimit) {
+        this.bodyHandler.setBodyLimit(bodyLimit);
+        return this;
+    }
+
+    @Override
+    public BodyHandler setUploadsDirectory(String uploadsDirectory) {
+        this.bodyHandler.setUploadsDirectory(uploadsDirectory);
+        return this;
+    }
+
+    @Override
+    public BodyHandler setMergeFormAttributes(boolean mergeFormAttributes) {
+        this.bodyHandler.setMergeFormAttributes(mergeFormAttributes);
+        return this;
+    }
+
+    @Override
+    public BodyHandler setDeleteUploadedFilesOnEnd(boolean deleteUploadedFilesOnEnd) {
+        this.bodyHandler.setDeleteUploadedFilesOnEnd(deleteUploadedFilesOnEnd);
+        return this;
+    }
+
+    @Override
+    public BodyHandler setPreallocateBodyBuffer(boolean isPreallocateBodyBuffer) {
+        this.bodyHandler.setPreallocateBodyBuffer(isPreallocateBodyBuffer);
+        return this;
+    }
+}
@@ -6,9 +6,16 @@
 package io.strimzi.kafka.bridge.http;
 
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.kafka.bridge.BridgeContentType;
+import io.strimzi.kafka.bridge.DeadLetteredException;
+import io.strimzi.kafka.bridge.TopicMetadataCache;
+import io.strimzi.kafka.bridge.TransactionalProducersBusyException;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.Json;
 import io.vertx.ext.web.RoutingContext;
+import org.apache.kafka.common.errors.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,7 +27,15 @@ public class HttpUtils {
         if (!routingContext.response().closed() && !routingContext.response().ended()) {
             routingContext.response().setStatusCode(statusCode);
             if (body != null) {
-                log.debug("[{}] Response: body = {}", routingContext.get("request-id"), Json.decodeValue(body));
+                // decoding the body just for logging it is expensive, so only when needed;
+                // the not JSON bodies (i.e. CBOR) are logged just with their size
+                if (log.isDebugEnabled()) {
+                    if (isJson(contentType)) {
+                        log.debug("[{}] Response: body = {}", routingContext.get("request-id"), Json.decodeValue(body));
+                    } else {
+                        log.debug("[{}] Response: body = {} bytes of {}", routingContext.get("request-id"), body.length(), contentType);
+                    }
+                }
                 routingContext.response().putHeader(HttpHeaderNames.CONTENT_TYPE, contentType);
                 routingContext.response().putHeader(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(body.length()));
                 routingContext.response().write(body);
@@ -40,4 +55,51 @@ public class HttpUtils {
             log.warn("[{}] Response: already ended!", routingContext.get("request-id").toString());
         } 
     }
+
+    /**
+     * @param contentType the content type
+     * @return if the content type is JSON, as "application/json" or with the "+json" suffix
+     */
+    private static boolean isJson(String contentType) {
+        return contentType != null && (contentType.endsWith("+json") || contentType.equals(BridgeContentType.JSON));
+    }
+
+    /**
+     * Get the media type of the request body, without any parameter (i.e. charset)
+     *
+     * @param request the HTTP request
+     * @return the media type of the request body, null if no Content-Type header is provided
+     */
+    public static String mediaType(HttpServerRequest request) {
+        String contentType = request.getHeader(HttpHeaderNames.CONTENT_TYPE);
+        if (contentType == null) {
+            return null;
+        }
+        int paramsIndex = contentType.indexOf(';');
+        return (paramsIndex >= 0 ? contentType.substring(0, paramsIndex) : contentType).trim();
+    }
+
+    /**
+     * Map the failure of a record sent to Kafka to the error code to report
+     *
+     * @param topicMetadataCache the topics metadata cache, told about the topic if it turns out to not exist
+     * @param topic the topic the record was sent to
+     * @param ex the failure
+     * @return the error code
+     */
+    public static int errorCode(TopicMetadataCache topicMetadataCache, String topic, Throwable ex) {
+        if (ex instanceof DeadLetteredException) {
+            // a record failed to be converted is reported as if it was rejected with the whole request
+            return ex.getCause() != null ? errorCode(topicMetadataCache, topic, ex.getCause()) : HttpResponseStatus.UNPROCESSABLE_ENTITY.code();
+        } else if (ex instanceof TimeoutException && ex.getMessage() != null &&
+            ex.getMessage().contains("not present in metadata")) {
+            // next records for the same topic are rejected right away, without waiting for the metadata again
+            topicMetadataCache.unknown(topic);
+            return HttpResponseStatus.NOT_FOUND.code();
+        } else if (ex instanceof TransactionalProducersBusyException) {
+            return HttpResponseStatus.SERVICE_UNAVAILABLE.code();
+        } else {
+            return HttpResponseStatus.INTERNAL_SERVER_ERROR.code();
+        }
+    }
 }
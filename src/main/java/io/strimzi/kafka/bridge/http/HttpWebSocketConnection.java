@@ -0,0 +1,271 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.strimzi.kafka.bridge.EmbeddedFormat;
+import io.strimzi.kafka.bridge.IllegalEmbeddedFormatException;
+import io.strimzi.kafka.bridge.config.BridgeConfig;
+import io.strimzi.kafka.bridge.http.converter.AbstractHttpMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpAvroMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpBinaryMessageConverter;
+import io.strimzi.kafka.bridge.http.converter.HttpJsonMessageConverter;
+import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * WebSocket connection for producing and consuming records on a single persistent socket,
+ * instead of separate produce and poll HTTP requests.
+ *
+ * Each message is a JSON object with a "type" and an optional "id", echoed back in the reply:
+ * <ul>
+ *     <li>"send", with "topic" (optional when each record specifies its own one), "partition" (optional)
+ *     and "records" as in a produce request, replied with an "offsets" message once all the records are acknowledged</li>
+ *     <li>"subscribe", with "group_id" and either "topics" or "topic_pattern" (plus the supported consumer
+ *     configuration parameters), replied with a "subscribed" message</li>
+ *     <li>"credit", with the number of records ("credit") the client is ready to receive as "record" messages</li>
+ *     <li>"commit", for committing the offsets of the records received so far, replied with a "committed" message
+ *     (with "enable.auto.commit" they are also committed periodically and when the connection is closed)</li>
+ * </ul>
+ * A failure is replied with an "error" message, with "error_code" and "message" as in the HTTP error responses.
+ * The records are sent through a {@link HttpWebSocketSourceEndpoint} and received through
+ * a {@link HttpWebSocketSinkEndpoint}, both bound to the connection lifetime.
+ */
+class HttpWebSocketConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpWebSocketConnection.class);
+
+    /** Path the WebSocket connections are accepted on */
+    static final String PATH = "/websocket";
+
+    // messages from the client
+    static final String SEND = "send";
+    static final String SUBSCRIBE = "subscribe";
+    static final String CREDIT = "credit";
+    static final String COMMIT = "commit";
+    // messages to the client
+    static final String OFFSETS = "offsets";
+    static final String SUBSCRIBED = "subscribed";
+    static final String COMMITTED = "committed";
+    static final String RECORD = "record";
+    static final String ERROR = "error";
+
+    private final ServerWebSocket webSocket;
+    private final int maxMessageSize;
+    private final HttpWebSocketSourceEndpoint<byte[], byte[]> source;
+    private final HttpWebSocketSinkEndpoint<byte[], byte[]> sink;
+    private final HttpBridgeContext<byte[], byte[]> httpBridgeContext;
+
+    // data of a message split across multiple frames
+    private Buffer partial;
+    private boolean paused;
+    private boolean closed;
+
+    private HttpWebSocketConnection(Vertx vertx, BridgeConfig bridgeConfig, HttpBridgeContext<byte[], byte[]> context,
+                                    EmbeddedFormat format, ServerWebSocket webSocket) {
+        this.webSocket = webSocket;
+        this.maxMessageSize = bridgeConfig.getHttpConfig().getWebSocketMaxMessageSize();
+        this.httpBridgeContext = context;
+
+        AbstractHttpMessageConverter converter;
+        switch (format) {
+            case JSON:
+                converter = new HttpJsonMessageConverter();
+                break;
+            case AVRO:
+                converter = new HttpAvroMessageConverter(context.getAvroSchemaCache());
+                break;
+            default:
+                converter = new HttpBinaryMessageConverter();
+                break;
+        }
+        converter.setDeadLetterTopics(context.getDeadLetterTopics());
+
+        this.source = new HttpWebSocketSourceEndpoint<>(vertx, bridgeConfig, context, format, converter,
+                new ByteArraySerializer(), new ByteArraySerializer());
+        this.sink = new HttpWebSocketSinkEndpoint<>(vertx, bridgeConfig, format, converter, webSocket,
+                new ByteArrayDeserializer(), new ByteArrayDeserializer());
+    }
+
+    /**
+     * Accept a WebSocket connection on the bridge path, with the embedded format of the records
+     * as "format" query parameter (binary by default), rejecting the other ones
+     *
+     * @param vertx Vert.x instance
+     * @param bridgeConfig bridge configuration
+     * @param context bridge context, with the bridge-wide services
+     * @param webSocket the WebSocket connection
+     */
+    static void accept(Vertx vertx, BridgeConfig bridgeConfig, HttpBridgeContext<byte[], byte[]> context, ServerWebSocket webSocket) {
+        if (!PATH.equals(webSocket.path())) {
+            webSocket.reject(HttpResponseStatus.NOT_FOUND.code());
+            return;
+        }
+
+        EmbeddedFormat format;
+        try {
+            List<String> formatParam = new QueryStringDecoder(webSocket.uri()).parameters().get("format");
+            format = EmbeddedFormat.from(formatParam != null ? formatParam.get(0) : "binary");
+            if (format == EmbeddedFormat.CBOR) {
+                throw new IllegalEmbeddedFormatException("CBOR embedded format is not supported on WebSocket connections.");
+            }
+            if (format == EmbeddedFormat.AVRO && !context.getAvroSchemaCache().isEnabled()) {
+                throw new IllegalEmbeddedFormatException("Avro embedded format is not enabled.");
+            }
+        } catch (IllegalEmbeddedFormatException e) {
+            log.warn("Rejected WebSocket connection from {}: {}", webSocket.remoteAddress(), e.getMessage());
+            webSocket.reject(HttpResponseStatus.UNPROCESSABLE_ENTITY.code());
+            return;
+        }
+
+        new HttpWebSocketConnection(vertx, bridgeConfig, context, format, webSocket).start();
+    }
+
+    private void start() {
+        log.info("WebSocket connection from {}", this.webSocket.remoteAddress());
+        this.source.open();
+        this.sink.open();
+        this.webSocket.frameHandler(this::handleFrame);
+        this.webSocket.exceptionHandler(t -> {
+            log.error("Error on WebSocket connection from {}", this.webSocket.remoteAddress(), t);
+            this.webSocket.close();
+        });
+        this.webSocket.closeHandler(v -> this.close());
+    }
+
+    private void close() {
+        log.info("WebSocket connection from {} closed", this.webSocket.remoteAddress());
+        this.closed = true;
+        this.sink.close();
+        this.source.close();
+    }
+
+    private void handleFrame(WebSocketFrame frame) {
+        if (!frame.isText() && !frame.isBinary() && !frame.isContinuation()) {
+            return;
+        }
+        Buffer data = this.partial != null ? this.partial.appendBuffer(frame.binaryData()) : frame.binaryData();
+        if (data.length() > this.maxMessageSize) {
+            this.partial = null;
+            this.webSocket.close((short) 1009, "Message too big");
+            return;
+        }
+        if (!frame.isFinal()) {
+            this.partial = this.partial != null ? data : data.copy();
+            return;
+        }
+        this.partial = null;
+        this.handleMessage(data);
+    }
+
+    private void handleMessage(Buffer message) {
+        JsonObject header;
+        try {
+            header = AbstractHttpMessageConverter.readScalarFields(message);
+        } catch (DecodeException e) {
+            this.reply(null, error(HttpResponseStatus.BAD_REQUEST.code(), e.getMessage()));
+            return;
+        }
+
+        Object id = header.getValue("id");
+        String type = String.valueOf(header.getValue("type"));
+        try {
+            switch (type) {
+                case SEND:
+                    this.send(id, header, message);
+                    break;
+                case SUBSCRIBE:
+                    this.subscribe(id, message.toJsonObject());
+                    break;
+                case CREDIT:
+                    this.credit(id, header.getLong(CREDIT));
+                    break;
+                case COMMIT:
+                    this.commit(id);
+                    break;
+                default:
+                    this.reply(id, error(HttpResponseStatus.BAD_REQUEST.code(), "Unknown message type " + type));
+                    break;
+            }
+        } catch (RuntimeException e) {
+            // i.e. a field of the wrong type or a not valid consumer configuration
+            this.reply(id, error(HttpResponseStatus.UNPROCESSABLE_ENTITY.code(), e.getMessage()));
+        }
+    }
+
+    private void send(Object id, JsonObject header, Buffer message) {
+        this.source.produce(header.getString("topic"), header.getInteger("partition"), message,
+            result -> this.reply(id, result.put("type", result.containsKey("error_code") ? ERROR : OFFSETS)));
+
+        // while there are too many bytes in flight to Kafka, reading is paused so that the client is slowed down
+        if (!this.paused && this.httpBridgeContext.getAdmissionController().isPaused()) {
+            this.paused = true;
+            this.webSocket.pause();
+            this.httpBridgeContext.getAdmissionController().whenResumed(() -> {
+                this.paused = false;
+                if (!this.closed) {
+                    this.webSocket.resume();
+                }
+            });
+        }
+    }
+
+    private void subscribe(Object id, JsonObject frame) {
+        if (this.sink.isSubscribed()) {
+            this.reply(id, error(HttpResponseStatus.CONFLICT.code(), "The connection is already subscribed."));
+            return;
+        }
+        this.sink.subscribe(frame, done -> this.reply(id, result(done, SUBSCRIBED)));
+    }
+
+    private void credit(Object id, Long credit) {
+        if (credit == null || credit <= 0) {
+            this.reply(id, error(HttpResponseStatus.UNPROCESSABLE_ENTITY.code(), "The credit has to be a positive number."));
+            return;
+        }
+        this.sink.credit(credit);
+    }
+
+    private void commit(Object id) {
+        if (!this.sink.isSubscribed()) {
+            this.reply(id, error(HttpResponseStatus.NOT_FOUND.code(), "The connection is not subscribed."));
+            return;
+        }
+        this.sink.commitConsumed(done -> this.reply(id, result(done, COMMITTED)));
+    }
+
+    private static JsonObject result(AsyncResult<Void> done, String type) {
+        return done.succeeded() ? new JsonObject().put("type", type) :
+                error(HttpResponseStatus.INTERNAL_SERVER_ERROR.code(), done.cause().getMessage());
+    }
+
+    private static JsonObject error(int code, String message) {
+        return new HttpBridgeError(code, message).toJson().put("type", ERROR);
+    }
+
+    private void reply(Object id, JsonObject message) {
+        if (this.closed) {
+            return;
+        }
+        if (id != null) {
+            message.put("id", id);
+        }
+        this.webSocket.writeTextMessage(message.encode());
+    }
+}
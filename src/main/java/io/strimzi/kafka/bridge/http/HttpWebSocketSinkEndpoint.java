@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.kafka.bridge.EmbeddedFormat;
+import io.strimzi.kafka.bridge.Endpoint;
+import io.strimzi.kafka.bridge.SinkBridgeEndpoint;
+import io.strimzi.kafka.bridge.SinkTopicSubscription;
+import io.strimzi.kafka.bridge.config.BridgeConfig;
+import io.strimzi.kafka.bridge.converter.MessageConverter;
+import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.kafka.client.common.TopicPartition;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Sink bridge endpoint pushing the records to a WebSocket connection, each one in its own frame,
+ * as soon as they are handed over by the consumer record handler.
+ *
+ * Flow control is credit based: the client grants the number of records it's ready to receive,
+ * each record pushed takes one credit and the consumer is paused when no credit is left (or when
+ * the connection write queue is full) until the client grants more, so that records are never
+ * buffered in the bridge for a slow client.
+ * The consumer position is past the records pending or fetched and not pushed yet, so the offsets committed
+ * on request are the ones of the records pushed to the client instead. For the same reason the Kafka consumer
+ * auto-commit is always disabled: when requested, the offsets of the pushed records are committed periodically
+ * by the endpoint itself, and on close.
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+public class HttpWebSocketSinkEndpoint<K, V> extends SinkBridgeEndpoint<K, V> {
+
+    private static final Buffer RECORD_START = Buffer.buffer("{\"type\":\"" + HttpWebSocketConnection.RECORD + "\",\"record\":");
+    private static final Buffer RECORD_END = Buffer.buffer("}");
+    // Kafka consumer default
+    private static final long DEFAULT_AUTO_COMMIT_INTERVAL_MS = 5000;
+
+    private final ServerWebSocket webSocket;
+    private final MessageConverter<K, V, Buffer, Buffer> messageConverter;
+
+    // records the client is ready to receive
+    private long credit;
+    // records handed over when no credit was left, from a batch fetched before the consumer was paused
+    private final Deque<KafkaConsumerRecord<K, V>> pending = new ArrayDeque<>();
+    // next offset to commit for each partition, after the records pushed to the client
+    private final Map<TopicPartition, OffsetAndMetadata> pushed = new HashMap<>();
+    private boolean paused;
+    private boolean subscribed;
+    private boolean autoCommit;
+    private long autoCommitTimer = -1;
+
+    HttpWebSocketSinkEndpoint(Vertx vertx, BridgeConfig bridgeConfig, EmbeddedFormat format,
+                              MessageConverter<K, V, Buffer, Buffer> messageConverter, ServerWebSocket webSocket,
+                              Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer) {
+        super(vertx, bridgeConfig, format, keyDeserializer, valueDeserializer);
+        this.messageConverter = messageConverter;
+        this.webSocket = webSocket;
+    }
+
+    @Override
+    public void open() {
+
+    }
+
+    @Override
+    public void close() {
+        this.pending.clear();
+        if (this.autoCommitTimer != -1) {
+            this.vertx.cancelTimer(this.autoCommitTimer);
+            this.autoCommitTimer = -1;
+        }
+        // the consumer runs the commit before closing
+        if (this.autoCommit && this.subscribed) {
+            this.commitConsumed(done -> { });
+        }
+        super.close();
+    }
+
+    @Override
+    public void handle(Endpoint<?> endpoint) {
+
+    }
+
+    @Override
+    public void handle(Endpoint<?> endpoint, Handler<?> handler) {
+
+    }
+
+    /**
+     * @return if the consumer has been created by a subscribe frame
+     */
+    boolean isSubscribed() {
+        return this.subscribed;
+    }
+
+    /**
+     * Create the consumer and subscribe it to the topics (or the pattern) of a subscribe frame
+     *
+     * @param frame the subscribe frame
+     * @param handler handler called with the subscription result
+     */
+    void subscribe(JsonObject frame, Handler<AsyncResult<Void>> handler) {
+        String groupId = frame.getString("group_id");
+        JsonArray topics = frame.getJsonArray("topics");
+        String topicPattern = frame.getString("topic_pattern");
+        if (groupId == null || (topics == null) == (topicPattern == null)) {
+            throw new IllegalArgumentException("A group_id and either topics or topic_pattern have to be specified");
+        }
+
+        this.groupId = groupId;
+        this.name = this.bridgeConfig.getBridgeID() == null ? "kafka-bridge-consumer-" + UUID.randomUUID() : this.bridgeConfig.getBridgeID() + "-" + UUID.randomUUID();
+
+        Properties config = new Properties();
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, this.name);
+        for (String parameter : new String[] {ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, ConsumerConfig.FETCH_MIN_BYTES_CONFIG}) {
+            if (frame.getValue(parameter) != null) {
+                config.put(parameter, String.valueOf(frame.getValue(parameter)));
+            }
+        }
+        Map<String, Object> consumerConfig = this.bridgeConfig.getKafkaConfig().getConsumerConfig().getConfig();
+        Object enableAutoCommit = frame.getValue(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG,
+                consumerConfig.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true));
+        this.autoCommit = Boolean.parseBoolean(String.valueOf(enableAutoCommit));
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        this.initConsumer(false, config);
+        if (this.autoCommit) {
+            long interval = Long.parseLong(String.valueOf(
+                    consumerConfig.getOrDefault(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, DEFAULT_AUTO_COMMIT_INTERVAL_MS)));
+            this.autoCommitTimer = this.vertx.setPeriodic(interval, t -> this.commitConsumed(done -> {
+                if (done.failed()) {
+                    log.warn("Failed to commit the offsets of the pushed records", done.cause());
+                }
+            }));
+        }
+        this.subscribed = true;
+
+        // no records are pushed until the client grants some credit
+        this.flowCheck();
+        this.webSocket.drainHandler(v -> this.flowCheck());
+        this.setReceivedHandler(this::deliver);
+        this.setSubscribeHandler(handler);
+        this.setPartitionsRevokedHandler(partitions -> this.pushed.keySet().removeAll(partitions));
+
+        if (topicPattern != null) {
+            this.subscribe(Pattern.compile(topicPattern), true);
+        } else {
+            for (int i = 0; i < topics.size(); i++) {
+                this.topicSubscriptions.add(new SinkTopicSubscription(topics.getString(i)));
+            }
+            this.subscribe(true);
+        }
+        log.info("Created consumer {} in group {} for WebSocket connection", this.name, this.groupId);
+    }
+
+    /**
+     * Grant credit for pushing more records to the client
+     *
+     * @param records number of records the client is ready to receive
+     */
+    void credit(long records) {
+        this.credit += records;
+        while (this.credit > 0 && !this.pending.isEmpty()) {
+            this.push(this.pending.poll());
+        }
+        this.flowCheck();
+    }
+
+    /**
+     * Commit the offsets of the records pushed to the client so far
+     *
+     * @param handler handler called with the commit result
+     */
+    void commitConsumed(Handler<AsyncResult<Void>> handler) {
+        if (this.pushed.isEmpty()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        this.commit(new HashMap<>(this.pushed), done -> handler.handle(done.succeeded() ?
+                Future.succeededFuture() : Future.failedFuture(done.cause())));
+    }
+
+    private void deliver(KafkaConsumerRecord<K, V> record) {
+        if (this.credit > 0) {
+            this.push(record);
+        } else {
+            this.pending.add(record);
+        }
+        this.flowCheck();
+    }
+
+    private void push(KafkaConsumerRecord<K, V> record) {
+        Buffer frame;
+        try {
+            frame = Buffer.buffer().appendBuffer(RECORD_START)
+                    .appendBuffer(this.messageConverter.toMessage(null, record))
+                    .appendBuffer(RECORD_END);
+        } catch (RuntimeException e) {
+            // the record is reported without stopping the consumer
+            frame = new HttpBridgeError(HttpResponseStatus.NOT_ACCEPTABLE.code(), e.getMessage()).toJson()
+                    .put("type", HttpWebSocketConnection.ERROR).toBuffer();
+        }
+        this.credit--;
+        this.webSocket.writeTextMessage(frame.toString());
+        this.pushed.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1, ""));
+    }
+
+    /**
+     * Pause the consumer if there's no credit left or the client can't keep up, resume it otherwise
+     */
+    private void flowCheck() {
+        if (!this.subscribed) {
+            return;
+        }
+        boolean blocked = this.credit <= 0 || this.webSocket.writeQueueFull();
+        if (blocked && !this.paused) {
+            this.paused = true;
+            this.pause();
+        } else if (!blocked && this.paused) {
+            this.paused = false;
+            this.resume();
+        }
+    }
+}
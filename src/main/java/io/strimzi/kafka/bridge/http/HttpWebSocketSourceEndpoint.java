@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.kafka.bridge.EmbeddedFormat;
+import io.strimzi.kafka.bridge.Endpoint;
+import io.strimzi.kafka.bridge.SourceBridgeEndpoint;
+import io.strimzi.kafka.bridge.config.BridgeConfig;
+import io.strimzi.kafka.bridge.http.converter.HttpProducerMessageConverter;
+import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
+import io.strimzi.kafka.bridge.http.model.HttpProduceResults;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+import io.vertx.kafka.client.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Source bridge endpoint for the records sent through the frames of a WebSocket connection.
+ *
+ * The records of a send frame are handed to the shared producer as they are converted, and their results
+ * are reported back with a single frame once all of them are acknowledged, as for a produce request.
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+public class HttpWebSocketSourceEndpoint<K, V> extends SourceBridgeEndpoint<K, V> {
+
+    private final HttpBridgeContext<K, V> httpBridgeContext;
+    private final HttpProducerMessageConverter<K, V> messageConverter;
+
+    HttpWebSocketSourceEndpoint(Vertx vertx, BridgeConfig bridgeConfig, HttpBridgeContext<K, V> context, EmbeddedFormat format,
+                                HttpProducerMessageConverter<K, V> messageConverter,
+                                Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        super(vertx, bridgeConfig, format, keySerializer, valueSerializer, context.getProducerPool());
+        this.httpBridgeContext = context;
+        this.messageConverter = messageConverter;
+        this.setAdmissionController(context.getAdmissionController());
+        this.setRetryQueue(context.getProducerRetryQueue());
+        this.setDeadLetterTopics(context.getDeadLetterTopics());
+    }
+
+    @Override
+    public void open() {
+        this.name = this.bridgeConfig.getBridgeID() == null ? "kafka-bridge-producer-" + UUID.randomUUID() : this.bridgeConfig.getBridgeID() + "-" + UUID.randomUUID();
+        super.open();
+    }
+
+    @Override
+    public void handle(Endpoint<?> endpoint) {
+
+    }
+
+    @Override
+    public void handle(Endpoint<?> endpoint, Handler<?> handler) {
+
+    }
+
+    /**
+     * Send the records of a send frame
+     *
+     * @param topic the topic the records are sent to, null if each record specifies its own one
+     * @param partition the partition the records are sent to, if any
+     * @param frame the send frame, with the records list
+     * @param handler handler called with the results, as {"offsets":[...]} JSON object, or with the error
+     *                rejecting all the records
+     */
+    void produce(String topic, Integer partition, Buffer frame, Handler<JsonObject> handler) {
+        List<KafkaProducerRecord<K, V>> records;
+        try {
+            records = this.messageConverter.toKafkaRecords(topic, partition, frame);
+        } catch (Exception e) {
+            handler.handle(new HttpBridgeError(HttpResponseStatus.UNPROCESSABLE_ENTITY.code(), e.getMessage()).toJson());
+            return;
+        }
+
+        long retryAfterMs = this.getAdmissionController().admit(records);
+        if (retryAfterMs > 0) {
+            handler.handle(new HttpBridgeError(HttpResponseStatus.TOO_MANY_REQUESTS.code(),
+                    "Too many records in flight to Kafka, retry after " + HttpSourceBridgeEndpoint.retryAfterSeconds(retryAfterMs) + " seconds").toJson());
+            return;
+        }
+
+        HttpProduceResults results = new HttpProduceResults(records.size());
+        if (records.isEmpty()) {
+            handler.handle(results.toJson());
+            return;
+        }
+        for (int i = 0; i < records.size(); i++) {
+            int index = i;
+            KafkaProducerRecord<K, V> record = records.get(i);
+            this.send(record, done -> {
+                boolean completed;
+                if (done.succeeded()) {
+                    RecordMetadata metadata = done.result();
+                    log.debug("Delivered record {} to Kafka on topic {} at partition {} [{}]", record, metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
+                    completed = results.delivered(index, metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
+                } else {
+                    log.error("Failed to deliver record {}", record, done.cause());
+                    int code = HttpUtils.errorCode(this.httpBridgeContext.getTopicMetadataCache(), record.topic(), done.cause());
+                    completed = results.failed(index, new HttpBridgeError(code, done.cause().getMessage()));
+                }
+                if (completed) {
+                    handler.handle(results.toJson());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.kafka.bridge.DeadLetterTopics;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base class for the HTTP message converters.
+ *
+ * The records in the body of a produce request are read through a token streaming parser
+ * in a single pass, building the Kafka records without any intermediate JSON tree;
+ * the subclasses just provide how key and value are read for the specific embedded format.
+ * A record which can't be converted fails the whole request, unless a dead letter topic is configured
+ * for its topic: then it's routed there, as it was provided, and the other records still go through.
+ * On the consume side, a record which can't be converted is returned in place as an error, with its
+ * topic, partition and offset, so that the other records of the batch are not lost.
+ */
+public abstract class AbstractHttpMessageConverter implements HttpMessageConverter<byte[], byte[]> {
+
+    protected static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // when provided, the records failing conversion are routed to a dead letter topic instead of failing the request
+    private DeadLetterTopics deadLetterTopics;
+
+    /**
+     * Set the dead letter topics the records failing conversion are routed to, as records with the raw
+     * record as value, instead of failing the whole request
+     *
+     * @param deadLetterTopics the dead letter topics
+     */
+    public void setDeadLetterTopics(DeadLetterTopics deadLetterTopics) {
+        this.deadLetterTopics = deadLetterTopics != null && deadLetterTopics.isEnabled() ? deadLetterTopics : null;
+    }
+
+    /**
+     * Read the key or the value of a record, the parser being positioned on its first token.
+     * Token locations reported by the parser are relative to the provided input offset.
+     *
+     * @param parser parser of the request body
+     * @param input the bytes the parser is reading from
+     * @param inputOffset offset of the request body inside the input bytes
+     * @return the raw bytes for the Kafka record key or value
+     * @throws IOException if reading from the parser fails
+     */
+    protected abstract byte[] readKeyOrValue(JsonParser parser, byte[] input, int inputOffset) throws IOException;
+
+    @Override
+    public KafkaProducerRecord<byte[], byte[]> toKafkaRecord(String kafkaTopic, Integer partition, Buffer message) {
+        BufferInput input = new BufferInput(message);
+        try (JsonParser parser = input.createParser()) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecodeException("Failed to decode: the record is not a JSON object");
+            }
+            return this.readRecord(parser, input, kafkaTopic, partition);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<KafkaProducerRecord<byte[], byte[]>> toKafkaRecords(String kafkaTopic, Integer partition, Buffer messages) {
+
+        List<KafkaProducerRecord<byte[], byte[]>> records = null;
+
+        BufferInput input = new BufferInput(messages);
+        try (JsonParser parser = input.createParser()) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecodeException("Failed to decode: the request body is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("records".equals(field) && token == JsonToken.START_ARRAY) {
+                    records = new ArrayList<>();
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        records.add(this.readRecord(parser, input, kafkaTopic, partition));
+                    }
+                    if (parser.currentToken() != JsonToken.END_ARRAY) {
+                        throw new DecodeException("Failed to decode: the records list contains a not JSON object record");
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode: " + e.getMessage());
+        }
+
+        if (records == null) {
+            throw new IllegalStateException("The request body doesn't contain a records list");
+        }
+        return records;
+    }
+
+    @Override
+    public int toMessages(KafkaConsumerRecords<byte[], byte[]> records, int maxRecords, long maxBytes, Buffer messages) {
+        messages.appendByte((byte) '[');
+        int converted = 0;
+        while (converted < records.size() && converted < maxRecords) {
+            Buffer message;
+            try {
+                message = this.toMessage(null, records.recordAt(converted));
+            } catch (DecodeException e) {
+                message = toError(records.recordAt(converted), e);
+            }
+            // accounting for the separator and the closing bracket as well
+            if (messages.length() + (converted > 0 ? 1 : 0) + message.length() + 1 > maxBytes) {
+                break;
+            }
+            if (converted > 0) {
+                messages.appendByte((byte) ',');
+            }
+            messages.appendBuffer(message);
+            converted++;
+        }
+        messages.appendByte((byte) ']');
+        return converted;
+    }
+
+    private static Buffer toError(KafkaConsumerRecord<byte[], byte[]> record, DecodeException e) {
+        JsonObject error = new JsonObject();
+        error.put("topic", record.topic());
+        error.put("partition", record.partition());
+        error.put("offset", record.offset());
+        error.put("error_code", HttpResponseStatus.NOT_ACCEPTABLE.code());
+        error.put("message", e.getMessage());
+        return error.toBuffer();
+    }
+
+    /**
+     * Read the top-level scalar fields of a JSON object, skipping the nested ones (i.e. the records list)
+     * without building them, so that the envelope of a message carrying records can be read
+     * before the records are converted, without parsing them twice into a JSON tree
+     *
+     * @param message the message, as a JSON object
+     * @return the top-level scalar fields
+     * @throws DecodeException if the message is not a valid JSON object
+     */
+    public static JsonObject readScalarFields(Buffer message) {
+        JsonObject fields = new JsonObject();
+        BufferInput input = new BufferInput(message);
+        try (JsonParser parser = input.createParser()) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecodeException("Failed to decode: the message is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token.isScalarValue()) {
+                    fields.put(field, scalar(parser, token));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode: " + e.getMessage());
+        }
+        return fields;
+    }
+
+    private static Object scalar(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return parser.getBooleanValue();
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.getText();
+        }
+    }
+
+    /**
+     * Read a record, the parser being positioned on the record start object token
+     *
+     * @param parser parser of the request body
+     * @param input the request body the parser is reading from
+     * @param kafkaTopic topic specified in the request path, if any, otherwise the record has to specify it
+     * @param partition partition specified in the request path, if any
+     * @return Kafka record
+     * @throws IOException if reading from the parser fails
+     */
+    private KafkaProducerRecord<byte[], byte[]> readRecord(JsonParser parser, BufferInput input, String kafkaTopic, Integer partition) throws IOException {
+
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        RecordFields fields = new RecordFields();
+        RuntimeException error = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            try {
+                this.readField(parser, input, field, token, fields);
+            } catch (RuntimeException e) {
+                if (this.deadLetterTopics == null) {
+                    throw e;
+                }
+                // the rest of the record is still read, for routing it to the dead letter topic as it is
+                error = error != null ? error : e;
+                parser.skipChildren();
+            }
+        }
+
+        if (error == null) {
+            try {
+                return this.createRecord(topic(kafkaTopic, fields.topic), fields.key, fields.value, partition(partition, fields.partition));
+            } catch (RuntimeException e) {
+                if (this.deadLetterTopics == null) {
+                    throw e;
+                }
+                error = e;
+            }
+        }
+        return this.deadLetter(parser, input, start, kafkaTopic != null ? kafkaTopic : fields.topic,
+                partition != null ? partition : fields.partition, error);
+    }
+
+    private void readField(JsonParser parser, BufferInput input, String field, JsonToken token, RecordFields fields) throws IOException {
+        switch (field) {
+            case "key":
+                fields.key = this.readKeyOrValue(parser, input.bytes, input.offset);
+                break;
+            case "value":
+                fields.value = this.readKeyOrValue(parser, input.bytes, input.offset);
+                break;
+            case "topic":
+                if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NULL) {
+                    throw new IllegalArgumentException("Topic must be a string");
+                }
+                fields.topic = parser.getValueAsString();
+                break;
+            case "partition":
+                if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NULL) {
+                    throw new IllegalArgumentException("Partition must be an integer");
+                }
+                fields.partition = token == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+                break;
+            default:
+                parser.skipChildren();
+                break;
+        }
+    }
+
+    /**
+     * Build the dead letter record for a record failed to be converted, the parser being positioned
+     * on the record end object token
+     *
+     * @param parser parser of the request body
+     * @param input the request body the parser is reading from
+     * @param start offset of the record start inside the request body
+     * @param topic the topic the record was sent to, if known
+     * @param partition the partition the record was sent to, if any
+     * @param error the conversion error
+     * @return the dead letter record
+     * @throws RuntimeException the conversion error, if there is no dead letter topic for the record
+     */
+    private KafkaProducerRecord<byte[], byte[]> deadLetter(JsonParser parser, BufferInput input, int start,
+                                                           String topic, Integer partition, RuntimeException error) {
+        String deadLetterTopic = topic != null ? this.deadLetterTopics.deadLetterTopic(topic) : null;
+        if (deadLetterTopic == null) {
+            throw error;
+        }
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+        return DeadLetterTopics.conversionFailure(Arrays.copyOfRange(input.bytes, input.offset + start, input.offset + end),
+                deadLetterTopic, error.getMessage(), topic, partition);
+    }
+
+    /**
+     * Create a Kafka record from the key and value read from the request body
+     *
+     * @param topic topic of the record
+     * @param key the key as read from the request body
+     * @param value the value as read from the request body
+     * @param partition partition of the record, if any
+     * @return Kafka record
+     */
+    protected KafkaProducerRecord<byte[], byte[]> createRecord(String topic, byte[] key, byte[] value, Integer partition) {
+        return KafkaProducerRecord.create(topic, key, value, partition);
+    }
+
+    static String topic(String topicFromPath, String topicFromBody) {
+        if (topicFromPath == null && topicFromBody == null) {
+            throw new IllegalStateException("Topic not specified for the record");
+        }
+        if (topicFromPath != null && topicFromBody != null && !topicFromPath.equals(topicFromBody)) {
+            throw new IllegalStateException("Topic specified in body and in request path");
+        }
+        return topicFromPath != null ? topicFromPath : topicFromBody;
+    }
+
+    static Integer partition(Integer partitionFromPath, Integer partitionFromBody) {
+        if (partitionFromPath != null && partitionFromBody != null) {
+            throw new IllegalStateException("Partition specified in body and in request path");
+        }
+        return partitionFromPath != null ? partitionFromPath : partitionFromBody;
+    }
+
+    /**
+     * Fields of a record, as read from the request body
+     */
+    private static class RecordFields {
+
+        private String topic;
+        private Integer partition;
+        private byte[] key;
+        private byte[] value;
+    }
+
+    /**
+     * Bytes of a request body, avoiding to copy the buffer content when it's backed by an array
+     */
+    private static class BufferInput {
+
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        BufferInput(Buffer buffer) {
+            ByteBuf byteBuf = buffer.getByteBuf();
+            if (byteBuf.hasArray()) {
+                this.bytes = byteBuf.array();
+                this.offset = byteBuf.arrayOffset() + byteBuf.readerIndex();
+                this.length = byteBuf.readableBytes();
+            } else {
+                this.bytes = buffer.getBytes();
+                this.offset = 0;
+                this.length = this.bytes.length;
+            }
+        }
+
+        JsonParser createParser() throws IOException {
+            return JSON_FACTORY.createParser(this.bytes, this.offset, this.length);
+        }
+    }
+}
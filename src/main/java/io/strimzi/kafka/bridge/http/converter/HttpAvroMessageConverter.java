@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import io.strimzi.kafka.bridge.converter.AvroSchema;
+import io.strimzi.kafka.bridge.converter.AvroSchemaCache;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+
+import java.io.IOException;
+
+/**
+ * Message converter for the Avro embedded format.
+ *
+ * Keys and values are provided and returned as JSON, as with the JSON embedded format, but they are stored
+ * in Kafka encoded in the Avro binary format, using the schemas of the topic subjects from the schema cache.
+ * A key or value without a schema for it is accepted only when null.
+ */
+public class HttpAvroMessageConverter extends HttpJsonMessageConverter {
+
+    private final AvroSchemaCache schemaCache;
+
+    /**
+     * Constructor
+     *
+     * @param schemaCache cache of the Avro schemas for encoding and decoding keys and values
+     */
+    public HttpAvroMessageConverter(AvroSchemaCache schemaCache) {
+        this.schemaCache = schemaCache;
+    }
+
+    @Override
+    protected KafkaProducerRecord<byte[], byte[]> createRecord(String topic, byte[] key, byte[] value, Integer partition) {
+        if (!this.schemaCache.isEnabled()) {
+            throw new IllegalStateException("Avro embedded format is not enabled");
+        }
+        return KafkaProducerRecord.create(topic,
+                encode(this.schemaCache.keySchema(topic), key, "key", topic),
+                encode(this.schemaCache.valueSchema(topic), value, "value", topic),
+                partition);
+    }
+
+    @Override
+    protected JsonObject toJson(KafkaConsumerRecord<byte[], byte[]> record) {
+
+        JsonObject jsonObject = new JsonObject();
+
+        jsonObject.put("topic", record.topic());
+        jsonObject.put("key", decode(this.schemaCache.keySchema(record.topic()), record.key(), "key", record.topic()));
+        jsonObject.put("value", decode(this.schemaCache.valueSchema(record.topic()), record.value(), "value", record.topic()));
+        jsonObject.put("partition", record.partition());
+        jsonObject.put("offset", record.offset());
+
+        return jsonObject;
+    }
+
+    private static byte[] encode(AvroSchema schema, byte[] json, String field, String topic) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            if (schema == null) {
+                if (Json.mapper.readTree(json).isNull()) {
+                    return null;
+                }
+                throw new IllegalStateException("No Avro schema for the " + field + " of the records in topic " + topic);
+            }
+            return schema.encode(Json.mapper.readTree(json));
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid Avro " + field + ": " + e.getMessage());
+        }
+    }
+
+    private static Object decode(AvroSchema schema, byte[] data, String field, String topic) {
+        if (data == null) {
+            return null;
+        }
+        if (schema == null) {
+            throw new DecodeException("No Avro schema for the " + field + " of the records in topic " + topic);
+        }
+        try {
+            return schema.decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new DecodeException("Failed to decode Avro " + field + " in topic " + topic + ": " + e.getMessage());
+        }
+    }
+}
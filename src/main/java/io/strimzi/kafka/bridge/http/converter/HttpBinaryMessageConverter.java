@@ -5,72 +5,33 @@
 
 package io.strimzi.kafka.bridge.http.converter;
 
-import io.strimzi.kafka.bridge.converter.MessageConverter;
+import com.fasterxml.jackson.core.JsonParser;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
 import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
-import io.vertx.kafka.client.producer.KafkaProducerRecord;
 
 import javax.xml.bind.DatatypeConverter;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
-public class HttpBinaryMessageConverter implements MessageConverter<byte[], byte[], Buffer, Buffer> {
-
-
-    @Override
-    public KafkaProducerRecord<byte[], byte[]> toKafkaRecord(String kafkaTopic, Integer partition, Buffer message) {
-
-        Integer partitionFromBody = null;
-        byte[] key = null;
-        byte[] value = null;
-
-        JsonObject json = message.toJsonObject();
-
-        if (!json.isEmpty()) {
-            if (json.containsKey("key")) {
-                key = DatatypeConverter.parseBase64Binary(json.getString("key"));
-            }
-            if (json.containsKey("value")) {
-                value = DatatypeConverter.parseBase64Binary(json.getString("value"));
-            }
-            if (json.containsKey("partition")) {
-                partitionFromBody = json.getInteger("partition");
-            }
-            if (partition != null && partitionFromBody != null) {
-                throw new IllegalStateException("Partition specified in body and in request path");
-            }
-            if (partition != null) {
-                partitionFromBody = partition;
-            }
-        }
-
-        KafkaProducerRecord<byte[], byte[]> record = KafkaProducerRecord.create(kafkaTopic, key, value, partitionFromBody);
-
-        return record;
-    }
+public class HttpBinaryMessageConverter extends AbstractHttpMessageConverter {
 
     @Override
-    public List<KafkaProducerRecord<byte[], byte[]>> toKafkaRecords(String kafkaTopic, Integer partition, Buffer messages) {
-
-        List<KafkaProducerRecord<byte[], byte[]>> records = new ArrayList<>();
-
-        JsonObject json = messages.toJsonObject();
-        JsonArray jsonArray = json.getJsonArray("records");
-
-        for (Object obj : jsonArray) {
-            JsonObject jsonObj = (JsonObject) obj;
-            records.add(toKafkaRecord(kafkaTopic, partition, jsonObj.toBuffer()));
+    protected byte[] readKeyOrValue(JsonParser parser, byte[] input, int inputOffset) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return DatatypeConverter.parseBase64Binary(parser.getText());
+            default:
+                throw new IllegalArgumentException("Key and value must be base64 encoded strings");
         }
-
-        return records;
     }
 
     @Override
     public Buffer toMessage(String address, KafkaConsumerRecord<byte[], byte[]> record) {
-        throw new UnsupportedOperationException();
+        return toJson(record).toBuffer();
     }
 
     @Override
@@ -79,21 +40,24 @@ public class HttpBinaryMessageConverter implements MessageConverter<byte[], byte
         JsonArray jsonArray = new JsonArray();
 
         for (int i = 0; i < records.size(); i++) {
+            jsonArray.add(toJson(records.recordAt(i)));
+        }
 
-            JsonObject jsonObject = new JsonObject();
-            KafkaConsumerRecord<byte[], byte[]> record = records.recordAt(i);
+        return jsonArray.toBuffer();
+    }
 
-            jsonObject.put("topic", record.topic());
-            jsonObject.put("key", record.key() != null ?
-                    DatatypeConverter.printBase64Binary(records.recordAt(i).key()) : null);
-            jsonObject.put("value", record.value() != null ?
-                    DatatypeConverter.printBase64Binary(records.recordAt(i).value()) : null);
-            jsonObject.put("partition", record.partition());
-            jsonObject.put("offset", record.offset());
+    private static JsonObject toJson(KafkaConsumerRecord<byte[], byte[]> record) {
 
-            jsonArray.add(jsonObject);
-        }
+        JsonObject jsonObject = new JsonObject();
 
-        return jsonArray.toBuffer();
+        jsonObject.put("topic", record.topic());
+        jsonObject.put("key", record.key() != null ?
+                DatatypeConverter.printBase64Binary(record.key()) : null);
+        jsonObject.put("value", record.value() != null ?
+                DatatypeConverter.printBase64Binary(record.value()) : null);
+        jsonObject.put("partition", record.partition());
+        jsonObject.put("offset", record.offset());
+
+        return jsonObject;
     }
 }
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converter for the CBOR embedded format, with the records envelope encoded in CBOR (RFC 7049)
+ * and keys and values carried as byte strings, so without any text or base64 encoding.
+ *
+ * The produce request body is a map with the "records" array, each record being a map with
+ * "key", "value", "topic" and "partition" entries, as in the JSON envelope; keys and values
+ * can be provided as text strings as well, sent as their UTF-8 bytes.
+ * The poll response body is an array of maps with "topic", "key", "value", "partition" and "offset" entries.
+ */
+public class HttpCborMessageConverter implements HttpMessageConverter<byte[], byte[]> {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+
+    private static final int SIMPLE_NULL = 22;
+    private static final int INDEFINITE = 31;
+    private static final int BREAK = 0xFF;
+
+    // the entry names of a polled record, encoded once
+    private static final byte[] TOPIC = text("topic");
+    private static final byte[] KEY = text("key");
+    private static final byte[] VALUE = text("value");
+    private static final byte[] PARTITION = text("partition");
+    private static final byte[] OFFSET = text("offset");
+
+    @Override
+    public KafkaProducerRecord<byte[], byte[]> toKafkaRecord(String kafkaTopic, Integer partition, Buffer message) {
+        CborReader reader = new CborReader(message.getByteBuf());
+        reader.next();
+        if (reader.major != MAJOR_MAP) {
+            throw new DecodeException("Failed to decode: the record is not a CBOR map");
+        }
+        return this.readRecord(reader, kafkaTopic, partition);
+    }
+
+    @Override
+    public List<KafkaProducerRecord<byte[], byte[]>> toKafkaRecords(String kafkaTopic, Integer partition, Buffer messages) {
+
+        List<KafkaProducerRecord<byte[], byte[]>> records = null;
+
+        CborReader reader = new CborReader(messages.getByteBuf());
+        reader.next();
+        if (reader.major != MAJOR_MAP) {
+            throw new DecodeException("Failed to decode: the request body is not a CBOR map");
+        }
+        for (long entries = reader.length, i = 0; reader.hasNext(entries, i); i++) {
+            String field = reader.readFieldName();
+            reader.next();
+            if ("records".equals(field) && reader.major == MAJOR_ARRAY) {
+                records = new ArrayList<>();
+                for (long size = reader.length, j = 0; reader.hasNext(size, j); j++) {
+                    reader.next();
+                    if (reader.major != MAJOR_MAP) {
+                        throw new DecodeException("Failed to decode: the records list contains a not CBOR map record");
+                    }
+                    records.add(this.readRecord(reader, kafkaTopic, partition));
+                }
+            } else {
+                reader.skip();
+            }
+        }
+
+        if (records == null) {
+            throw new IllegalStateException("The request body doesn't contain a records list");
+        }
+        return records;
+    }
+
+    /**
+     * Read a record, the reader being positioned after the record map header
+     *
+     * @param reader reader of the request body
+     * @param kafkaTopic topic specified in the request path, if any, otherwise the record has to specify it
+     * @param partition partition specified in the request path, if any
+     * @return Kafka record
+     */
+    private KafkaProducerRecord<byte[], byte[]> readRecord(CborReader reader, String kafkaTopic, Integer partition) {
+
+        String topicFromBody = null;
+        Integer partitionFromBody = null;
+        byte[] key = null;
+        byte[] value = null;
+
+        for (long entries = reader.length, i = 0; reader.hasNext(entries, i); i++) {
+            String field = reader.readFieldName();
+            reader.next();
+            switch (field) {
+                case "key":
+                    key = reader.readKeyOrValue();
+                    break;
+                case "value":
+                    value = reader.readKeyOrValue();
+                    break;
+                case "topic":
+                    if (reader.major != MAJOR_TEXT && !reader.isNull()) {
+                        throw new IllegalArgumentException("Topic must be a string");
+                    }
+                    topicFromBody = reader.isNull() ? null : new String(reader.readString(), StandardCharsets.UTF_8);
+                    break;
+                case "partition":
+                    if ((reader.major != MAJOR_UNSIGNED || reader.length > Integer.MAX_VALUE) && !reader.isNull()) {
+                        throw new IllegalArgumentException("Partition must be an integer");
+                    }
+                    partitionFromBody = reader.isNull() ? null : (int) reader.length;
+                    break;
+                default:
+                    reader.skip();
+                    break;
+            }
+        }
+
+        return KafkaProducerRecord.create(AbstractHttpMessageConverter.topic(kafkaTopic, topicFromBody), key, value,
+                AbstractHttpMessageConverter.partition(partition, partitionFromBody));
+    }
+
+    @Override
+    public Buffer toMessage(String address, KafkaConsumerRecord<byte[], byte[]> record) {
+        Buffer buffer = Buffer.buffer();
+        writeRecord(buffer, record);
+        return buffer;
+    }
+
+    @Override
+    public Buffer toMessages(KafkaConsumerRecords<byte[], byte[]> records) {
+
+        int size = 16;
+        for (int i = 0; i < records.size(); i++) {
+            KafkaConsumerRecord<byte[], byte[]> record = records.recordAt(i);
+            size += 64 + record.topic().length()
+                    + (record.key() != null ? record.key().length : 0)
+                    + (record.value() != null ? record.value().length : 0);
+        }
+        Buffer buffer = Buffer.buffer(size);
+
+        writeHeader(buffer, MAJOR_ARRAY, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            writeRecord(buffer, records.recordAt(i));
+        }
+
+        return buffer;
+    }
+
+    @Override
+    public int toMessages(KafkaConsumerRecords<byte[], byte[]> records, int maxRecords, long maxBytes, Buffer messages) {
+        // the array header, with the number of records, comes first so it's written once they are all converted
+        Buffer body = Buffer.buffer();
+        int converted = 0;
+        while (converted < records.size() && converted < maxRecords) {
+            Buffer record = Buffer.buffer();
+            writeRecord(record, records.recordAt(converted));
+            if (headerSize(converted + 1) + body.length() + record.length() > maxBytes) {
+                break;
+            }
+            body.appendBuffer(record);
+            converted++;
+        }
+        writeHeader(messages, MAJOR_ARRAY, converted);
+        messages.appendBuffer(body);
+        return converted;
+    }
+
+    private static void writeRecord(Buffer buffer, KafkaConsumerRecord<byte[], byte[]> record) {
+        writeHeader(buffer, MAJOR_MAP, 5);
+        buffer.appendBytes(TOPIC);
+        writeString(buffer, MAJOR_TEXT, record.topic().getBytes(StandardCharsets.UTF_8));
+        buffer.appendBytes(KEY);
+        writeString(buffer, MAJOR_BYTES, record.key());
+        buffer.appendBytes(VALUE);
+        writeString(buffer, MAJOR_BYTES, record.value());
+        buffer.appendBytes(PARTITION);
+        writeHeader(buffer, MAJOR_UNSIGNED, record.partition());
+        buffer.appendBytes(OFFSET);
+        writeHeader(buffer, MAJOR_UNSIGNED, record.offset());
+    }
+
+    private static byte[] text(String s) {
+        Buffer buffer = Buffer.buffer();
+        writeString(buffer, MAJOR_TEXT, s.getBytes(StandardCharsets.UTF_8));
+        return buffer.getBytes();
+    }
+
+    private static void writeString(Buffer buffer, int major, byte[] bytes) {
+        if (bytes == null) {
+            buffer.appendByte((byte) (MAJOR_SIMPLE << 5 | SIMPLE_NULL));
+        } else {
+            writeHeader(buffer, major, bytes.length);
+            buffer.appendBytes(bytes);
+        }
+    }
+
+    /**
+     * @param value the value of a data item header
+     * @return the size of the header, in bytes
+     */
+    private static int headerSize(long value) {
+        if (value < 24) {
+            return 1;
+        } else if (value <= 0xFF) {
+            return 2;
+        } else if (value <= 0xFFFF) {
+            return 3;
+        } else if (value <= 0xFFFFFFFFL) {
+            return 5;
+        }
+        return 9;
+    }
+
+    private static void writeHeader(Buffer buffer, int major, long value) {
+        int type = major << 5;
+        if (value < 24) {
+            buffer.appendByte((byte) (type | value));
+        } else if (value <= 0xFF) {
+            buffer.appendByte((byte) (type | 24)).appendByte((byte) value);
+        } else if (value <= 0xFFFF) {
+            buffer.appendByte((byte) (type | 25)).appendShort((short) value);
+        } else if (value <= 0xFFFFFFFFL) {
+            buffer.appendByte((byte) (type | 26)).appendInt((int) value);
+        } else {
+            buffer.appendByte((byte) (type | 27)).appendLong(value);
+        }
+    }
+
+    /**
+     * Reader of CBOR data items, directly from the request body buffer
+     */
+    private static class CborReader {
+
+        private final ByteBuf buf;
+
+        // major type, additional information and argument (or length) of the current data item header
+        private int major;
+        private int info;
+        private long length;
+
+        CborReader(ByteBuf buf) {
+            this.buf = buf;
+        }
+
+        /**
+         * Read the header of the next data item, skipping any tag
+         */
+        void next() {
+            do {
+                int initial = this.readUnsignedByte();
+                this.major = initial >>> 5;
+                this.info = initial & 0x1F;
+                this.length = this.readArgument();
+            } while (this.major == MAJOR_TAG);
+        }
+
+        private long readArgument() {
+            if (this.info < 24) {
+                return this.info;
+            }
+            switch (this.info) {
+                case 24:
+                    this.ensure(1);
+                    return this.buf.readUnsignedByte();
+                case 25:
+                    this.ensure(2);
+                    return this.buf.readUnsignedShort();
+                case 26:
+                    this.ensure(4);
+                    return this.buf.readUnsignedInt();
+                case 27:
+                    this.ensure(8);
+                    long value = this.buf.readLong();
+                    if (value < 0 && this.major != MAJOR_SIMPLE) {
+                        throw new DecodeException("Failed to decode: CBOR argument too large");
+                    }
+                    return value;
+                case INDEFINITE:
+                    if (this.major < MAJOR_BYTES || this.major > MAJOR_MAP) {
+                        throw new DecodeException("Failed to decode: invalid CBOR indefinite length");
+                    }
+                    return -1;
+                default:
+                    throw new DecodeException("Failed to decode: invalid CBOR additional information " + this.info);
+            }
+        }
+
+        /**
+         * @param size number of items in the current array or map, -1 if indefinite
+         * @param read number of items already read
+         * @return if there is another item in the current array or map, consuming the break for an indefinite one
+         */
+        boolean hasNext(long size, long read) {
+            if (size >= 0) {
+                return read < size;
+            }
+            this.ensure(1);
+            if (this.buf.getUnsignedByte(this.buf.readerIndex()) == BREAK) {
+                this.buf.skipBytes(1);
+                return false;
+            }
+            return true;
+        }
+
+        boolean isNull() {
+            return this.major == MAJOR_SIMPLE && this.info == SIMPLE_NULL;
+        }
+
+        String readFieldName() {
+            this.next();
+            if (this.major != MAJOR_TEXT) {
+                throw new DecodeException("Failed to decode: CBOR map keys must be text strings");
+            }
+            return new String(this.readString(), StandardCharsets.UTF_8);
+        }
+
+        byte[] readKeyOrValue() {
+            if (this.isNull()) {
+                return null;
+            }
+            if (this.major != MAJOR_BYTES && this.major != MAJOR_TEXT) {
+                throw new IllegalArgumentException("Key and value must be byte or text strings");
+            }
+            return this.readString();
+        }
+
+        /**
+         * Read the content of the current byte or text string data item
+         */
+        byte[] readString() {
+            if (this.length >= 0) {
+                return this.readBytes(this.length);
+            }
+            // indefinite length string, made of definite length chunks of the same type
+            int stringMajor = this.major;
+            ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+            while (this.hasNext(-1, 0)) {
+                this.next();
+                if (this.major != stringMajor || this.length < 0) {
+                    throw new DecodeException("Failed to decode: invalid CBOR string chunk");
+                }
+                byte[] chunk = this.readBytes(this.length);
+                chunks.write(chunk, 0, chunk.length);
+            }
+            return chunks.toByteArray();
+        }
+
+        /**
+         * Skip the current data item, with all the nested ones
+         */
+        void skip() {
+            switch (this.major) {
+                case MAJOR_BYTES:
+                case MAJOR_TEXT:
+                    this.readString();
+                    break;
+                case MAJOR_ARRAY:
+                case MAJOR_MAP:
+                    long size = this.length;
+                    int items = this.major == MAJOR_MAP ? 2 : 1;
+                    for (long i = 0; this.hasNext(size, i); i++) {
+                        for (int j = 0; j < items; j++) {
+                            this.next();
+                            this.skip();
+                        }
+                    }
+                    break;
+                default:
+                    // integers and simple values have no content after the header
+                    break;
+            }
+        }
+
+        private byte[] readBytes(long length) {
+            this.ensure(length);
+            byte[] bytes = new byte[(int) length];
+            this.buf.readBytes(bytes);
+            return bytes;
+        }
+
+        private int readUnsignedByte() {
+            this.ensure(1);
+            return this.buf.readUnsignedByte();
+        }
+
+        private void ensure(long length) {
+            if (this.buf.readableBytes() < length) {
+                throw new DecodeException("Failed to decode: unexpected end of CBOR data");
+            }
+        }
+    }
+}
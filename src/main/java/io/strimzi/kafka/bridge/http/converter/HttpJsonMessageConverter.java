@@ -5,71 +5,36 @@
 
 package io.strimzi.kafka.bridge.http.converter;
 
-import io.strimzi.kafka.bridge.converter.MessageConverter;
+import com.fasterxml.jackson.core.JsonParser;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
 import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
-import io.vertx.kafka.client.producer.KafkaProducerRecord;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
 
-public class HttpJsonMessageConverter implements MessageConverter<byte[], byte[], Buffer, Buffer> {
+public class HttpJsonMessageConverter extends AbstractHttpMessageConverter {
 
     @Override
-    public KafkaProducerRecord<byte[], byte[]> toKafkaRecord(String kafkaTopic, Integer partition, Buffer message) {
-
-        Integer partitionFromBody = null;
-        byte[] key = null;
-        byte[] value = null;
-
-        JsonObject json = message.toJsonObject();
-
-        if (!json.isEmpty()) {
-            if (json.containsKey("key")) {
-                key = Json.encodeToBuffer(json.getValue("key")).getBytes();
-            }
-            if (json.containsKey("value")) {
-                value = Json.encodeToBuffer(json.getValue("value")).getBytes();
-            }
-            if (json.containsKey("partition")) {
-                partitionFromBody = json.getInteger("partition");
-            }
-            if (partition != null && partitionFromBody != null) {
-                throw new IllegalStateException("Partition specified in body and in request path");
-            }
-            if (partition != null) {
-                partitionFromBody = partition;
-            }
+    protected byte[] readKeyOrValue(JsonParser parser, byte[] input, int inputOffset) throws IOException {
+        // the sub-document is fully tokenized, so validated, but then its original bytes
+        // are copied as they are instead of being decoded and encoded again
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+        } else {
+            parser.finishToken();
         }
-
-        KafkaProducerRecord<byte[], byte[]> record = KafkaProducerRecord.create(kafkaTopic, key, value, partitionFromBody);
-
-        return record;
-    }
-
-    @Override
-    public List<KafkaProducerRecord<byte[], byte[]>> toKafkaRecords(String kafkaTopic, Integer partition, Buffer messages) {
-
-        List<KafkaProducerRecord<byte[], byte[]>> records = new ArrayList<>();
-
-        JsonObject json = messages.toJsonObject();
-        JsonArray jsonArray = json.getJsonArray("records");
-
-        for (Object obj : jsonArray) {
-            JsonObject jsonObj = (JsonObject) obj;
-            records.add(toKafkaRecord(kafkaTopic, partition, jsonObj.toBuffer()));
-        }
-
-        return records;
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+        return Arrays.copyOfRange(input, inputOffset + start, inputOffset + end);
     }
 
     @Override
     public Buffer toMessage(String address, KafkaConsumerRecord<byte[], byte[]> record) {
-        throw new UnsupportedOperationException();
+        return this.toJson(record).toBuffer();
     }
 
     @Override
@@ -78,21 +43,28 @@ public class HttpJsonMessageConverter implements MessageConverter<byte[], byte[]
         JsonArray jsonArray = new JsonArray();
 
         for (int i = 0; i < records.size(); i++) {
+            jsonArray.add(this.toJson(records.recordAt(i)));
+        }
 
-            JsonObject jsonObject = new JsonObject();
-            KafkaConsumerRecord<byte[], byte[]> record = records.recordAt(i);
+        return jsonArray.toBuffer();
+    }
 
-            jsonObject.put("topic", record.topic());
-            jsonObject.put("key", record.key() != null ?
-                    Json.decodeValue(Buffer.buffer(record.key())) : null);
-            jsonObject.put("value", record.value() != null ?
-                    Json.decodeValue(Buffer.buffer(record.value())) : null);
-            jsonObject.put("partition", record.partition());
-            jsonObject.put("offset", record.offset());
+    /**
+     * @param record the Kafka record
+     * @return the JSON representation of the record, as returned to the consumers
+     */
+    protected JsonObject toJson(KafkaConsumerRecord<byte[], byte[]> record) {
 
-            jsonArray.add(jsonObject);
-        }
+        JsonObject jsonObject = new JsonObject();
 
-        return jsonArray.toBuffer();
+        jsonObject.put("topic", record.topic());
+        jsonObject.put("key", record.key() != null ?
+                Json.decodeValue(Buffer.buffer(record.key())) : null);
+        jsonObject.put("value", record.value() != null ?
+                Json.decodeValue(Buffer.buffer(record.value())) : null);
+        jsonObject.put("partition", record.partition());
+        jsonObject.put("offset", record.offset());
+
+        return jsonObject;
     }
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import io.strimzi.kafka.bridge.converter.MessageConverter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
+
+/**
+ * Interface for a message converter between Kafka records and HTTP request and response bodies,
+ * able to convert the records of a poll response within a maximum size
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+public interface HttpMessageConverter<K, V> extends MessageConverter<K, V, Buffer, Buffer>, HttpProducerMessageConverter<K, V> {
+
+    /**
+     * Converts the first Kafka records of a batch to a collection of messages, one by one, stopping before
+     * going over a maximum number of records or a maximum size of the collection; a record which can't be
+     * converted is written as an error in its place, if the format allows it
+     *
+     * @param records Kafka records to convert
+     * @param maxRecords maximum number of records to convert
+     * @param maxBytes maximum size of the collection of messages, in bytes
+     * @param messages empty buffer the collection of messages is written to
+     * @return the number of records converted
+     */
+    int toMessages(KafkaConsumerRecords<K, V> records, int maxRecords, long maxBytes, Buffer messages);
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+
+import java.util.List;
+
+/**
+ * Interface for a message converter from HTTP request bodies to Kafka records, on the produce side only
+ *
+ * @param <K>   type of Kafka message key
+ * @param <V>   type of Kafka message payload
+ */
+public interface HttpProducerMessageConverter<K, V> {
+
+    /**
+     * Converts a message to a Kafka record
+     *
+     * @param kafkaTopic Kafka topic for sending message
+     * @param partition partition of topic where the messages are sent when partition is specified in the request
+     * @param message message to convert
+     * @return Kafka record
+     */
+    KafkaProducerRecord<K, V> toKafkaRecord(String kafkaTopic, Integer partition, Buffer message);
+
+    /**
+     * Convert a collection of messages to Kafka records
+     *
+     * @param kafkaTopic Kafka topic for sending message
+     * @param partition partition of topic where the messages are sent when partition is specified in the request
+     * @param messages collection of messages to convert
+     * @return Kafka records
+     */
+    List<KafkaProducerRecord<K, V>> toKafkaRecords(String kafkaTopic, Integer partition, Buffer messages);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converter for a raw request body (application/octet-stream) which is the value of a single record,
+ * sent to Kafka as it is without any JSON or base64 decoding.
+ * The key, if any, comes from the request and not from the body.
+ */
+public class HttpRawMessageConverter implements HttpProducerMessageConverter<byte[], byte[]> {
+
+    private final byte[] key;
+
+    /**
+     * Constructor
+     *
+     * @param key the key of the record, null if the record has no key
+     */
+    public HttpRawMessageConverter(byte[] key) {
+        this.key = key;
+    }
+
+    @Override
+    public KafkaProducerRecord<byte[], byte[]> toKafkaRecord(String kafkaTopic, Integer partition, Buffer message) {
+        return KafkaProducerRecord.create(kafkaTopic, this.key, toBytes(message), partition);
+    }
+
+    @Override
+    public List<KafkaProducerRecord<byte[], byte[]>> toKafkaRecords(String kafkaTopic, Integer partition, Buffer messages) {
+        return Collections.singletonList(this.toKafkaRecord(kafkaTopic, partition, messages));
+    }
+
+    /**
+     * Get the bytes of the provided buffer, without copying them when the buffer is backed
+     * by an array with exactly its content (i.e. a preallocated request body)
+     *
+     * @param buffer the buffer
+     * @return the buffer bytes
+     */
+    private static byte[] toBytes(Buffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        ByteBuf byteBuf = buffer.getByteBuf();
+        if (byteBuf.hasArray() && byteBuf.arrayOffset() == 0 && byteBuf.readerIndex() == 0 &&
+                byteBuf.array().length == byteBuf.readableBytes()) {
+            return byteBuf.array();
+        }
+        return buffer.getBytes();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.model;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Delivery results of a batch of records sent to Kafka.
+ *
+ * Partitions and offsets are tracked in primitive arrays, indexed by the position of the record
+ * in the batch, together with a counter of the records still waiting for a result; errors,
+ * expected to be rare, are kept apart. The results are written as the {"offsets":[...]} JSON
+ * response body straight into a buffer, without building any intermediate JSON tree.
+ * For large batches, the results can also be provided as a summary, with just the range of offsets
+ * written in each partition and the records which failed.
+ * When the batch is sent in a transaction, the results report its outcome as well.
+ */
+public class HttpProduceResults {
+
+    private static final byte[] OFFSETS_START = bytes("\"offsets\":[");
+    private static final byte[] TRANSACTION = bytes("\"transaction\":\"");
+    private static final byte[] OFFSETS_END = bytes("]}");
+    private static final byte[] PARTITION = bytes("{\"partition\":");
+    private static final byte[] OFFSET = bytes(",\"offset\":");
+
+    // estimated size of a single record result in the JSON body, for sizing the buffer
+    private static final int RESULT_SIZE_ESTIMATE = 36;
+
+    private final String[] topics;
+    private final int[] partitions;
+    private final long[] offsets;
+    private HttpBridgeError[] errors;
+    private int remaining;
+    private int delivered;
+    private String transaction;
+
+    /**
+     * Constructor
+     *
+     * @param size number of records in the batch
+     */
+    public HttpProduceResults(int size) {
+        this.topics = new String[size];
+        this.partitions = new int[size];
+        this.offsets = new long[size];
+        this.remaining = size;
+    }
+
+    /**
+     * Set the result of a record delivered successfully
+     *
+     * @param index position of the record in the batch
+     * @param topic topic the record was written to
+     * @param partition partition the record was written to
+     * @param offset offset of the record in the partition
+     * @return if all the records in the batch have a result
+     */
+    public boolean delivered(int index, String topic, int partition, long offset) {
+        this.topics[index] = topic;
+        this.partitions[index] = partition;
+        this.offsets[index] = offset;
+        this.delivered++;
+        return --this.remaining == 0;
+    }
+
+    /**
+     * Set the result of a record which failed to be delivered
+     *
+     * @param index position of the record in the batch
+     * @param error the delivery error
+     * @return if all the records in the batch have a result
+     */
+    public boolean failed(int index, HttpBridgeError error) {
+        if (this.errors == null) {
+            this.errors = new HttpBridgeError[this.partitions.length];
+        }
+        this.errors[index] = error;
+        return --this.remaining == 0;
+    }
+
+    /**
+     * Set the outcome of the transaction the batch was sent in
+     *
+     * @param transaction the transaction outcome (i.e. committed or aborted)
+     */
+    public void setTransaction(String transaction) {
+        this.transaction = transaction;
+    }
+
+    /**
+     * @return if any record in the batch failed to be delivered
+     */
+    public boolean hasErrors() {
+        return this.errors != null;
+    }
+
+    /**
+     * @return if any record in the batch was written to Kafka, or could have been because the outcome
+     *         of the transaction the batch was sent in is not known
+     */
+    public boolean isWritten() {
+        return this.delivered > 0 || "unknown".equals(this.transaction);
+    }
+
+    /**
+     * @return if all the records in the batch have a result
+     */
+    public boolean isCompleted() {
+        return this.remaining == 0;
+    }
+
+    /**
+     * @return the results as the {"offsets":[...]} JSON response body
+     */
+    public Buffer toBuffer() {
+        ByteBuf buf = Unpooled.buffer(OFFSETS_START.length + OFFSETS_END.length + this.partitions.length * RESULT_SIZE_ESTIMATE);
+        byte[] digits = new byte[20];
+        buf.writeByte('{');
+        if (this.transaction != null) {
+            buf.writeBytes(TRANSACTION);
+            buf.writeCharSequence(this.transaction, StandardCharsets.US_ASCII);
+            buf.writeByte('"').writeByte(',');
+        }
+        buf.writeBytes(OFFSETS_START);
+        for (int i = 0; i < this.partitions.length; i++) {
+            if (i > 0) {
+                buf.writeByte(',');
+            }
+            if (this.errors != null && this.errors[i] != null) {
+                buf.writeBytes(this.errors[i].toJson().toBuffer().getByteBuf());
+            } else {
+                buf.writeBytes(PARTITION);
+                writeNumber(buf, this.partitions[i], digits);
+                buf.writeBytes(OFFSET);
+                writeNumber(buf, this.offsets[i], digits);
+                buf.writeByte('}');
+            }
+        }
+        buf.writeBytes(OFFSETS_END);
+        return Buffer.buffer(buf);
+    }
+
+    /**
+     * @return the results as the {"offsets":[...]} JSON object
+     */
+    public JsonObject toJson() {
+        JsonArray offsets = new JsonArray();
+        for (int i = 0; i < this.partitions.length; i++) {
+            if (this.errors != null && this.errors[i] != null) {
+                offsets.add(this.errors[i].toJson());
+            } else {
+                offsets.add(new JsonObject()
+                        .put("partition", this.partitions[i])
+                        .put("offset", this.offsets[i]));
+            }
+        }
+        return this.withTransaction(new JsonObject()).put("offsets", offsets);
+    }
+
+    /**
+     * Get the results as a summary, with the offsets range and the number of records written in each partition
+     * and the position in the batch of the records which failed, together with the error
+     *
+     * @return the results summary as {"partitions":[...],"failed":[...]} JSON object
+     */
+    public JsonObject toSummaryJson() {
+        // offsets range and records count for each partition of each topic
+        Map<String, Map<Integer, long[]>> ranges = new LinkedHashMap<>();
+        JsonArray failed = new JsonArray();
+        for (int i = 0; i < this.partitions.length; i++) {
+            if (this.errors != null && this.errors[i] != null) {
+                failed.add(this.errors[i].toJson().put("index", i));
+            } else {
+                long[] range = ranges.computeIfAbsent(this.topics[i], t -> new LinkedHashMap<>())
+                        .computeIfAbsent(this.partitions[i], p -> new long[] {Long.MAX_VALUE, Long.MIN_VALUE, 0});
+                range[0] = Math.min(range[0], this.offsets[i]);
+                range[1] = Math.max(range[1], this.offsets[i]);
+                range[2]++;
+            }
+        }
+
+        JsonArray partitions = new JsonArray();
+        for (Map.Entry<String, Map<Integer, long[]>> topic : ranges.entrySet()) {
+            for (Map.Entry<Integer, long[]> partition : topic.getValue().entrySet()) {
+                partitions.add(new JsonObject()
+                        .put("topic", topic.getKey())
+                        .put("partition", partition.getKey())
+                        .put("first_offset", partition.getValue()[0])
+                        .put("last_offset", partition.getValue()[1])
+                        .put("count", partition.getValue()[2]));
+            }
+        }
+        return this.withTransaction(new JsonObject())
+                .put("partitions", partitions)
+                .put("failed", failed);
+    }
+
+    private JsonObject withTransaction(JsonObject json) {
+        if (this.transaction != null) {
+            json.put("transaction", this.transaction);
+        }
+        return json;
+    }
+
+    private static void writeNumber(ByteBuf buf, long value, byte[] digits) {
+        if (value < 0) {
+            // i.e. no offset returned by Kafka, when the producer doesn't wait for acknowledgements
+            buf.writeByte('-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        buf.writeBytes(digits, pos, digits.length - pos);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
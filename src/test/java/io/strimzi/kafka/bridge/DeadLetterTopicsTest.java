@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+import org.apache.kafka.common.errors.NotLeaderForPartitionException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadLetterTopicsTest {
+
+    @Test
+    void disabled() {
+        assertFalse(new DeadLetterTopics(null).isEnabled());
+        assertFalse(new DeadLetterTopics(" ").isEnabled());
+        assertNull(new DeadLetterTopics("").deadLetterTopic("topic"));
+    }
+
+    @Test
+    void perTopicAndDefault() {
+        DeadLetterTopics deadLetterTopics = new DeadLetterTopics("orders:orders-dlq, *:bridge-dlq");
+
+        assertTrue(deadLetterTopics.isEnabled());
+        assertEquals("orders-dlq", deadLetterTopics.deadLetterTopic("orders"));
+        assertEquals("bridge-dlq", deadLetterTopics.deadLetterTopic("payments"));
+        // not routed to itself again
+        assertNull(deadLetterTopics.deadLetterTopic("bridge-dlq"));
+        assertNull(new DeadLetterTopics("orders:orders-dlq").deadLetterTopic("payments"));
+    }
+
+    @Test
+    void invalidMapping() {
+        assertThrows(IllegalArgumentException.class, () -> new DeadLetterTopics("orders"));
+        assertThrows(IllegalArgumentException.class, () -> new DeadLetterTopics("orders:,*:dlq"));
+    }
+
+    @Test
+    void deliveryFailure() {
+        KafkaProducerRecord<String, String> record = KafkaProducerRecord.create("orders", "key", "value", 2)
+                .addHeader("trace", "abc");
+
+        KafkaProducerRecord<String, String> deadLetter =
+                DeadLetterTopics.deliveryFailure(record, "orders-dlq", new NotLeaderForPartitionException("not leader"));
+
+        assertEquals("orders-dlq", deadLetter.topic());
+        assertNull(deadLetter.partition());
+        assertEquals("key", deadLetter.key());
+        assertEquals("value", deadLetter.value());
+        assertEquals("abc", DeadLetterTopics.header(deadLetter, "trace"));
+        assertEquals(DeadLetterTopics.DELIVERY, DeadLetterTopics.header(deadLetter, DeadLetterTopics.STAGE_HEADER));
+        assertEquals("not leader", DeadLetterTopics.header(deadLetter, DeadLetterTopics.ERROR_HEADER));
+        assertEquals("orders", DeadLetterTopics.header(deadLetter, DeadLetterTopics.TOPIC_HEADER));
+        assertEquals("2", DeadLetterTopics.header(deadLetter, DeadLetterTopics.PARTITION_HEADER));
+        // only the records failed to be converted are already dead letters
+        assertNull(DeadLetterTopics.conversionError(deadLetter));
+    }
+
+    @Test
+    void conversionFailure() {
+        byte[] raw = "{\"value\":1}".getBytes(StandardCharsets.UTF_8);
+
+        KafkaProducerRecord<byte[], byte[]> deadLetter =
+                DeadLetterTopics.conversionFailure(raw, "orders-dlq", "Key and value must be base64 encoded strings", "orders", null);
+
+        assertEquals("orders-dlq", deadLetter.topic());
+        assertNull(deadLetter.key());
+        assertArrayEquals(raw, deadLetter.value());
+        assertNull(DeadLetterTopics.header(deadLetter, DeadLetterTopics.PARTITION_HEADER));
+        assertEquals("Key and value must be base64 encoded strings", DeadLetterTopics.conversionError(deadLetter));
+        assertNull(DeadLetterTopics.conversionError(KafkaProducerRecord.create("orders", "value")));
+    }
+}
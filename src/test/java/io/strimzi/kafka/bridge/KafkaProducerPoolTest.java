@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.core.Vertx;
+import io.vertx.kafka.client.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class KafkaProducerPoolTest {
+
+    private Vertx vertx;
+    private KafkaProducerPool<byte[], byte[]> pool;
+
+    @BeforeEach
+    void before() {
+        this.vertx = Vertx.vertx();
+        this.pool = new KafkaProducerPool<>(this.vertx);
+    }
+
+    @AfterEach
+    void after() {
+        this.pool.close();
+        this.vertx.close();
+    }
+
+    private Properties props(String acks) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ProducerConfig.ACKS_CONFIG, acks);
+        return props;
+    }
+
+    @Test
+    void sameConfigurationSharesProducer() {
+        KafkaProducer<byte[], byte[]> first = this.pool.acquire(props("1"), new ByteArraySerializer(), new ByteArraySerializer());
+        KafkaProducer<byte[], byte[]> second = this.pool.acquire(props("1"), new ByteArraySerializer(), new ByteArraySerializer());
+
+        assertSame(first, second);
+        assertEquals(1, this.pool.size());
+        assertEquals(2, this.pool.leases(first));
+    }
+
+    @Test
+    void differentConfigurationGetsDedicatedProducer() {
+        KafkaProducer<byte[], byte[]> unsettled = this.pool.acquire(props("1"), new ByteArraySerializer(), new ByteArraySerializer());
+        KafkaProducer<byte[], byte[]> settled = this.pool.acquire(props("0"), new ByteArraySerializer(), new ByteArraySerializer());
+
+        assertNotSame(unsettled, settled);
+        assertEquals(2, this.pool.size());
+    }
+
+    @Test
+    void releaseKeepsProducerOpen() {
+        KafkaProducer<byte[], byte[]> first = this.pool.acquire(props("1"), new ByteArraySerializer(), new ByteArraySerializer());
+        this.pool.release(first);
+        assertEquals(0, this.pool.leases(first));
+        // a released lease doesn't remove the producer, it's reused by the next endpoint
+        KafkaProducer<byte[], byte[]> second = this.pool.acquire(props("1"), new ByteArraySerializer(), new ByteArraySerializer());
+        assertSame(first, second);
+        assertEquals(1, this.pool.leases(second));
+    }
+}
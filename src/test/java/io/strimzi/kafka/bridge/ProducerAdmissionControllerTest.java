@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProducerAdmissionControllerTest {
+
+    @Test
+    void noLimits() {
+        ProducerAdmissionController controller = new ProducerAdmissionController(-1, -1, -1, -1, -1);
+        for (int i = 0; i < 1000; i++) {
+            controller.acquire("topic", 1024);
+        }
+        assertEquals(0, controller.admit("topic", Long.MAX_VALUE / 2, 1000));
+        assertEquals(1000, controller.inFlightRecords());
+        assertEquals(1024 * 1000, controller.inFlightBytes());
+    }
+
+    @Test
+    void bridgeRecordsLimit() {
+        ProducerAdmissionController controller = new ProducerAdmissionController(-1, 10, -1, -1, -1);
+        for (int i = 0; i < 8; i++) {
+            controller.acquire("topic" + i, 10);
+        }
+        assertEquals(0, controller.admit("other", 10, 2));
+
+        long retryAfterMs = controller.admit("other", 10, 3);
+        assertTrue(retryAfterMs >= ProducerAdmissionController.MIN_RETRY_AFTER_MS);
+        assertTrue(retryAfterMs <= ProducerAdmissionController.MAX_RETRY_AFTER_MS);
+
+        controller.release("topic0", 10);
+        assertEquals(0, controller.admit("other", 10, 3));
+    }
+
+    @Test
+    void topicBytesLimit() {
+        ProducerAdmissionController controller = new ProducerAdmissionController(-1, -1, 100, -1, -1);
+        controller.acquire("busy", 90);
+
+        assertTrue(controller.admit("busy", 20, 1) > 0);
+        // the limit applies to each topic on its own
+        assertEquals(0, controller.admit("idle", 20, 1));
+
+        controller.release("busy", 90);
+        assertEquals(0, controller.inFlightBytes("busy"));
+        assertEquals(0, controller.admit("busy", 20, 1));
+    }
+
+    @Test
+    void batchAgainstBridgeLimits() {
+        ProducerAdmissionController controller = new ProducerAdmissionController(100, 4, 60, -1, -1);
+        controller.acquire("topic0", 10);
+
+        // each topic fits on its own, but the whole batch goes over the bridge limits
+        assertTrue(controller.admit(Arrays.asList(
+                KafkaProducerRecord.create("topic1", new byte[50]),
+                KafkaProducerRecord.create("topic2", new byte[50]))) > 0);
+        assertTrue(controller.admit(Arrays.asList(
+                KafkaProducerRecord.create("topic1", new byte[1]),
+                KafkaProducerRecord.create("topic1", new byte[1]),
+                KafkaProducerRecord.create("topic2", new byte[1]),
+                KafkaProducerRecord.create("topic2", new byte[1]))) > 0);
+        assertEquals(0, controller.admit(Arrays.asList(
+                KafkaProducerRecord.create("topic1", new byte[40]),
+                KafkaProducerRecord.create("topic2", new byte[40]))));
+        // the records for a topic are still checked against the topic limits
+        assertTrue(controller.admit(Arrays.asList(
+                KafkaProducerRecord.create("topic0", new byte[30]),
+                KafkaProducerRecord.create("topic0", new byte[30]))) > 0);
+    }
+
+    @Test
+    void oversizedAdmittedWhenNothingInFlight() {
+        ProducerAdmissionController controller = new ProducerAdmissionController(100, 1, 100, 1, -1);
+        assertEquals(0, controller.admit("topic", 1000, 10));
+
+        controller.acquire("topic", 1000);
+        assertTrue(controller.admit("topic", 1, 1) > 0);
+    }
+
+    @Test
+    void pauseAndResume() {
+        ProducerAdmissionController controller = new ProducerAdmissionController(-1, -1, -1, -1, 100);
+        AtomicInteger resumed = new AtomicInteger();
+
+        controller.acquire("topic", 60);
+        assertFalse(controller.isPaused());
+        controller.whenResumed(resumed::incrementAndGet);
+        assertEquals(1, resumed.get());
+
+        controller.acquire("topic", 60);
+        assertTrue(controller.isPaused());
+        controller.whenResumed(resumed::incrementAndGet);
+        assertEquals(1, resumed.get());
+
+        // still over the low watermark
+        controller.release("topic", 10);
+        assertTrue(controller.isPaused());
+        assertEquals(1, resumed.get());
+
+        controller.release("topic", 60);
+        assertFalse(controller.isPaused());
+        assertEquals(2, resumed.get());
+
+        controller.release("topic", 50);
+        assertEquals(2, resumed.get());
+    }
+
+    @Test
+    void recordSize() {
+        assertEquals(8, ProducerAdmissionController.sizeOf(KafkaProducerRecord.create("topic", new byte[3], new byte[5])));
+        assertEquals(5, ProducerAdmissionController.sizeOf(KafkaProducerRecord.create("topic", null, new byte[5])));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.apache.kafka.common.errors.NotLeaderForPartitionException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(VertxExtension.class)
+class ProducerRetryQueueTest {
+
+    @Test
+    void retriableErrors() {
+        assertTrue(ProducerRetryQueue.isRetriable(new NotLeaderForPartitionException("not leader")));
+        assertTrue(ProducerRetryQueue.isRetriable(new TimeoutException("Expiring 1 record(s)")));
+        assertFalse(ProducerRetryQueue.isRetriable(new TimeoutException("Topic t not present in metadata after 500 ms.")));
+        assertFalse(ProducerRetryQueue.isRetriable(new RecordTooLargeException("too large")));
+    }
+
+    @Test
+    void jitteredBackoff(Vertx vertx) {
+        ProducerRetryQueue queue = new ProducerRetryQueue(vertx, 10, 100, 1000, 30000, -1);
+        for (int i = 0; i < 100; i++) {
+            long first = queue.backoff(1);
+            assertTrue(first >= 50 && first <= 100);
+            long third = queue.backoff(3);
+            assertTrue(third >= 200 && third <= 400);
+            long capped = queue.backoff(10);
+            assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+
+    @Test
+    void retryUpToMaxRetries(Vertx vertx, VertxTestContext context) {
+        ProducerRetryQueue queue = new ProducerRetryQueue(vertx, 2, 1, 1, 30000, -1);
+        long now = System.currentTimeMillis();
+        assertFalse(queue.retry(3, now, 10, new NotLeaderForPartitionException("not leader"), () -> { }));
+        assertFalse(queue.retry(1, now, 10, new RecordTooLargeException("too large"), () -> { }));
+
+        // on the event loop, so that the retry can't happen before checking the queue
+        vertx.runOnContext(v -> context.verify(() -> {
+            assertTrue(queue.retry(2, now, 10, new NotLeaderForPartitionException("not leader"), () -> {
+                context.verify(() -> {
+                    assertEquals(0, queue.queuedRecords());
+                    assertEquals(0, queue.queuedBytes());
+                });
+                context.completeNow();
+            }));
+            assertEquals(1, queue.queuedRecords());
+            assertEquals(10, queue.queuedBytes());
+        }));
+    }
+
+    @Test
+    void deadlineAndMaxBytes(Vertx vertx) {
+        ProducerRetryQueue queue = new ProducerRetryQueue(vertx, 5, 1000, 1000, 2000, 100);
+        long now = System.currentTimeMillis();
+        // the retry would happen after the deadline
+        assertFalse(queue.retry(1, now - 1500, 10, new NotLeaderForPartitionException("not leader"), () -> { }));
+
+        assertTrue(queue.retry(1, now, 60, new NotLeaderForPartitionException("not leader"), () -> { }));
+        // the queue is full
+        assertFalse(queue.retry(1, now, 60, new NotLeaderForPartitionException("not leader"), () -> { }));
+        assertTrue(queue.retry(1, now, 40, new NotLeaderForPartitionException("not leader"), () -> { }));
+        assertEquals(100, queue.queuedBytes());
+    }
+
+    @Test
+    void disabled(Vertx vertx) {
+        ProducerRetryQueue queue = new ProducerRetryQueue(vertx, 0, 100, 1000, 30000, -1);
+        assertFalse(queue.isEnabled());
+        assertFalse(queue.retry(1, System.currentTimeMillis(), 10, new NotLeaderForPartitionException("not leader"), () -> { }));
+    }
+}
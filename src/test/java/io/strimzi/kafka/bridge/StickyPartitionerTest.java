@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StickyPartitionerTest {
+
+    @Test
+    void disabled() {
+        assertFalse(new StickyPartitioner(-1).isEnabled());
+        assertTrue(new StickyPartitioner(0).isEnabled());
+    }
+
+    @Test
+    void eachRequestRotatesWithoutLoad() {
+        StickyPartitioner partitioner = new StickyPartitioner(0);
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i % 3, partitioner.partition("topic", 3));
+        }
+    }
+
+    @Test
+    void leastLoadedPartition() {
+        StickyPartitioner partitioner = new StickyPartitioner(0);
+        assertEquals(0, partitioner.partition("topic", 3));
+        partitioner.acquire("topic", 0, 100);
+        partitioner.acquire("topic", 1, 50);
+        partitioner.acquire("topic", 2, 200);
+
+        assertEquals(1, partitioner.partition("topic", 3));
+        assertEquals(1, partitioner.partition("topic", 3));
+
+        partitioner.release("topic", 2, 200);
+        assertEquals(2, partitioner.partition("topic", 3));
+        assertEquals(0, partitioner.inFlightBytes("topic", 2));
+        assertEquals(50, partitioner.inFlightBytes("topic", 1));
+
+        // other topics have their own load
+        assertEquals(0, partitioner.partition("other", 2));
+        assertEquals(0, partitioner.inFlightBytes("other", 0));
+    }
+
+    @Test
+    void window() {
+        StickyPartitioner partitioner = new StickyPartitioner(60000);
+        int partition = partitioner.partition("topic", 4);
+        partitioner.acquire("topic", partition, 1000);
+        // the partition is kept for the whole window, even if it's not the least loaded anymore
+        assertEquals(partition, partitioner.partition("topic", 4));
+    }
+
+    @Test
+    void partitionsIncreased() {
+        StickyPartitioner partitioner = new StickyPartitioner(0);
+        partitioner.partition("topic", 1);
+        partitioner.acquire("topic", 0, 10);
+
+        assertEquals(1, partitioner.partition("topic", 2));
+        assertEquals(10, partitioner.inFlightBytes("topic", 0));
+    }
+}
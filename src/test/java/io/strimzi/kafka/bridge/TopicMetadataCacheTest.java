@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.strimzi.kafka.bridge.http.HttpConfig;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TopicMetadataCacheTest {
+
+    private Vertx vertx;
+
+    @BeforeEach
+    void start() {
+        this.vertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    void close() {
+        this.vertx.close();
+    }
+
+    @Test
+    void disabled() {
+        TopicMetadataCache cache = new TopicMetadataCache(this.vertx, -1);
+        cache.start(Collections.emptyMap(), Collections.singletonList("topic"));
+
+        // the topics are never known, not even the ones reported as not existing
+        List<Integer> partitions = new ArrayList<>();
+        cache.unknown("topic");
+        cache.partitions("topic", partitions::add);
+        assertEquals(1, partitions.size());
+        assertNull(partitions.get(0));
+        cache.close();
+    }
+
+    @Test
+    void noRefreshInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new TopicMetadataCache(this.vertx, 0));
+        assertThrows(IllegalArgumentException.class,
+            () -> HttpConfig.fromMap(Collections.singletonMap(HttpConfig.HTTP_TOPICS_METADATA_REFRESH, 0)).getTopicsMetadataRefresh());
+        assertEquals(-1, HttpConfig.fromMap(Collections.emptyMap()).getTopicsMetadataRefresh());
+    }
+}
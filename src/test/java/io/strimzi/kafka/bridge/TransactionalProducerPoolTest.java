@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(VertxExtension.class)
+class TransactionalProducerPoolTest {
+
+    private static Properties props() {
+        return props(200);
+    }
+
+    private static Properties props(long maxBlockMs) {
+        Properties props = new Properties();
+        // no broker listening, so initializing the transactions times out
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9");
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, String.valueOf(maxBlockMs));
+        return props;
+    }
+
+    @Test
+    void disabled(Vertx vertx, VertxTestContext context) {
+        TransactionalProducerPool<byte[], byte[]> pool = new TransactionalProducerPool<>(vertx, "test", 0, 1, 1000);
+        assertFalse(pool.isEnabled());
+
+        pool.acquire(props(), new ByteArraySerializer(), new ByteArraySerializer(), leased -> {
+            context.verify(() -> assertTrue(leased.failed()));
+            context.completeNow();
+        });
+    }
+
+    @Test
+    void failedCreationFreesProducer(Vertx vertx, VertxTestContext context) {
+        TransactionalProducerPool<byte[], byte[]> pool = new TransactionalProducerPool<>(vertx, "test", 1, 1, 1000);
+        assertTrue(pool.isEnabled());
+
+        pool.acquire(props(), new ByteArraySerializer(), new ByteArraySerializer(), first -> {
+            context.verify(() -> {
+                assertTrue(first.failed());
+                assertEquals(0, pool.size());
+            });
+            // the producer which failed to be created doesn't take a place in the pool
+            pool.acquire(props(), new ByteArraySerializer(), new ByteArraySerializer(), second -> {
+                context.verify(() -> assertTrue(second.failed()));
+                pool.close();
+                context.completeNow();
+            });
+        });
+    }
+
+    @Test
+    void tooManyWaiting(Vertx vertx, VertxTestContext context) {
+        TransactionalProducerPool<byte[], byte[]> pool = new TransactionalProducerPool<>(vertx, "test", 1, 0, 1000);
+
+        // the only producer is being created, so nothing else can wait for it
+        pool.acquire(props(2000), new ByteArraySerializer(), new ByteArraySerializer(), first -> { });
+        pool.acquire(props(2000), new ByteArraySerializer(), new ByteArraySerializer(), second -> {
+            context.verify(() -> {
+                assertTrue(second.failed());
+                assertTrue(second.cause() instanceof TransactionalProducersBusyException);
+                assertEquals(1000, ((TransactionalProducersBusyException) second.cause()).getRetryAfterMs());
+            });
+            pool.close();
+            context.completeNow();
+        });
+    }
+
+    @Test
+    void waitTimeout(Vertx vertx, VertxTestContext context) {
+        TransactionalProducerPool<byte[], byte[]> pool = new TransactionalProducerPool<>(vertx, "test", 1, 1, 100);
+
+        // the only producer is being created for longer than the lease can wait
+        pool.acquire(props(2000), new ByteArraySerializer(), new ByteArraySerializer(), first -> { });
+        pool.acquire(props(2000), new ByteArraySerializer(), new ByteArraySerializer(), second -> {
+            context.verify(() -> {
+                assertTrue(second.failed());
+                assertTrue(second.cause() instanceof TransactionalProducersBusyException);
+            });
+            pool.close();
+            context.completeNow();
+        });
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.converter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AvroSchemaTest {
+
+    private static JsonNode json(String json) throws IOException {
+        return Json.mapper.readTree(json);
+    }
+
+    @Test
+    void primitives() throws IOException {
+        assertArrayEquals(new byte[] {0x00}, AvroSchema.parse("\"int\"").encode(json("0")));
+        assertArrayEquals(new byte[] {0x01}, AvroSchema.parse("\"int\"").encode(json("-1")));
+        assertArrayEquals(new byte[] {(byte) 0x80, 0x01}, AvroSchema.parse("\"long\"").encode(json("64")));
+        assertArrayEquals(new byte[] {0x06, 'f', 'o', 'o'}, AvroSchema.parse("\"string\"").encode(json("\"foo\"")));
+        assertArrayEquals(new byte[] {0x01}, AvroSchema.parse("{\"type\": \"boolean\"}").encode(json("true")));
+        assertArrayEquals(new byte[0], AvroSchema.parse("\"null\"").encode(null));
+
+        AvroSchema schema = AvroSchema.parse("\"double\"");
+        assertEquals(1.5, schema.decode(schema.encode(json("1.5"))));
+        assertEquals(Long.MIN_VALUE, AvroSchema.parse("\"long\"").decode(AvroSchema.parse("\"long\"").encode(json(String.valueOf(Long.MIN_VALUE)))));
+    }
+
+    @Test
+    void record() throws IOException {
+        AvroSchema schema = AvroSchema.parse("{\"type\": \"record\", \"name\": \"test\", \"fields\": ["
+                + "{\"name\": \"a\", \"type\": \"long\"},"
+                + "{\"name\": \"b\", \"type\": \"string\"}]}");
+
+        // example from the Avro specification
+        byte[] data = schema.encode(json("{\"a\": 27, \"b\": \"foo\"}"));
+        assertArrayEquals(new byte[] {0x36, 0x06, 'f', 'o', 'o'}, data);
+        assertEquals(new JsonObject().put("a", 27L).put("b", "foo"), schema.decode(data));
+    }
+
+    @Test
+    void complexTypes() throws IOException {
+        AvroSchema schema = AvroSchema.parse("{\"type\": \"record\", \"name\": \"Node\", \"namespace\": \"io.strimzi\", \"fields\": ["
+                + "{\"name\": \"kind\", \"type\": {\"type\": \"enum\", \"name\": \"Kind\", \"symbols\": [\"LEAF\", \"BRANCH\"]}},"
+                + "{\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},"
+                + "{\"name\": \"attributes\", \"type\": {\"type\": \"map\", \"values\": \"int\"}, \"default\": {}},"
+                + "{\"name\": \"id\", \"type\": {\"type\": \"fixed\", \"name\": \"Id\", \"size\": 2}},"
+                + "{\"name\": \"next\", \"type\": [\"null\", \"Node\"], \"default\": null}]}");
+
+        JsonObject leaf = new JsonObject()
+                .put("kind", "LEAF")
+                .put("tags", new JsonArray())
+                .put("attributes", new JsonObject())
+                .put("id", "\u0000ÿ")
+                .putNull("next");
+        JsonObject branch = new JsonObject()
+                .put("kind", "BRANCH")
+                .put("tags", new JsonArray().add("a").add("b"))
+                .put("attributes", new JsonObject().put("weight", 3))
+                .put("id", "ab")
+                .put("next", leaf);
+
+        assertEquals(branch, schema.decode(schema.encode(json(branch.encode()))));
+
+        // missing fields with a default value, and union values wrapped with the type name
+        JsonObject decoded = (JsonObject) schema.decode(schema.encode(json(
+                "{\"kind\": \"LEAF\", \"tags\": [], \"id\": \"xy\", \"next\": {\"io.strimzi.Node\": " + leaf.encode() + "}}")));
+        assertEquals(new JsonObject(), decoded.getJsonObject("attributes"));
+        assertEquals(leaf, decoded.getJsonObject("next"));
+    }
+
+    @Test
+    void unions() throws IOException {
+        AvroSchema schema = AvroSchema.parse("[\"null\", \"long\", \"string\"]");
+
+        assertArrayEquals(new byte[] {0x00}, schema.encode(json("null")));
+        assertArrayEquals(new byte[] {0x02, 0x02}, schema.encode(json("1")));
+        assertArrayEquals(new byte[] {0x04, 0x02, 'a'}, schema.encode(json("\"a\"")));
+        assertArrayEquals(new byte[] {0x04, 0x02, 'a'}, schema.encode(json("{\"string\": \"a\"}")));
+        assertNull(schema.decode(new byte[] {0x00}));
+
+        // out of range branch index, then symbol index
+        assertThrows(IllegalArgumentException.class, () -> schema.decode(new byte[] {0x06}));
+        assertThrows(IllegalArgumentException.class, () -> schema.decode(new byte[] {0x01}));
+        AvroSchema enumSchema = AvroSchema.parse("{\"type\": \"enum\", \"name\": \"Kind\", \"symbols\": [\"A\", \"B\"]}");
+        assertEquals("B", enumSchema.decode(new byte[] {0x02}));
+        assertThrows(IllegalArgumentException.class, () -> enumSchema.decode(new byte[] {0x04}));
+    }
+
+    @Test
+    void invalid() throws IOException {
+        AvroSchema schema = AvroSchema.parse("{\"type\": \"record\", \"name\": \"test\", \"fields\": ["
+                + "{\"name\": \"a\", \"type\": \"int\"}]}");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> schema.encode(json("{\"a\": \"foo\"}")));
+        assertEquals("Value at /a is not a valid Avro int", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> schema.encode(json("{}")));
+        assertThrows(IllegalArgumentException.class, () -> schema.decode(new byte[] {0x02, 0x02}));
+        assertThrows(IllegalArgumentException.class, () -> schema.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> AvroSchema.parse("\"unknown\""));
+    }
+}
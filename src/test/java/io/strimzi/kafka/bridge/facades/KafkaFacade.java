@@ -39,6 +39,9 @@ public class KafkaFacade {
 
         Properties props = new Properties();
         props.put("auto.create.topics.enable", "false");
+        // single broker, for running transactions
+        props.put("transaction.state.log.replication.factor", "1");
+        props.put("transaction.state.log.min.isr", "1");
 
         kafkaCluster =
             new KafkaCluster()
@@ -397,6 +397,48 @@ public class ConsumerTest extends HttpBridgeTestBase {
         assertTrue(context.awaitCompletion(TEST_TIMEOUT, TimeUnit.SECONDS));
     }
 
+    @Test
+    void receiveSimpleMessageLongPoll(VertxTestContext context) throws InterruptedException, ExecutionException, TimeoutException {
+        String topic = "receiveSimpleMessageLongPoll";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        String sentBody = "Simple message";
+
+        // create consumer
+        // subscribe to a topic
+        consumerService()
+                .createConsumer(context, groupId, consumerJson)
+                .subscribeConsumer(context, groupId, name, topic);
+
+        CompletableFuture<Boolean> consume = new CompletableFuture<>();
+        // consume records, the request is held until the record is sent
+        consumerService()
+            .consumeRecordsRequest(groupId, name, BridgeContentType.KAFKA_JSON_JSON)
+            .addQueryParam("max_wait_ms", "20000")
+            .as(BodyCodec.jsonArray())
+            .send(ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    HttpResponse<JsonArray> response = ar.result();
+                    assertEquals(HttpResponseStatus.OK.code(), response.statusCode());
+                    assertEquals(1, response.body().size());
+                    assertEquals(sentBody, response.body().getJsonObject(0).getString("value"));
+                });
+                consume.complete(true);
+            });
+
+        Thread.sleep(2000);
+        kafkaCluster.produce(topic, sentBody, 1, 0);
+
+        consume.get(TEST_TIMEOUT, TimeUnit.SECONDS);
+
+        // consumer deletion
+        consumerService()
+            .deleteConsumer(context, groupId, name);
+        context.completeNow();
+        assertTrue(context.awaitCompletion(TEST_TIMEOUT, TimeUnit.SECONDS));
+    }
+
     @Test
     void receiveBinaryMessage(VertxTestContext context) throws InterruptedException, ExecutionException, TimeoutException {
         String topic = "receiveBinaryMessage";
@@ -44,6 +44,7 @@ class HttpBridgeTestBase {
         config.put(KafkaProducerConfig.KAFKA_PRODUCER_CONFIG_PREFIX + ProducerConfig.MAX_BLOCK_MS_CONFIG, "10000");
         config.put(HttpConfig.HTTP_CONSUMER_TIMEOUT, timeout);
         config.put(BridgeConfig.BRIDGE_ID, "my-bridge");
+        config.put(HttpConfig.HTTP_PRODUCER_TRANSACTIONAL_POOL_SIZE, 2);
     }
 
     // for periodic/multiple messages test
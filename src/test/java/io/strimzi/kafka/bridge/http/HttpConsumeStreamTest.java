@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.strimzi.kafka.bridge.http.converter.HttpBinaryMessageConverter;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.kafka.client.common.TopicPartition;
+import io.vertx.kafka.client.consumer.impl.KafkaConsumerRecordImpl;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HttpConsumeStreamTest {
+
+    private final List<Boolean> flowControl = new ArrayList<>();
+    private final List<Buffer> written = new ArrayList<>();
+    private boolean closed;
+    private HttpServerResponse response;
+    private HttpConsumeStream<byte[], byte[]> stream;
+
+    @BeforeEach
+    void start() {
+        RoutingContext routingContext = mock(RoutingContext.class);
+        this.response = mock(HttpServerResponse.class, Answers.RETURNS_SELF);
+        when(routingContext.response()).thenReturn(this.response);
+        when(this.response.write(any(Buffer.class))).then(invocation -> {
+            this.written.add(invocation.getArgument(0));
+            return this.response;
+        });
+
+        this.stream = new HttpConsumeStream<>(mock(Vertx.class), routingContext, new HttpBinaryMessageConverter(),
+            this.flowControl::add, v -> this.closed = true);
+        this.stream.start();
+        // the keep alive comment sent right away
+        this.written.clear();
+    }
+
+    private void push(int partition, long offset) {
+        this.stream.handle(new KafkaConsumerRecordImpl<>(new ConsumerRecord<>("topic", partition, offset, null, new byte[] {1})));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pausedUntilDrained() {
+        this.push(0, 0);
+        assertTrue(this.flowControl.isEmpty());
+
+        when(this.response.writeQueueFull()).thenReturn(true);
+        this.push(0, 1);
+        this.push(0, 2);
+        // records already fetched are still written, the consumer is paused once
+        assertEquals(3, this.written.size());
+        assertEquals(Collections.singletonList(false), this.flowControl);
+
+        ArgumentCaptor<Handler<Void>> drainHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(this.response).drainHandler(drainHandler.capture());
+        drainHandler.getValue().handle(null);
+        drainHandler.getValue().handle(null);
+        assertEquals(2, this.flowControl.size());
+        assertTrue(this.flowControl.get(1));
+    }
+
+    @Test
+    void deliveredOffsets() {
+        this.push(0, 10);
+        this.push(1, 3);
+        this.push(0, 11);
+
+        assertEquals(12, this.stream.delivered().get(new TopicPartition("topic", 0)).getOffset());
+        assertEquals(4, this.stream.delivered().get(new TopicPartition("topic", 1)).getOffset());
+
+        this.stream.reset(Collections.singleton(new TopicPartition("topic", 0)));
+        assertNull(this.stream.delivered().get(new TopicPartition("topic", 0)));
+        assertEquals(1, this.stream.delivered().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void closedByClient() {
+        ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(this.response).closeHandler(closeHandler.capture());
+        closeHandler.getValue().handle(null);
+        assertTrue(this.closed);
+
+        this.push(0, 0);
+        assertTrue(this.written.isEmpty());
+        this.stream.end();
+        verify(this.response, times(0)).end();
+    }
+}
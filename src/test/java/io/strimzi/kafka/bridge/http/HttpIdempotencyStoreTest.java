@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpIdempotencyStoreTest {
+
+    private static Buffer response() {
+        return Buffer.buffer("{\"offsets\":[{\"partition\":0,\"offset\":10}]}");
+    }
+
+    @Test
+    void pendingAndCompleted() {
+        HttpIdempotencyStore store = new HttpIdempotencyStore(10, 60000);
+        store.create("key", "fingerprint");
+
+        HttpIdempotencyStore.Entry entry = store.get("key");
+        assertEquals("fingerprint", entry.getFingerprint());
+        assertFalse(entry.isCompleted());
+
+        store.complete("key", 200, response());
+
+        assertTrue(entry.isCompleted());
+        assertEquals(200, entry.getStatusCode());
+        assertEquals(response(), entry.getBody());
+        assertNull(store.get("unknown"));
+    }
+
+    @Test
+    void removedForRetry() {
+        HttpIdempotencyStore store = new HttpIdempotencyStore(10, 60000);
+        store.create("key", "fingerprint");
+        store.remove("key");
+
+        assertNull(store.get("key"));
+        // completing a removed entry doesn't record anything
+        store.complete("key", 200, response());
+        assertNull(store.get("key"));
+    }
+
+    @Test
+    void oldestEvictedWhenFull() {
+        HttpIdempotencyStore store = new HttpIdempotencyStore(2, 60000);
+        store.create("first", "fingerprint");
+        store.create("second", "fingerprint");
+        store.create("third", "fingerprint");
+
+        assertEquals(2, store.size());
+        assertNull(store.get("first"));
+    }
+
+    @Test
+    void completedExpired() {
+        HttpIdempotencyStore store = new HttpIdempotencyStore(10, 0);
+        store.create("completed", "fingerprint");
+        store.complete("completed", 200, response());
+
+        assertEquals(1, store.expire());
+        assertNull(store.get("completed"));
+    }
+
+    @Test
+    void pendingExpired() {
+        HttpIdempotencyStore store = new HttpIdempotencyStore(10, 0);
+        store.create("pending", "fingerprint");
+        assertEquals(1, store.expire());
+        assertNull(store.get("pending"));
+
+        store = new HttpIdempotencyStore(10, 60000);
+        store.create("pending", "fingerprint");
+        assertEquals(0, store.expire());
+        assertFalse(store.get("pending").isCompleted());
+    }
+}
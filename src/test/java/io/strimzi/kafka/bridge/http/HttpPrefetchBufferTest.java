@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.kafka.client.common.TopicPartition;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
+import io.vertx.kafka.client.consumer.impl.KafkaConsumerRecordsImpl;
+import io.vertx.junit5.VertxExtension;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(VertxExtension.class)
+class HttpPrefetchBufferTest {
+
+    // handler of the poll in flight, completed by the tests
+    private final AtomicReference<Handler<AsyncResult<KafkaConsumerRecords<String, String>>>> polling = new AtomicReference<>();
+
+    private HttpPrefetchBuffer<String, String> buffer(Vertx vertx, int maxRecords, long maxBytes) {
+        return new HttpPrefetchBuffer<>(vertx, maxRecords, maxBytes, this.polling::set);
+    }
+
+    private void polled(int partition, long... offsets) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (long offset : offsets) {
+            records.add(new ConsumerRecord<>("topic", partition, offset, 0L, TimestampType.CREATE_TIME, 0L, 3, 5, "key", "value"));
+        }
+        this.polling.getAndSet(null).handle(Future.succeededFuture(new KafkaConsumerRecordsImpl<>(new ConsumerRecords<>(
+                Collections.singletonMap(new org.apache.kafka.common.TopicPartition("topic", partition), records)))));
+    }
+
+    private static KafkaConsumerRecords<String, String> take(HttpPrefetchBuffer<String, String> buffer) {
+        AtomicReference<AsyncResult<KafkaConsumerRecords<String, String>>> taken = new AtomicReference<>();
+        buffer.take(0, taken::set);
+        return taken.get().result();
+    }
+
+    @Test
+    void recordsTakenFromBuffer(Vertx vertx) {
+        HttpPrefetchBuffer<String, String> buffer = buffer(vertx, 10, 1024);
+
+        // polling starts with the first poll request
+        assertNull(this.polling.get());
+        assertTrue(take(buffer).isEmpty());
+        assertNotNull(this.polling.get());
+
+        this.polled(0, 10, 11);
+        this.polled(1, 5);
+        assertEquals(3, buffer.size());
+        assertNotNull(this.polling.get());
+
+        KafkaConsumerRecords<String, String> records = take(buffer);
+        assertEquals(3, records.size());
+        assertEquals(0, buffer.size());
+        assertEquals(12, buffer.delivered().get(new TopicPartition("topic", 0)).getOffset());
+        assertEquals(6, buffer.delivered().get(new TopicPartition("topic", 1)).getOffset());
+    }
+
+    @Test
+    void pausedAtMaxRecords(Vertx vertx) {
+        HttpPrefetchBuffer<String, String> buffer = buffer(vertx, 2, 1024);
+        take(buffer);
+
+        this.polled(0, 0, 1, 2);
+        assertNull(this.polling.get());
+
+        assertEquals(3, take(buffer).size());
+        assertNotNull(this.polling.get());
+    }
+
+    @Test
+    void pausedAtMaxBytes(Vertx vertx) {
+        // each record is 8 bytes, key and value
+        HttpPrefetchBuffer<String, String> buffer = buffer(vertx, 10, 16);
+        take(buffer);
+
+        this.polled(0, 0);
+        assertNotNull(this.polling.get());
+        this.polled(0, 1);
+        assertNull(this.polling.get());
+    }
+
+    @Test
+    void recordsPutBack(Vertx vertx) {
+        HttpPrefetchBuffer<String, String> buffer = buffer(vertx, 10, 1024);
+        take(buffer);
+        this.polled(0, 10, 11, 12);
+        this.polled(1, 5);
+
+        // the last two records didn't fit in the response
+        KafkaConsumerRecords<String, String> records = take(buffer);
+        buffer.putBack(records, 2);
+        assertEquals(2, buffer.size());
+        assertEquals(12, buffer.delivered().get(new TopicPartition("topic", 0)).getOffset());
+        assertEquals(5, buffer.delivered().get(new TopicPartition("topic", 1)).getOffset());
+
+        records = take(buffer);
+        assertEquals(12, records.recordAt(0).offset());
+        assertEquals(5, records.recordAt(1).offset());
+        assertEquals(13, buffer.delivered().get(new TopicPartition("topic", 0)).getOffset());
+        assertEquals(6, buffer.delivered().get(new TopicPartition("topic", 1)).getOffset());
+    }
+
+    @Test
+    void waitingPollRequest(Vertx vertx) {
+        HttpPrefetchBuffer<String, String> buffer = buffer(vertx, 10, 1024);
+        AtomicReference<AsyncResult<KafkaConsumerRecords<String, String>>> taken = new AtomicReference<>();
+        buffer.take(60000, taken::set);
+        assertNull(taken.get());
+
+        this.polled(0, 0);
+        assertEquals(1, taken.get().result().size());
+    }
+
+    @Test
+    void pollFailure(Vertx vertx) {
+        HttpPrefetchBuffer<String, String> buffer = buffer(vertx, 10, 1024);
+        take(buffer);
+
+        this.polling.getAndSet(null).handle(Future.failedFuture(new IllegalStateException("not subscribed")));
+        assertNull(this.polling.get());
+
+        AtomicReference<AsyncResult<KafkaConsumerRecords<String, String>>> taken = new AtomicReference<>();
+        buffer.take(0, taken::set);
+        assertEquals("not subscribed", taken.get().cause().getMessage());
+    }
+
+    @Test
+    void resetAndStop(Vertx vertx) {
+        HttpPrefetchBuffer<String, String> buffer = buffer(vertx, 10, 1024);
+        take(buffer);
+        this.polled(0, 0, 1);
+        this.polled(1, 0);
+        take(buffer);
+        this.polled(0, 2);
+        this.polled(1, 1);
+
+        buffer.reset(Collections.singleton(new TopicPartition("topic", 0)));
+        assertEquals(1, buffer.size());
+        assertNull(buffer.delivered().get(new TopicPartition("topic", 0)));
+
+        // the buffered records and the ones of the poll in flight are handed over
+        List<KafkaConsumerRecord<String, String>> handed = new ArrayList<>();
+        buffer.stop(handed::add);
+        this.polled(1, 2);
+        assertEquals(2, handed.size());
+        assertEquals(2, handed.get(1).offset());
+        assertNull(this.polling.get());
+    }
+}
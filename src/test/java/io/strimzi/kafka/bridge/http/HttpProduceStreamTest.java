@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.strimzi.kafka.bridge.ProducerAdmissionController;
+import io.strimzi.kafka.bridge.http.converter.HttpJsonMessageConverter;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+import io.vertx.kafka.client.producer.RecordMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HttpProduceStreamTest {
+
+    private final List<KafkaProducerRecord<byte[], byte[]>> sent = new ArrayList<>();
+    private final List<JsonObject> results = new ArrayList<>();
+    private Handler<Buffer> chunks;
+    private Handler<Void> end;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void start() {
+        RoutingContext routingContext = mock(RoutingContext.class);
+        HttpServerRequest request = mock(HttpServerRequest.class, Answers.RETURNS_SELF);
+        HttpServerResponse response = mock(HttpServerResponse.class, Answers.RETURNS_SELF);
+        when(routingContext.request()).thenReturn(request);
+        when(routingContext.response()).thenReturn(response);
+        when(response.write(any(Buffer.class))).then(invocation -> {
+            this.results.add(new JsonObject(invocation.<Buffer>getArgument(0).toString().trim()));
+            return response;
+        });
+
+        new HttpProduceStream<>(routingContext, new HttpJsonMessageConverter(), "topic",
+            (record, handler) -> {
+                this.sent.add(record);
+                handler.handle(Future.succeededFuture(new RecordMetadata(0, this.sent.size() - 1, 0, 0, "topic")));
+            },
+            t -> 500, new ProducerAdmissionController(-1, -1, -1, -1, -1), 20)
+            .start();
+
+        ArgumentCaptor<Handler<Buffer>> chunkHandler = ArgumentCaptor.forClass(Handler.class);
+        ArgumentCaptor<Handler<Void>> endHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(request).handler(chunkHandler.capture());
+        verify(request).endHandler(endHandler.capture());
+        this.chunks = chunkHandler.getValue();
+        this.end = endHandler.getValue();
+    }
+
+    @Test
+    void recordsSplitAcrossChunks() {
+        this.chunks.handle(Buffer.buffer("{\"value\":1}\n{\"val"));
+        this.chunks.handle(Buffer.buffer("ue\":"));
+        this.chunks.handle(Buffer.buffer("2}\r\n\n{\"value\":3}"));
+        assertEquals(2, this.sent.size());
+
+        // the last record doesn't need the delimiter
+        this.end.handle(null);
+        assertEquals(3, this.sent.size());
+        assertEquals("2", new String(this.sent.get(1).value()));
+        assertEquals(3, this.results.size());
+        assertEquals(2L, this.results.get(2).getLong("offset").longValue());
+    }
+
+    @Test
+    void recordOverMaximumSize() {
+        // the first record goes over the maximum size across chunks, it's skipped up to the delimiter
+        this.chunks.handle(Buffer.buffer("{\"value\":\"0123456789"));
+        this.chunks.handle(Buffer.buffer("0123456789\"}"));
+        this.chunks.handle(Buffer.buffer("still skipped\n{\"value\":1}\n"));
+        this.chunks.handle(Buffer.buffer("{\"value\":\"0123456789012345\"}\n"));
+        this.end.handle(null);
+
+        assertEquals(1, this.sent.size());
+        assertEquals(3, this.results.size());
+        assertEquals(413, this.results.get(0).getInteger("error_code").intValue());
+        assertEquals(0L, this.results.get(1).getLong("offset").longValue());
+        assertEquals(413, this.results.get(2).getInteger("error_code").intValue());
+    }
+}
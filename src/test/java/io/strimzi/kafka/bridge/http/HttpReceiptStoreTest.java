@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(VertxExtension.class)
+class HttpReceiptStoreTest {
+
+    private static JsonObject offsets() {
+        return new JsonObject().put("offsets", new JsonArray().add(new JsonObject().put("partition", 0).put("offset", 10L)));
+    }
+
+    private static JsonObject receipt(HttpReceiptStore store, String batchId) {
+        AtomicReference<JsonObject> receipt = new AtomicReference<>();
+        store.await(batchId, 0, receipt::set);
+        return receipt.get();
+    }
+
+    @Test
+    void pendingAndCompleted(Vertx vertx) {
+        HttpReceiptStore store = new HttpReceiptStore(vertx, 10, 60000);
+        String batchId = store.create();
+
+        assertEquals("pending", receipt(store, batchId).getString("status"));
+        assertNull(receipt(store, batchId).getJsonArray("offsets"));
+
+        store.complete(batchId, offsets());
+
+        JsonObject receipt = receipt(store, batchId);
+        assertEquals(batchId, receipt.getString("batch_id"));
+        assertEquals("completed", receipt.getString("status"));
+        assertEquals(offsets().getJsonArray("offsets"), receipt.getJsonArray("offsets"));
+        assertNull(receipt(store, "unknown"));
+    }
+
+    @Test
+    void oldestEvictedWhenFull(Vertx vertx) {
+        HttpReceiptStore store = new HttpReceiptStore(vertx, 2, 60000);
+        String first = store.create();
+        store.create();
+        store.create();
+
+        assertEquals(2, store.size());
+        assertNull(receipt(store, first));
+    }
+
+    @Test
+    void completedExpired(Vertx vertx) {
+        HttpReceiptStore store = new HttpReceiptStore(vertx, 10, 0);
+        String completed = store.create();
+        String pending = store.create();
+        store.complete(completed, offsets());
+
+        assertEquals(1, store.expire());
+        assertNull(receipt(store, completed));
+        assertEquals("pending", receipt(store, pending).getString("status"));
+    }
+
+    @Test
+    void awaitCompletion(Vertx vertx, VertxTestContext context) {
+        HttpReceiptStore store = new HttpReceiptStore(vertx, 10, 60000);
+        String batchId = store.create();
+
+        store.await(batchId, 60000, receipt -> {
+            context.verify(() -> assertEquals("completed", receipt.getString("status")));
+            context.completeNow();
+        });
+        store.complete(batchId, offsets());
+    }
+
+    @Test
+    void awaitTimeout(Vertx vertx, VertxTestContext context) {
+        HttpReceiptStore store = new HttpReceiptStore(vertx, 10, 60000);
+        String batchId = store.create();
+
+        store.await(batchId, 100, receipt -> {
+            context.verify(() -> assertEquals("pending", receipt.getString("status")));
+            // completing after the timeout doesn't call the handler again
+            store.complete(batchId, offsets());
+            context.completeNow();
+        });
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.strimzi.kafka.bridge.config.BridgeConfig;
+import io.strimzi.kafka.bridge.config.KafkaConfig;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonObject;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HttpWebSocketConnectionTest {
+
+    private Vertx vertx;
+    private ServerWebSocket webSocket;
+    private Handler<WebSocketFrame> frameHandler;
+    private Handler<Void> closeHandler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void accept() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(KafkaConfig.KAFKA_CONFIG_PREFIX + ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        config.put(HttpConfig.HTTP_WEBSOCKET_MAX_MESSAGE_SIZE, 128);
+        BridgeConfig bridgeConfig = BridgeConfig.fromMap(config);
+
+        this.vertx = Vertx.vertx();
+        this.webSocket = mock(ServerWebSocket.class);
+        when(this.webSocket.path()).thenReturn(HttpWebSocketConnection.PATH);
+        when(this.webSocket.uri()).thenReturn(HttpWebSocketConnection.PATH + "?format=json");
+        HttpWebSocketConnection.accept(this.vertx, bridgeConfig, new HttpBridgeContext<>(this.vertx, bridgeConfig.getHttpConfig()), this.webSocket);
+
+        ArgumentCaptor<Handler<WebSocketFrame>> frameHandler = ArgumentCaptor.forClass(Handler.class);
+        ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(this.webSocket).frameHandler(frameHandler.capture());
+        verify(this.webSocket).closeHandler(closeHandler.capture());
+        this.frameHandler = frameHandler.getValue();
+        this.closeHandler = closeHandler.getValue();
+    }
+
+    @AfterEach
+    void close() {
+        this.closeHandler.handle(null);
+        this.vertx.close();
+    }
+
+    private void frame(String data, boolean first, boolean last) {
+        WebSocketFrame frame = mock(WebSocketFrame.class);
+        when(frame.isText()).thenReturn(first);
+        when(frame.isContinuation()).thenReturn(!first);
+        when(frame.isFinal()).thenReturn(last);
+        when(frame.binaryData()).thenReturn(Buffer.buffer(data));
+        this.frameHandler.handle(frame);
+    }
+
+    private List<JsonObject> replies(int count) {
+        ArgumentCaptor<String> replies = ArgumentCaptor.forClass(String.class);
+        verify(this.webSocket, timeout(5000).times(count)).writeTextMessage(replies.capture());
+        return replies.getAllValues().stream().map(JsonObject::new).collect(Collectors.toList());
+    }
+
+    @Test
+    void messageAggregatedFromFrames() {
+        this.frame("{\"type\":\"cre", true, false);
+        this.frame("dit\",\"id\":1,", false, false);
+        verify(this.webSocket, times(0)).writeTextMessage(anyString());
+        this.frame("\"credit\":0}", false, true);
+
+        JsonObject reply = this.replies(1).get(0);
+        assertEquals(HttpWebSocketConnection.ERROR, reply.getString("type"));
+        assertEquals(422, reply.getInteger("error_code").intValue());
+        assertEquals(1, reply.getInteger("id").intValue());
+    }
+
+    @Test
+    void messageTooBig() {
+        this.frame("{\"type\":\"send\",\"records\":[", true, false);
+        this.frame("{\"value\":\"01234567890123456789012345678901234567890123456789012345678901234567890123456789012345678901234567890123456789\"}]}", false, true);
+
+        verify(this.webSocket).close((short) 1009, "Message too big");
+    }
+
+    @Test
+    void invalidMessages() {
+        this.frame("{\"type\":", true, true);
+        this.frame("{\"type\":\"unknown\"}", true, true);
+        this.frame("{\"type\":\"commit\",\"id\":\"c\"}", true, true);
+        this.frame("{\"type\":\"subscribe\",\"topics\":[\"topic\"]}", true, true);
+
+        List<JsonObject> replies = this.replies(4);
+        assertEquals(400, replies.get(0).getInteger("error_code").intValue());
+        assertEquals(400, replies.get(1).getInteger("error_code").intValue());
+        // not subscribed yet
+        assertEquals(404, replies.get(2).getInteger("error_code").intValue());
+        assertEquals("c", replies.get(2).getString("id"));
+        // missing group
+        assertEquals(422, replies.get(3).getInteger("error_code").intValue());
+    }
+
+    @Test
+    void subscribeAndCommit() {
+        // the "subscribed" reply comes once the Kafka subscription is done, it's not checked without a broker
+        this.frame("{\"type\":\"subscribe\",\"id\":1,\"group_id\":\"group\",\"topics\":[\"topic\"]}", true, true);
+        this.frame("{\"type\":\"subscribe\",\"id\":2,\"group_id\":\"group\",\"topics\":[\"topic\"]}", true, true);
+        // nothing pushed yet, so nothing to commit
+        this.frame("{\"type\":\"commit\",\"id\":3}", true, true);
+
+        ArgumentCaptor<String> replies = ArgumentCaptor.forClass(String.class);
+        verify(this.webSocket, timeout(5000).atLeast(2)).writeTextMessage(replies.capture());
+        Map<Integer, JsonObject> byId = replies.getAllValues().stream().map(JsonObject::new)
+                .collect(Collectors.toMap(reply -> reply.getInteger("id"), reply -> reply));
+        assertEquals(409, byId.get(2).getInteger("error_code").intValue());
+        assertEquals(HttpWebSocketConnection.COMMITTED, byId.get(3).getString("type"));
+    }
+}
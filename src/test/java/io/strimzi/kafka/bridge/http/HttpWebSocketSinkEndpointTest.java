@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http;
+
+import io.strimzi.kafka.bridge.EmbeddedFormat;
+import io.strimzi.kafka.bridge.SinkBridgeEndpoint;
+import io.strimzi.kafka.bridge.config.BridgeConfig;
+import io.strimzi.kafka.bridge.config.KafkaConfig;
+import io.strimzi.kafka.bridge.http.converter.HttpBinaryMessageConverter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.kafka.client.common.TopicPartition;
+import io.vertx.kafka.client.consumer.KafkaConsumer;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecord;
+import io.vertx.kafka.client.consumer.OffsetAndMetadata;
+import io.vertx.kafka.client.consumer.impl.KafkaConsumerRecordImpl;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HttpWebSocketSinkEndpointTest {
+
+    private Vertx vertx;
+    private ServerWebSocket webSocket;
+    private KafkaConsumer<byte[], byte[]> consumer;
+    private HttpWebSocketSinkEndpoint<byte[], byte[]> endpoint;
+    private long offset;
+
+    @BeforeEach
+    void start() throws Exception {
+        this.vertx = Vertx.vertx();
+        this.subscribe(new JsonObject());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void subscribe(JsonObject frame) throws Exception {
+        this.webSocket = mock(ServerWebSocket.class);
+        BridgeConfig bridgeConfig = BridgeConfig.fromMap(Collections.singletonMap(
+                KafkaConfig.KAFKA_CONFIG_PREFIX + ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092"));
+        this.endpoint = new HttpWebSocketSinkEndpoint<>(this.vertx, bridgeConfig, EmbeddedFormat.BINARY,
+                new HttpBinaryMessageConverter(), this.webSocket, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+        this.endpoint.subscribe(frame.put("group_id", "group").put("topics", new JsonArray().add("topic")), done -> { });
+
+        // the Kafka consumer is replaced by a mock, for checking the flow control
+        Field consumerField = SinkBridgeEndpoint.class.getDeclaredField("consumer");
+        consumerField.setAccessible(true);
+        ((KafkaConsumer<byte[], byte[]>) consumerField.get(this.endpoint)).close();
+        this.consumer = mock(KafkaConsumer.class);
+        consumerField.set(this.endpoint, this.consumer);
+    }
+
+    @AfterEach
+    void close() {
+        this.vertx.close();
+    }
+
+    private void received() throws Exception {
+        // simulate the Kafka consumer handing over a record
+        Method handler = SinkBridgeEndpoint.class.getDeclaredMethod("handleKafkaRecord", KafkaConsumerRecord.class);
+        handler.setAccessible(true);
+        handler.invoke(this.endpoint, new KafkaConsumerRecordImpl<>(new ConsumerRecord<>("topic", 0, this.offset++, null, new byte[] {1})));
+    }
+
+    @Test
+    void recordsPushedWithCredit() throws Exception {
+        this.endpoint.credit(2);
+        verify(this.consumer).resume();
+
+        this.received();
+        this.received();
+        verify(this.webSocket, times(2)).writeTextMessage(any());
+        // no credit left
+        verify(this.consumer).pause();
+
+        // records fetched before the consumer was paused wait for credit
+        this.received();
+        verify(this.webSocket, times(2)).writeTextMessage(any());
+        this.endpoint.credit(2);
+        verify(this.webSocket, times(3)).writeTextMessage(any());
+        verify(this.consumer, times(2)).resume();
+    }
+
+    @Test
+    void pausedWhileWriteQueueFull() throws Exception {
+        when(this.webSocket.writeQueueFull()).thenReturn(true);
+        this.endpoint.credit(10);
+        verify(this.consumer, never()).resume();
+
+        when(this.webSocket.writeQueueFull()).thenReturn(false);
+        this.endpoint.credit(1);
+        verify(this.consumer).resume();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pushedOffsetsCommitted() throws Exception {
+        this.endpoint.credit(1);
+        this.received();
+        this.received();
+
+        List<AsyncResult<Void>> committed = new ArrayList<>();
+        this.endpoint.commitConsumed(committed::add);
+        ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> offsets = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Handler<AsyncResult<Map<TopicPartition, OffsetAndMetadata>>>> handler = ArgumentCaptor.forClass(Handler.class);
+        verify(this.consumer).commit(offsets.capture(), handler.capture());
+
+        // the pending record isn't committed
+        assertEquals(1, offsets.getValue().get(new TopicPartition("topic", 0)).getOffset());
+        handler.getValue().handle(Future.succeededFuture(offsets.getValue()));
+        assertTrue(committed.get(0).succeeded());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pushedOffsetsCommittedOnClose() throws Exception {
+        // auto-commit is Kafka default, the endpoint does it in place of the consumer
+        this.endpoint.credit(1);
+        this.received();
+        this.received();
+        this.endpoint.close();
+
+        ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> offsets = ArgumentCaptor.forClass(Map.class);
+        verify(this.consumer).commit(offsets.capture(), any());
+        assertEquals(1, offsets.getValue().get(new TopicPartition("topic", 0)).getOffset());
+        verify(this.consumer).close();
+    }
+
+    @Test
+    void noAutoCommit() throws Exception {
+        this.endpoint.close();
+        this.subscribe(new JsonObject().put("enable.auto.commit", false));
+        this.endpoint.credit(1);
+        this.received();
+        this.endpoint.close();
+
+        verify(this.consumer, never()).commit(any(), any());
+        verify(this.consumer).close();
+    }
+}
@@ -11,6 +11,7 @@ import io.strimzi.kafka.bridge.http.model.HttpBridgeError;
 import io.strimzi.kafka.bridge.utils.KafkaJsonDeserializer;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.HttpResponse;
@@ -25,8 +26,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.DatatypeConverter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Properties;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -644,4 +651,362 @@ public class ProducerTest extends HttpBridgeTestBase {
                     context.completeNow();
                 });
     }
+
+    @Test
+    void sendStreamMessages(VertxTestContext context) {
+        String topic = "sendStreamMessages";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        Buffer body = Buffer.buffer()
+                .appendString(new JsonObject().put("value", "message-value-0").encode()).appendString("\n")
+                .appendString("{\"value\": [\"not closed\"\n")
+                .appendString(new JsonObject().put("key", "my-key").put("value", "message-value-1").encode());
+
+        producerService()
+            .sendRecordsStreamRequest(topic, "json")
+            .sendBuffer(body, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    HttpResponse<Buffer> response = ar.result();
+                    assertEquals(HttpResponseStatus.OK.code(), response.statusCode());
+                    assertEquals(BridgeContentType.NDJSON, response.getHeader(CONTENT_TYPE.toString()));
+
+                    String[] results = response.body().toString().split("\n");
+                    assertEquals(3, results.length);
+                    JsonObject metadata = new JsonObject(results[0]);
+                    assertEquals(0, metadata.getInteger("partition"));
+                    assertEquals(0L, metadata.getLong("offset"));
+                    HttpBridgeError error = HttpBridgeError.fromJson(new JsonObject(results[1]));
+                    assertEquals(HttpResponseStatus.UNPROCESSABLE_ENTITY.code(), error.getCode());
+                    metadata = new JsonObject(results[2]);
+                    assertEquals(0, metadata.getInteger("partition"));
+                    assertEquals(1L, metadata.getLong("offset"));
+                });
+                context.completeNow();
+            });
+    }
+
+    @Test
+    void sendRawMessage(VertxTestContext context) {
+        String topic = "sendRawMessage";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        byte[] value = new byte[] {0, 1, 2, 3, (byte) 0xfe, (byte) 0xff};
+        String key = "my-key";
+
+        producerService()
+            .sendRawRecordRequest(topic, key, Buffer.buffer(value))
+            .sendBuffer(Buffer.buffer(value), verifyOK(context));
+
+        Properties config = kafkaCluster.getConsumerProperties();
+
+        KafkaConsumer<String, byte[]> consumer = KafkaConsumer.create(vertx, config,
+                new StringDeserializer(), new ByteArrayDeserializer());
+        consumer.handler(record -> {
+            context.verify(() -> {
+                assertArrayEquals(value, record.value());
+                assertEquals(key, record.key());
+                assertEquals(topic, record.topic());
+                assertEquals(0, record.partition());
+                assertEquals(0L, record.offset());
+            });
+            LOGGER.info("Message consumed topic={} partition={} offset={}, key={}",
+                    record.topic(), record.partition(), record.offset(), record.key());
+            consumer.close();
+            context.completeNow();
+        });
+
+        consumer.subscribe(topic, done -> {
+            if (!done.succeeded()) {
+                context.failNow(done.cause());
+            }
+        });
+    }
+
+    @Test
+    void sendMessagesToTopics(VertxTestContext context) {
+        String topic1 = "sendMessagesToTopics1";
+        String topic2 = "sendMessagesToTopics2";
+        kafkaCluster.createTopic(topic1, 1, 1);
+        kafkaCluster.createTopic(topic2, 2, 1);
+
+        JsonArray records = new JsonArray();
+        records.add(new JsonObject().put("topic", topic1).put("value", "value1"));
+        records.add(new JsonObject().put("topic", topic2).put("value", "value2").put("partition", 1));
+
+        JsonObject root = new JsonObject();
+        root.put("records", records);
+
+        producerService()
+            .sendRecordsToTopicsRequest(root, BridgeContentType.KAFKA_JSON_JSON)
+            .sendJsonObject(root, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    HttpResponse<JsonObject> response = ar.result();
+                    assertEquals(HttpResponseStatus.OK.code(), response.statusCode());
+                    JsonArray offsets = response.body().getJsonArray("offsets");
+                    assertEquals(2, offsets.size());
+                    assertEquals(0, offsets.getJsonObject(0).getInteger("partition"));
+                    assertEquals(0L, offsets.getJsonObject(0).getLong("offset"));
+                    assertEquals(1, offsets.getJsonObject(1).getInteger("partition"));
+                    assertEquals(0L, offsets.getJsonObject(1).getLong("offset"));
+                });
+                context.completeNow();
+            });
+    }
+
+    @Test
+    void sendMessagesInTransaction(VertxTestContext context) {
+        String topic1 = "sendMessagesInTransaction1";
+        String topic2 = "sendMessagesInTransaction2";
+        kafkaCluster.createTopic(topic1, 1, 1);
+        kafkaCluster.createTopic(topic2, 1, 1);
+
+        JsonArray records = new JsonArray();
+        records.add(new JsonObject().put("topic", topic1).put("value", "value1"));
+        records.add(new JsonObject().put("topic", topic2).put("value", "value2"));
+
+        JsonObject root = new JsonObject();
+        root.put("records", records);
+
+        producerService()
+            .sendRecordsToTopicsRequest(root, BridgeContentType.KAFKA_JSON_JSON)
+            .addQueryParam("transactional", "true")
+            .sendJsonObject(root, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    HttpResponse<JsonObject> response = ar.result();
+                    assertEquals(HttpResponseStatus.OK.code(), response.statusCode());
+                    assertEquals("committed", response.body().getString("transaction"));
+                    JsonArray offsets = response.body().getJsonArray("offsets");
+                    assertEquals(2, offsets.size());
+                    assertEquals(0, offsets.getJsonObject(0).getInteger("partition"));
+                    assertEquals(0L, offsets.getJsonObject(0).getLong("offset"));
+                    assertEquals(0, offsets.getJsonObject(1).getInteger("partition"));
+                    assertEquals(0L, offsets.getJsonObject(1).getLong("offset"));
+                });
+                context.completeNow();
+            });
+    }
+
+    @Test
+    void sendToNonExistingTopicInTransaction(VertxTestContext context) {
+        String topic = "sendToNonExistingTopicInTransaction";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        JsonArray records = new JsonArray();
+        records.add(new JsonObject().put("topic", topic).put("value", "value1"));
+        records.add(new JsonObject().put("topic", topic + "-missing").put("value", "value2"));
+
+        JsonObject root = new JsonObject();
+        root.put("records", records);
+
+        producerService()
+            .sendRecordsToTopicsRequest(root, BridgeContentType.KAFKA_JSON_JSON)
+            .addQueryParam("transactional", "true")
+            .sendJsonObject(root, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    HttpResponse<JsonObject> response = ar.result();
+                    assertEquals(HttpResponseStatus.OK.code(), response.statusCode());
+                    assertEquals("aborted", response.body().getString("transaction"));
+                    JsonArray offsets = response.body().getJsonArray("offsets");
+                    assertEquals(2, offsets.size());
+                    // none of the records is written, so both get the error
+                    for (int i = 0; i < offsets.size(); i++) {
+                        HttpBridgeError error = HttpBridgeError.fromJson(offsets.getJsonObject(i));
+                        assertEquals(HttpResponseStatus.NOT_FOUND.code(), error.getCode());
+                        assertEquals("Topic " + topic + "-missing not present in metadata after " +
+                                config.get(KafkaProducerConfig.KAFKA_PRODUCER_CONFIG_PREFIX + ProducerConfig.MAX_BLOCK_MS_CONFIG) + " ms.",
+                                error.getMessage());
+                    }
+                });
+                context.completeNow();
+            });
+    }
+
+    @Test
+    void sendMessagesWithIdempotencyKey(VertxTestContext context) {
+        String topic = "sendMessagesWithIdempotencyKey";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        JsonArray records = new JsonArray();
+        records.add(new JsonObject().put("value", "value"));
+
+        JsonObject root = new JsonObject();
+        root.put("records", records);
+
+        String key = UUID.randomUUID().toString();
+        producerService()
+            .sendRecordsRequest(topic, root, BridgeContentType.KAFKA_JSON_JSON)
+            .putHeader("Idempotency-Key", key)
+            .sendJsonObject(root, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    assertEquals(HttpResponseStatus.OK.code(), ar.result().statusCode());
+                    assertNull(ar.result().getHeader("Idempotent-Replayed"));
+                });
+                // the retried request gets the same offsets, without writing the record again
+                producerService()
+                    .sendRecordsRequest(topic, root, BridgeContentType.KAFKA_JSON_JSON)
+                    .putHeader("Idempotency-Key", key)
+                    .sendJsonObject(root, retried -> {
+                        context.verify(() -> {
+                            assertTrue(retried.succeeded());
+                            assertEquals(HttpResponseStatus.OK.code(), retried.result().statusCode());
+                            assertEquals("true", retried.result().getHeader("Idempotent-Replayed"));
+                            assertEquals(ar.result().body(), retried.result().body());
+                            assertEquals(0L, retried.result().body().getJsonArray("offsets").getJsonObject(0).getLong("offset"));
+                        });
+                        context.completeNow();
+                    });
+            });
+    }
+
+    @Test
+    void sendMessagesWithSummary(VertxTestContext context) {
+        String topic = "sendMessagesWithSummary";
+        kafkaCluster.createTopic(topic, 2, 1);
+
+        JsonArray records = new JsonArray();
+        for (int i = 0; i < 10; i++) {
+            records.add(new JsonObject().put("value", "value-" + i).put("partition", i % 2));
+        }
+
+        JsonObject root = new JsonObject();
+        root.put("records", records);
+
+        producerService()
+            .sendRecordsRequest(topic, root, BridgeContentType.KAFKA_JSON_JSON)
+            .addQueryParam("summary", "true")
+            .sendJsonObject(root, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    HttpResponse<JsonObject> response = ar.result();
+                    assertEquals(HttpResponseStatus.OK.code(), response.statusCode());
+                    JsonArray partitions = response.body().getJsonArray("partitions");
+                    assertEquals(2, partitions.size());
+                    for (int i = 0; i < partitions.size(); i++) {
+                        JsonObject partition = partitions.getJsonObject(i);
+                        assertEquals(topic, partition.getString("topic"));
+                        assertEquals(i, partition.getInteger("partition"));
+                        assertEquals(0L, partition.getLong("first_offset"));
+                        assertEquals(4L, partition.getLong("last_offset"));
+                        assertEquals(5L, partition.getLong("count"));
+                    }
+                    assertTrue(response.body().getJsonArray("failed").isEmpty());
+                });
+                context.completeNow();
+            });
+    }
+
+    @Test
+    void sendGzipMessage(VertxTestContext context) throws IOException {
+        String topic = "sendGzipMessage";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        String value = "message-value";
+
+        JsonArray records = new JsonArray();
+        records.add(new JsonObject().put("value", value));
+
+        JsonObject root = new JsonObject();
+        root.put("records", records);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(root.toBuffer().getBytes());
+        }
+        Buffer body = Buffer.buffer(compressed.toByteArray());
+
+        producerService()
+            .sendEncodedRecordsRequest(topic, body, "gzip", BridgeContentType.KAFKA_JSON_JSON)
+            .sendBuffer(body, verifyOK(context));
+
+        Properties config = kafkaCluster.getConsumerProperties();
+
+        KafkaConsumer<String, String> consumer = KafkaConsumer.create(vertx, config,
+                new StringDeserializer(), new KafkaJsonDeserializer<>(String.class));
+        consumer.handler(record -> {
+            context.verify(() -> {
+                assertEquals(value, record.value());
+                assertEquals(topic, record.topic());
+                assertEquals(0, record.partition());
+                assertEquals(0L, record.offset());
+            });
+            LOGGER.info("Message consumed topic={} partition={} offset={}, key={}, value={}",
+                    record.topic(), record.partition(), record.offset(), record.key(), record.value());
+            consumer.close();
+            context.completeNow();
+        });
+
+        consumer.subscribe(topic, done -> {
+            if (!done.succeeded()) {
+                context.failNow(done.cause());
+            }
+        });
+    }
+
+    @Test
+    void sendUnsupportedEncodingMessage(VertxTestContext context) {
+        String topic = "sendUnsupportedEncodingMessage";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        Buffer body = Buffer.buffer(new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd});
+
+        producerService()
+            .sendEncodedRecordsRequest(topic, body, "zstd", BridgeContentType.KAFKA_JSON_JSON)
+            .sendBuffer(body, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    HttpResponse<JsonObject> response = ar.result();
+                    HttpBridgeError error = HttpBridgeError.fromJson(response.body());
+                    assertEquals(HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE.code(), response.statusCode());
+                    assertEquals(HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE.code(), error.getCode());
+                });
+                context.completeNow();
+            });
+    }
+
+    @Test
+    void sendAsyncMessage(VertxTestContext context) {
+        String topic = "sendAsyncMessage";
+        kafkaCluster.createTopic(topic, 1, 1);
+
+        JsonArray records = new JsonArray();
+        records.add(new JsonObject().put("value", "message-value"));
+
+        JsonObject root = new JsonObject();
+        root.put("records", records);
+
+        producerService()
+            .sendRecordsAsyncRequest(topic, root, BridgeContentType.KAFKA_JSON_JSON)
+            .sendJsonObject(root, ar -> {
+                context.verify(() -> {
+                    assertTrue(ar.succeeded());
+                    assertEquals(HttpResponseStatus.ACCEPTED.code(), ar.result().statusCode());
+                    assertNotNull(ar.result().body().getString("batch_id"));
+                });
+
+                String batchId = ar.result().body().getString("batch_id");
+                producerService()
+                    .receiptRequest(batchId, 10000)
+                    .send(receipt -> {
+                        context.verify(() -> {
+                            assertTrue(receipt.succeeded());
+                            JsonObject bridgeResponse = receipt.result().body();
+                            assertEquals(HttpResponseStatus.OK.code(), receipt.result().statusCode());
+                            assertEquals(batchId, bridgeResponse.getString("batch_id"));
+                            assertEquals("completed", bridgeResponse.getString("status"));
+
+                            JsonArray offsets = bridgeResponse.getJsonArray("offsets");
+                            assertEquals(1, offsets.size());
+                            JsonObject metadata = offsets.getJsonObject(0);
+                            assertEquals(0, metadata.getInteger("partition"));
+                            assertEquals(0L, metadata.getLong("offset"));
+                        });
+                        context.completeNow();
+                    });
+            });
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import io.strimzi.kafka.bridge.DeadLetterTopics;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpMessageConverterDeadLetterTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void deadLetterRecords() {
+        Buffer body = Buffer.buffer("{\"records\":[{\"value\":\"dmFsdWU=\"},{\"key\":{\"a\":[1]},\"value\":\"dmFsdWU=\"},"
+                + "{\"value\":\"dmFsdWUy\",\"partition\":\"one\"}]}");
+        HttpBinaryMessageConverter converter = new HttpBinaryMessageConverter();
+        converter.setDeadLetterTopics(new DeadLetterTopics("topic:topic-dlq"));
+
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = converter.toKafkaRecords("topic", null, body);
+
+        assertEquals(3, kafkaRecords.size());
+        assertEquals("topic", kafkaRecords.get(0).topic());
+        assertArrayEquals(bytes("value"), kafkaRecords.get(0).value());
+        // the records failed to be converted are routed as they are, the following ones are still read
+        assertEquals("topic-dlq", kafkaRecords.get(1).topic());
+        assertArrayEquals(bytes("{\"key\":{\"a\":[1]},\"value\":\"dmFsdWU=\"}"), kafkaRecords.get(1).value());
+        assertEquals("Key and value must be base64 encoded strings", DeadLetterTopics.conversionError(kafkaRecords.get(1)));
+        assertEquals("topic", DeadLetterTopics.header(kafkaRecords.get(1), DeadLetterTopics.TOPIC_HEADER));
+        assertEquals("topic-dlq", kafkaRecords.get(2).topic());
+        assertArrayEquals(bytes("{\"value\":\"dmFsdWUy\",\"partition\":\"one\"}"), kafkaRecords.get(2).value());
+        assertEquals("Partition must be an integer", DeadLetterTopics.conversionError(kafkaRecords.get(2)));
+    }
+
+    @Test
+    void deadLetterRecordsWithoutDeadLetterTopic() {
+        HttpJsonMessageConverter converter = new HttpJsonMessageConverter();
+        converter.setDeadLetterTopics(new DeadLetterTopics("other:other-dlq"));
+
+        // without a dead letter topic for the record topic, the whole request still fails
+        assertThrows(IllegalStateException.class,
+            () -> converter.toKafkaRecords("topic", 0, Buffer.buffer("{\"records\":[{\"value\":\"v\",\"partition\":1}]}")));
+        // as it does when the record doesn't have a topic at all
+        assertThrows(IllegalStateException.class,
+            () -> converter.toKafkaRecords(null, null, Buffer.buffer("{\"records\":[{\"value\":1}]}")));
+        // a malformed body can't be split in records
+        assertThrows(DecodeException.class,
+            () -> converter.toKafkaRecords("other", null, Buffer.buffer("{\"records\":[{\"value\":")));
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.converter;
+
+import io.strimzi.kafka.bridge.converter.AvroSchemaCache;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.kafka.client.consumer.impl.KafkaConsumerRecordsImpl;
+import io.vertx.kafka.client.producer.KafkaProducerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpMessageConverterTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void binaryRecords() {
+        JsonArray records = new JsonArray()
+                .add(new JsonObject()
+                        .put("key", DatatypeConverter.printBase64Binary(bytes("key")))
+                        .put("value", DatatypeConverter.printBase64Binary(bytes("value"))))
+                .add(new JsonObject()
+                        .put("value", DatatypeConverter.printBase64Binary(bytes("value2")))
+                        .put("partition", 2));
+        Buffer body = new JsonObject().put("records", records).toBuffer();
+
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = new HttpBinaryMessageConverter().toKafkaRecords("topic", null, body);
+
+        assertEquals(2, kafkaRecords.size());
+        assertEquals("topic", kafkaRecords.get(0).topic());
+        assertArrayEquals(bytes("key"), kafkaRecords.get(0).key());
+        assertArrayEquals(bytes("value"), kafkaRecords.get(0).value());
+        assertNull(kafkaRecords.get(0).partition());
+        assertNull(kafkaRecords.get(1).key());
+        assertArrayEquals(bytes("value2"), kafkaRecords.get(1).value());
+        assertEquals(2, kafkaRecords.get(1).partition().intValue());
+    }
+
+    @Test
+    void jsonRecords() {
+        JsonObject value = new JsonObject()
+                .put("name", "bridge")
+                .put("nested", new JsonObject().put("list", new JsonArray().add(1).add(true).addNull()));
+        JsonArray records = new JsonArray()
+                .add(new JsonObject().put("key", "my-key").put("value", value));
+        Buffer body = new JsonObject().put("records", records).toBuffer();
+
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = new HttpJsonMessageConverter().toKafkaRecords("topic", 1, body);
+
+        assertEquals(1, kafkaRecords.size());
+        assertArrayEquals(bytes("\"my-key\""), kafkaRecords.get(0).key());
+        assertEquals(value, Buffer.buffer(kafkaRecords.get(0).value()).toJsonObject());
+        assertEquals(1, kafkaRecords.get(0).partition().intValue());
+    }
+
+    @Test
+    void jsonRecordsKeepOriginalBytes() {
+        String value = "{ \"text\" : \"h\\u00e9llo\",\n  \"number\": 12.50 }";
+        Buffer body = Buffer.buffer("{\"records\":[{\"value\": " + value + " , \"key\":-7}]}");
+
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = new HttpJsonMessageConverter().toKafkaRecords("topic", null, body);
+
+        assertEquals(1, kafkaRecords.size());
+        assertArrayEquals(bytes(value), kafkaRecords.get(0).value());
+        assertArrayEquals(bytes("-7"), kafkaRecords.get(0).key());
+    }
+
+    @Test
+    void jsonRecordMessage() {
+        ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>("topic", 1, 5L, bytes("\"key\""), bytes("{\"foo\":\"bar\"}"));
+
+        ConsumerRecords<byte[], byte[]> consumerRecords = new ConsumerRecords<>(
+                Collections.singletonMap(new TopicPartition("topic", 1), Collections.singletonList(record)));
+
+        JsonObject message = new HttpJsonMessageConverter()
+                .toMessage(null, new KafkaConsumerRecordsImpl<>(consumerRecords).recordAt(0)).toJsonObject();
+
+        assertEquals("topic", message.getString("topic"));
+        assertEquals("key", message.getValue("key"));
+        assertEquals(new JsonObject().put("foo", "bar"), message.getJsonObject("value"));
+        assertEquals(1, message.getInteger("partition").intValue());
+        assertEquals(5L, message.getLong("offset").longValue());
+    }
+
+    @Test
+    void jsonRecordsInvalidValue() {
+        Buffer body = Buffer.buffer("{\"records\":[{\"value\": {\"a\": [1, }}]}");
+
+        assertThrows(DecodeException.class,
+            () -> new HttpJsonMessageConverter().toKafkaRecords("topic", null, body));
+    }
+
+    @Test
+    void slicedBuffer() {
+        Buffer body = Buffer.buffer("xxx{\"records\":[{\"value\":\"v\"}]}yyy").slice(3, 31);
+
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = new HttpJsonMessageConverter().toKafkaRecords("topic", null, body);
+
+        assertEquals(1, kafkaRecords.size());
+        assertArrayEquals(bytes("\"v\""), kafkaRecords.get(0).value());
+    }
+
+    @Test
+    void partitionInBodyAndPath() {
+        Buffer body = Buffer.buffer("{\"records\":[{\"value\":\"v\",\"partition\":1}]}");
+
+        assertThrows(IllegalStateException.class,
+            () -> new HttpJsonMessageConverter().toKafkaRecords("topic", 0, body));
+    }
+
+    @Test
+    void topicInBody() {
+        Buffer body = Buffer.buffer("{\"records\":[{\"topic\":\"t1\",\"value\":1},{\"value\":2,\"topic\":\"t2\",\"partition\":3}]}");
+
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = new HttpJsonMessageConverter().toKafkaRecords(null, null, body);
+
+        assertEquals(2, kafkaRecords.size());
+        assertEquals("t1", kafkaRecords.get(0).topic());
+        assertNull(kafkaRecords.get(0).partition());
+        assertEquals("t2", kafkaRecords.get(1).topic());
+        assertEquals(3, kafkaRecords.get(1).partition().intValue());
+    }
+
+    @Test
+    void topicMissingOrInBodyAndPath() {
+        assertThrows(IllegalStateException.class,
+            () -> new HttpJsonMessageConverter().toKafkaRecords(null, null, Buffer.buffer("{\"records\":[{\"value\":1}]}")));
+        assertThrows(IllegalStateException.class,
+            () -> new HttpJsonMessageConverter().toKafkaRecords("topic", null, Buffer.buffer("{\"records\":[{\"topic\":\"other\",\"value\":1}]}")));
+    }
+
+    @Test
+    void missingRecords() {
+        assertThrows(IllegalStateException.class,
+            () -> new HttpJsonMessageConverter().toKafkaRecords("topic", null, Buffer.buffer("{}")));
+    }
+
+    @Test
+    void malformedBody() {
+        assertThrows(DecodeException.class,
+            () -> new HttpBinaryMessageConverter().toKafkaRecords("topic", null, Buffer.buffer("{\"records\":[{\"value\":")));
+    }
+
+    @Test
+    void rawRecord() {
+        byte[] value = new byte[] {0, 1, 2, (byte) 0xff};
+        Buffer body = Buffer.buffer(value.length).appendBytes(value);
+
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = new HttpRawMessageConverter(bytes("key")).toKafkaRecords("topic", 3, body);
+
+        assertEquals(1, kafkaRecords.size());
+        assertArrayEquals(bytes("key"), kafkaRecords.get(0).key());
+        assertArrayEquals(value, kafkaRecords.get(0).value());
+        assertEquals(3, kafkaRecords.get(0).partition().intValue());
+    }
+
+    @Test
+    void rawRecordSlicedBuffer() {
+        Buffer body = Buffer.buffer("xxxvalueyyy").slice(3, 8);
+
+        KafkaProducerRecord<byte[], byte[]> kafkaRecord = new HttpRawMessageConverter(null).toKafkaRecord("topic", null, body);
+
+        assertNull(kafkaRecord.key());
+        assertArrayEquals(bytes("value"), kafkaRecord.value());
+        assertNull(kafkaRecord.partition());
+    }
+
+    @Test
+    void avroRecords(@TempDir Path dir) throws IOException {
+        Files.write(dir.resolve("topic-value.avsc"), bytes("{\"type\": \"record\", \"name\": \"Value\", \"fields\": ["
+                + "{\"name\": \"name\", \"type\": \"string\"}, {\"name\": \"count\", \"type\": \"int\", \"default\": 0}]}"));
+        Files.write(dir.resolve("topic-key.avsc"), bytes("\"long\""));
+        AvroSchemaCache cache = new AvroSchemaCache(dir.toString(), 10);
+        cache.start();
+        assertEquals(2, cache.cached());
+
+        Buffer body = Buffer.buffer("{\"records\":[{\"key\":27,\"value\":{\"name\":\"foo\",\"count\":1}},{\"value\":{\"name\":\"bar\"}}]}");
+        HttpAvroMessageConverter converter = new HttpAvroMessageConverter(cache);
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = converter.toKafkaRecords("topic", null, body);
+
+        assertEquals(2, kafkaRecords.size());
+        assertArrayEquals(new byte[] {0x36}, kafkaRecords.get(0).key());
+        assertArrayEquals(new byte[] {0x06, 'f', 'o', 'o', 0x02}, kafkaRecords.get(0).value());
+        assertNull(kafkaRecords.get(1).key());
+        assertArrayEquals(new byte[] {0x06, 'b', 'a', 'r', 0x00}, kafkaRecords.get(1).value());
+
+        TopicPartition partition = new TopicPartition("topic", 0);
+        ConsumerRecords<byte[], byte[]> consumerRecords = new ConsumerRecords<>(Collections.singletonMap(partition, Arrays.asList(
+                new ConsumerRecord<>("topic", 0, 10, kafkaRecords.get(0).key(), kafkaRecords.get(0).value()),
+                new ConsumerRecord<>("topic", 0, 11, kafkaRecords.get(1).key(), kafkaRecords.get(1).value()))));
+        JsonArray messages = converter.toMessages(new KafkaConsumerRecordsImpl<>(consumerRecords)).toJsonArray();
+
+        assertEquals(2, messages.size());
+        assertEquals(27L, messages.getJsonObject(0).getLong("key").longValue());
+        assertEquals(new JsonObject().put("name", "foo").put("count", 1), messages.getJsonObject(0).getJsonObject("value"));
+        assertEquals(10L, messages.getJsonObject(0).getLong("offset").longValue());
+        assertNull(messages.getJsonObject(1).getValue("key"));
+        assertEquals(new JsonObject().put("name", "bar").put("count", 0), messages.getJsonObject(1).getJsonObject("value"));
+    }
+
+    @Test
+    void avroRecordsWithoutSchema(@TempDir Path dir) throws IOException {
+        Files.write(dir.resolve("topic-value.avsc"), bytes("\"int\""));
+        HttpAvroMessageConverter converter = new HttpAvroMessageConverter(new AvroSchemaCache(dir.toString(), 10));
+
+        // a null key doesn't need a schema, while an invalid value or one without a schema is rejected
+        assertEquals(1, converter.toKafkaRecords("topic", null, Buffer.buffer("{\"records\":[{\"key\":null,\"value\":1}]}")).size());
+        assertThrows(IllegalStateException.class,
+            () -> converter.toKafkaRecords("topic", null, Buffer.buffer("{\"records\":[{\"key\":\"k\",\"value\":1}]}")));
+        assertThrows(IllegalArgumentException.class,
+            () -> converter.toKafkaRecords("topic", null, Buffer.buffer("{\"records\":[{\"value\":\"v\"}]}")));
+        assertThrows(IllegalStateException.class,
+            () -> converter.toKafkaRecords("other", null, Buffer.buffer("{\"records\":[{\"value\":1}]}")));
+
+        HttpAvroMessageConverter disabled = new HttpAvroMessageConverter(new AvroSchemaCache("", 10));
+        assertFalse(new AvroSchemaCache(null, 10).isEnabled());
+        assertThrows(IllegalStateException.class,
+            () -> disabled.toKafkaRecords("topic", null, Buffer.buffer("{\"records\":[{\"value\":1}]}")));
+    }
+
+    @Test
+    void avroRecordsNotDecoded(@TempDir Path dir) throws IOException {
+        Files.write(dir.resolve("topic-value.avsc"), bytes("\"int\""));
+        HttpAvroMessageConverter converter = new HttpAvroMessageConverter(new AvroSchemaCache(dir.toString(), 10));
+
+        TopicPartition partition = new TopicPartition("topic", 0);
+        ConsumerRecords<byte[], byte[]> consumerRecords = new ConsumerRecords<>(Collections.singletonMap(partition, Arrays.asList(
+                new ConsumerRecord<>("topic", 0, 10, null, new byte[] {0x02}),
+                new ConsumerRecord<>("topic", 0, 11, null, new byte[] {0x02, 0x02}),
+                new ConsumerRecord<>("topic", 0, 12, null, new byte[] {0x04}))));
+        Buffer buffer = Buffer.buffer();
+        assertEquals(3, converter.toMessages(new KafkaConsumerRecordsImpl<>(consumerRecords), Integer.MAX_VALUE, Long.MAX_VALUE, buffer));
+        JsonArray messages = buffer.toJsonArray();
+
+        // the record which can't be decoded is returned as an error, without losing the other ones
+        assertEquals(3, messages.size());
+        assertEquals(1, messages.getJsonObject(0).getInteger("value").intValue());
+        assertEquals(406, messages.getJsonObject(1).getInteger("error_code").intValue());
+        assertEquals(11L, messages.getJsonObject(1).getLong("offset").longValue());
+        assertEquals("topic", messages.getJsonObject(1).getString("topic"));
+        assertEquals(2, messages.getJsonObject(2).getInteger("value").intValue());
+    }
+
+    @Test
+    void cborRecords() {
+        // {"records": [{"key": h'6b', "value": h'00ff', "partition": 2}, {"value": "v", "topic": "topic"}]}, the second record
+        // as an indefinite length map with an ignored entry
+        byte[] body = new byte[] {
+            (byte) 0xa1, 0x67, 'r', 'e', 'c', 'o', 'r', 'd', 's', (byte) 0x82,
+            (byte) 0xa3, 0x63, 'k', 'e', 'y', 0x41, 'k', 0x65, 'v', 'a', 'l', 'u', 'e', 0x42, 0x00, (byte) 0xff,
+            0x69, 'p', 'a', 'r', 't', 'i', 't', 'i', 'o', 'n', 0x02,
+            (byte) 0xbf, 0x65, 'v', 'a', 'l', 'u', 'e', 0x61, 'v', 0x65, 'o', 't', 'h', 'e', 'r', (byte) 0x82, 0x01, (byte) 0xf6,
+            0x65, 't', 'o', 'p', 'i', 'c', 0x65, 't', 'o', 'p', 'i', 'c', (byte) 0xff
+        };
+
+        HttpCborMessageConverter converter = new HttpCborMessageConverter();
+        List<KafkaProducerRecord<byte[], byte[]>> kafkaRecords = converter.toKafkaRecords("topic", null, Buffer.buffer(body));
+
+        assertEquals(2, kafkaRecords.size());
+        assertArrayEquals(bytes("k"), kafkaRecords.get(0).key());
+        assertArrayEquals(new byte[] {0x00, (byte) 0xff}, kafkaRecords.get(0).value());
+        assertEquals(2, kafkaRecords.get(0).partition().intValue());
+        assertNull(kafkaRecords.get(1).key());
+        assertArrayEquals(bytes("v"), kafkaRecords.get(1).value());
+        assertNull(kafkaRecords.get(1).partition());
+
+        TopicPartition partition = new TopicPartition("topic", 2);
+        ConsumerRecords<byte[], byte[]> consumerRecords = new ConsumerRecords<>(Collections.singletonMap(partition, Collections.singletonList(
+                new ConsumerRecord<>("topic", 2, 300, kafkaRecords.get(0).key(), kafkaRecords.get(0).value()))));
+        Buffer messages = converter.toMessages(new KafkaConsumerRecordsImpl<>(consumerRecords));
+
+        assertArrayEquals(new byte[] {
+            (byte) 0x81, (byte) 0xa5,
+            0x65, 't', 'o', 'p', 'i', 'c', 0x65, 't', 'o', 'p', 'i', 'c',
+            0x63, 'k', 'e', 'y', 0x41, 'k',
+            0x65, 'v', 'a', 'l', 'u', 'e', 0x42, 0x00, (byte) 0xff,
+            0x69, 'p', 'a', 'r', 't', 'i', 't', 'i', 'o', 'n', 0x02,
+            0x66, 'o', 'f', 'f', 's', 'e', 't', 0x19, 0x01, 0x2c
+        }, messages.getBytes());
+        // a single record is the same map, without the array around
+        assertEquals(messages.getBuffer(1, messages.length()), converter.toMessage("topic",
+                new KafkaConsumerRecordsImpl<>(consumerRecords).recordAt(0)));
+    }
+
+    @Test
+    void cborRecordsInvalid() {
+        HttpCborMessageConverter converter = new HttpCborMessageConverter();
+
+        // truncated, not a map, value not a string, no records
+        assertThrows(DecodeException.class,
+            () -> converter.toKafkaRecords("topic", null, Buffer.buffer(new byte[] {(byte) 0xa1, 0x67, 'r', 'e', 'c'})));
+        assertThrows(DecodeException.class,
+            () -> converter.toKafkaRecords("topic", null, Buffer.buffer(new byte[] {(byte) 0x80})));
+        assertThrows(IllegalArgumentException.class,
+            () -> converter.toKafkaRecords("topic", null, Buffer.buffer(new byte[] {
+                (byte) 0xa1, 0x67, 'r', 'e', 'c', 'o', 'r', 'd', 's', (byte) 0x81, (byte) 0xa1, 0x65, 'v', 'a', 'l', 'u', 'e', 0x01})));
+        assertThrows(IllegalStateException.class,
+            () -> converter.toKafkaRecords("topic", null, Buffer.buffer(new byte[] {(byte) 0xa0})));
+    }
+
+    @Test
+    void boundedRecords() {
+        TopicPartition partition = new TopicPartition("topic", 0);
+        KafkaConsumerRecordsImpl<byte[], byte[]> records = new KafkaConsumerRecordsImpl<>(new ConsumerRecords<>(Collections.singletonMap(partition,
+                Arrays.asList(new ConsumerRecord<>("topic", 0, 0L, bytes("key"), bytes("value")),
+                        new ConsumerRecord<>("topic", 0, 1L, bytes("key"), bytes("value")),
+                        new ConsumerRecord<>("topic", 0, 2L, bytes("key"), bytes("value"))))));
+
+        HttpBinaryMessageConverter converter = new HttpBinaryMessageConverter();
+        Buffer all = converter.toMessages(records);
+        Buffer messages = Buffer.buffer();
+        assertEquals(3, converter.toMessages(records, Integer.MAX_VALUE, all.length(), messages));
+        assertEquals(all, messages);
+
+        // the last record doesn't fit anymore, then the maximum number of records is reached
+        messages = Buffer.buffer();
+        assertEquals(2, converter.toMessages(records, Integer.MAX_VALUE, all.length() - 1, messages));
+        assertEquals(2, messages.toJsonArray().size());
+        messages = Buffer.buffer();
+        assertEquals(1, converter.toMessages(records, 1, Long.MAX_VALUE, messages));
+        assertEquals(records.recordAt(0).offset(), messages.toJsonArray().getJsonObject(0).getLong("offset").longValue());
+        messages = Buffer.buffer();
+        assertEquals(0, converter.toMessages(records, Integer.MAX_VALUE, 10, messages));
+        assertEquals(new JsonArray(), messages.toJsonArray());
+
+        HttpCborMessageConverter cborConverter = new HttpCborMessageConverter();
+        all = cborConverter.toMessages(records);
+        messages = Buffer.buffer();
+        assertEquals(3, cborConverter.toMessages(records, Integer.MAX_VALUE, all.length(), messages));
+        assertEquals(all, messages);
+        messages = Buffer.buffer();
+        assertEquals(2, cborConverter.toMessages(records, Integer.MAX_VALUE, all.length() - 1, messages));
+        assertEquals((byte) 0x82, messages.getByte(0));
+        assertEquals(1 + 2 * (all.length() - 1) / 3, messages.length());
+    }
+
+    @Test
+    void scalarFields() {
+        JsonObject fields = AbstractHttpMessageConverter.readScalarFields(Buffer.buffer(
+                "{\"type\":\"send\",\"records\":[{\"value\":{\"id\":2}}],\"id\":1,\"partition\":null,\"ratio\":0.5,\"flag\":true}"));
+
+        assertEquals(new JsonObject().put("type", "send").put("id", 1L).putNull("partition").put("ratio", 0.5).put("flag", true), fields);
+        assertThrows(DecodeException.class, () -> AbstractHttpMessageConverter.readScalarFields(Buffer.buffer("[]")));
+        assertThrows(DecodeException.class, () -> AbstractHttpMessageConverter.readScalarFields(Buffer.buffer("{\"type\":")));
+    }
+}
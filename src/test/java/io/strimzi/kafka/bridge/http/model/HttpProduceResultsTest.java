@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.strimzi.kafka.bridge.http.model;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpProduceResultsTest {
+
+    @Test
+    void completedOutOfOrder() {
+        HttpProduceResults results = new HttpProduceResults(3);
+
+        assertFalse(results.delivered(2, "t", 1, 9876543210L));
+        assertFalse(results.failed(1, new HttpBridgeError(404, "Topic \"t\" not found")));
+        assertFalse(results.isCompleted());
+        assertTrue(results.delivered(0, "t", 0, 0L));
+        assertTrue(results.isCompleted());
+        assertTrue(results.hasErrors());
+        assertTrue(results.isWritten());
+
+        JsonObject expected = new JsonObject().put("offsets", new JsonArray()
+                .add(new JsonObject().put("partition", 0).put("offset", 0L))
+                .add(new JsonObject().put("error_code", 404).put("message", "Topic \"t\" not found"))
+                .add(new JsonObject().put("partition", 1).put("offset", 9876543210L)));
+        assertEquals(expected, results.toBuffer().toJsonObject());
+        assertEquals(expected, results.toJson());
+    }
+
+    @Test
+    void noOffset() {
+        HttpProduceResults results = new HttpProduceResults(1);
+        results.delivered(0, "t", 12, -1L);
+        assertFalse(results.hasErrors());
+
+        assertEquals("{\"offsets\":[{\"partition\":12,\"offset\":-1}]}", results.toBuffer().toString());
+    }
+
+    @Test
+    void summary() {
+        HttpProduceResults results = new HttpProduceResults(5);
+        results.delivered(0, "t1", 0, 10L);
+        results.delivered(1, "t1", 1, 3L);
+        results.failed(2, new HttpBridgeError(500, "failure"));
+        results.delivered(3, "t1", 0, 12L);
+        results.delivered(4, "t2", 0, 7L);
+
+        JsonObject expected = new JsonObject()
+                .put("partitions", new JsonArray()
+                        .add(new JsonObject().put("topic", "t1").put("partition", 0).put("first_offset", 10L).put("last_offset", 12L).put("count", 2L))
+                        .add(new JsonObject().put("topic", "t1").put("partition", 1).put("first_offset", 3L).put("last_offset", 3L).put("count", 1L))
+                        .add(new JsonObject().put("topic", "t2").put("partition", 0).put("first_offset", 7L).put("last_offset", 7L).put("count", 1L)))
+                .put("failed", new JsonArray()
+                        .add(new JsonObject().put("error_code", 500).put("message", "failure").put("index", 2)));
+        assertEquals(expected, results.toSummaryJson());
+    }
+
+    @Test
+    void transaction() {
+        HttpProduceResults results = new HttpProduceResults(1);
+        results.delivered(0, "t", 0, 5L);
+        results.setTransaction("committed");
+
+        JsonObject expected = new JsonObject()
+                .put("transaction", "committed")
+                .put("offsets", new JsonArray().add(new JsonObject().put("partition", 0).put("offset", 5L)));
+        assertEquals(expected, results.toBuffer().toJsonObject());
+        assertEquals(expected, results.toJson());
+        assertEquals("committed", results.toSummaryJson().getString("transaction"));
+    }
+
+    @Test
+    void notWritten() {
+        HttpProduceResults results = new HttpProduceResults(2);
+        results.failed(0, new HttpBridgeError(404, "not found"));
+        results.failed(1, new HttpBridgeError(404, "not found"));
+        results.setTransaction("aborted");
+        assertFalse(results.isWritten());
+
+        // on a commit timeout, the records could have been written anyway
+        results.setTransaction("unknown");
+        assertTrue(results.isWritten());
+    }
+
+    @Test
+    void empty() {
+        HttpProduceResults results = new HttpProduceResults(0);
+
+        assertTrue(results.isCompleted());
+        assertEquals("{\"offsets\":[]}", results.toBuffer().toString());
+    }
+}
@@ -4,12 +4,15 @@
  */
 package io.strimzi.kafka.bridge.http.services;
 
+import io.strimzi.kafka.bridge.BridgeContentType;
 import io.strimzi.kafka.bridge.utils.Urls;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.codec.BodyCodec;
 
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 
@@ -41,4 +44,44 @@ public class ProducerService extends BaseService {
                 .putHeader(CONTENT_TYPE.toString(), bridgeContentType)
                 .as(BodyCodec.jsonObject());
     }
+
+    public HttpRequest<JsonObject> sendRecordsToTopicsRequest(JsonObject jsonObject, String bridgeContentType) {
+        return postRequest(Urls.producerTopics())
+                .putHeader(CONTENT_LENGTH.toString(), String.valueOf(jsonObject.toBuffer().length()))
+                .putHeader(CONTENT_TYPE.toString(), bridgeContentType)
+                .as(BodyCodec.jsonObject());
+    }
+
+    public HttpRequest<Buffer> sendRecordsStreamRequest(String topic, String format) {
+        return postRequest(Urls.producerTopicStream(topic))
+                .addQueryParam("format", format)
+                .putHeader(CONTENT_TYPE.toString(), BridgeContentType.NDJSON)
+                .as(BodyCodec.buffer());
+    }
+
+    public HttpRequest<JsonObject> sendRawRecordRequest(String topic, String key, Buffer value) {
+        return postRequest(Urls.producerTopic(topic))
+                .addQueryParam("key", key)
+                .putHeader(CONTENT_LENGTH.toString(), String.valueOf(value.length()))
+                .putHeader(CONTENT_TYPE.toString(), BridgeContentType.OCTET_STREAM)
+                .as(BodyCodec.jsonObject());
+    }
+
+    public HttpRequest<JsonObject> sendEncodedRecordsRequest(String topic, Buffer body, String contentEncoding, String bridgeContentType) {
+        return postRequest(Urls.producerTopic(topic))
+                .putHeader(CONTENT_LENGTH.toString(), String.valueOf(body.length()))
+                .putHeader(CONTENT_TYPE.toString(), bridgeContentType)
+                .putHeader(CONTENT_ENCODING.toString(), contentEncoding)
+                .as(BodyCodec.jsonObject());
+    }
+
+    public HttpRequest<JsonObject> sendRecordsAsyncRequest(String topic, JsonObject jsonObject, String bridgeContentType) {
+        return sendRecordsRequest(topic, jsonObject, bridgeContentType)
+                .addQueryParam("async", "true");
+    }
+
+    public HttpRequest<JsonObject> receiptRequest(String batchId, Integer timeout) {
+        return getRequest(Urls.receipt(batchId, timeout))
+                .as(BodyCodec.jsonObject());
+    }
 }
@@ -23,6 +23,8 @@ public class Urls {
     private static final String ASSIGMENTS_PATH = "/assignments";
     private static final String OFFSETS_PATH = "/offsets";
     private static final String RECORDS_PATH = "/records";
+    private static final String STREAM_PATH = "/stream";
+    private static final String RECEIPTS_PATH = "/receipts/";
 
     public static String consumer(String groupId) {
         return BRIDGE_ADDRESS + CONSUMERS_PATH + groupId;
@@ -72,6 +74,18 @@ public class Urls {
         return BRIDGE_ADDRESS + TOPICS_PATH + topic;
     }
 
+    public static String producerTopics() {
+        return BRIDGE_ADDRESS + TOPICS_PATH.substring(0, TOPICS_PATH.length() - 1);
+    }
+
+    public static String producerTopicStream(String topic) {
+        return BRIDGE_ADDRESS + TOPICS_PATH + topic + STREAM_PATH;
+    }
+
+    public static String receipt(String batchId, Integer timeout) {
+        return BRIDGE_ADDRESS + RECEIPTS_PATH + batchId + (timeout != null ? "?timeout=" + timeout : "");
+    }
+
     public static String producerTopicPartition(String topic, Object partitions) {
         return BRIDGE_ADDRESS + TOPICS_PATH + topic + PARTITIONS_PATH + partitions;
     }